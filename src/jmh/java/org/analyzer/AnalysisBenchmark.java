@@ -0,0 +1,53 @@
+package org.analyzer;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calculation of all entries of a parsed file on pools of different sizes. Many small entries are batched by the
+ * EntryScheduler, large entries are split into chunks, so both shapes are measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnalysisBenchmark {
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    @Param({"16"})
+    public int sizeMB;
+
+    @Param({"1000", "4000000"})
+    public int entryBases;
+
+    private ForkJoinPool pool;
+    private FastaHandler handler;
+
+    @Setup(Level.Trial)
+    public void parseInput() throws Exception {
+        Path fasta = BenchmarkData.writeFasta(SequenceType.DNA, (long) this.sizeMB << 20, this.entryBases);
+        this.pool = new ForkJoinPool(this.threads);
+        this.handler = new FastaHandler(this.pool, this.threads);
+        this.handler.generateFastaHandlerObject(fasta.toString(), "dna", false);
+        Files.delete(fasta);
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdownPool() {
+        this.pool.shutdown();
+    }
+
+    @Benchmark
+    public double processFastaEntries() {
+        EntryScheduler scheduler = new EntryScheduler(this.threads);
+        this.handler.submitFastaEntries(this.pool, scheduler).join();
+        return scheduler.getMakespanSeconds();
+    }
+}
@@ -0,0 +1,70 @@
+package org.analyzer;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Batch run over many small DNA and peptide files, with the platform threads and with the virtual threads of the
+ * BatchAnalyzer. The difference shows up with blocking storage like network mounts, on a local disk most reads are
+ * served from the page cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchBenchmark {
+    @Param({"PLATFORM", "VIRTUAL"})
+    public String mode;
+
+    @Param({"200"})
+    public int filePairs;
+
+    private Path batchDirectory;
+    private Path outputDirectory;
+    private final List<BatchAnalyzer.Job> jobs = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void writeInput() throws IOException {
+        this.batchDirectory = Files.createTempDirectory("batch_benchmark");
+        Path dnaInput = BenchmarkData.writeFasta(SequenceType.DNA, 2000, 1000);
+        Path peptideInput = BenchmarkData.writeFasta(SequenceType.PEPTIDE, 1000, 500);
+        for (int i = 0; i < this.filePairs; i++) {
+            Path dna = this.batchDirectory.resolve("dna" + i + ".fasta");
+            Path peptide = this.batchDirectory.resolve("peptide" + i + ".fasta");
+            Files.copy(dnaInput, dna);
+            Files.copy(peptideInput, peptide);
+            this.jobs.add(new BatchAnalyzer.Job(dna.toString(), "dna"));
+            this.jobs.add(new BatchAnalyzer.Job(peptide.toString(), "peptide"));
+        }
+        Files.delete(dnaInput);
+        Files.delete(peptideInput);
+        this.outputDirectory = Files.createDirectory(this.batchDirectory.resolve("out"));
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteInput() throws IOException {
+        try (Stream<Path> files = Files.walk(this.batchDirectory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public int runBatch() {
+        BatchAnalyzer.ExecutionMode executionMode = BatchAnalyzer.ExecutionMode.valueOf(this.mode);
+        BatchAnalyzer batch = new BatchAnalyzer(FastaHandler.getInstance(), this.outputDirectory + "/", false, false, false);
+        batch.setExecutionMode(executionMode, (executionMode == BatchAnalyzer.ExecutionMode.VIRTUAL) ? BatchAnalyzer.VIRTUAL_FILES_IN_FLIGHT : BatchAnalyzer.FILES_IN_FLIGHT);
+        return batch.run(this.jobs).size();
+    }
+}
@@ -0,0 +1,48 @@
+package org.analyzer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+/**
+ * Synthetic inputs for the benchmarks. The sequences are random, but seeded, so every run measures the same input.
+ */
+final class BenchmarkData {
+    static final long SEED = 42;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * @param alphabet characters the sequence is drawn from
+     * @param length   length of the sequence
+     * @return random uppercase sequence bytes
+     */
+    static byte[] randomSequence(String alphabet, int length) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        byte[] sequence = new byte[length];
+        for (int i = 0; i < length; i++) {
+            sequence[i] = (byte) alphabet.charAt(random.nextInt(alphabet.length()));
+        }
+        return sequence;
+    }
+
+    /**
+     * Writes a temporary fasta file with entries of equal length and sequence lines of 70 characters.
+     *
+     * @param seqType    type of the sequences
+     * @param totalBases number of bases of all entries together
+     * @param entryBases number of bases per entry
+     * @return path of the temporary file, deleted by the caller
+     */
+    static Path writeFasta(SequenceType seqType, long totalBases, int entryBases) throws IOException {
+        Path fasta = Files.createTempFile("benchmark", ".fasta");
+        SyntheticFasta generator = new SyntheticFasta(seqType);
+        generator.setLengths(entryBases, entryBases, SyntheticFasta.LengthDistribution.FIXED);
+        generator.setRecords((totalBases + entryBases - 1) / entryBases);
+        generator.setSeed(SEED);
+        generator.write(fasta);
+        return fasta;
+    }
+}
@@ -0,0 +1,52 @@
+package org.analyzer;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of a synthetic DNA file by the byte level FastaParser and, as reference, by the Scanner based parser.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+    @Param({"1", "16"})
+    public int sizeMB;
+
+    @Param({"1000", "100000"})
+    public int entryBases;
+
+    private Path fasta;
+
+    @Setup(Level.Trial)
+    public void writeInput() throws IOException {
+        this.fasta = BenchmarkData.writeFasta(SequenceType.DNA, (long) this.sizeMB << 20, this.entryBases);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteInput() throws IOException {
+        Files.deleteIfExists(this.fasta);
+    }
+
+    @Benchmark
+    public long parseFasta() throws Exception {
+        long[] bases = new long[1];
+        new FastaParser(SequenceType.DNA, false).parse(this.fasta, entry -> bases[0] += entry.getSequenceLength());
+        return bases[0];
+    }
+
+    @Benchmark
+    public int parseFastaScanner() throws Exception {
+        FastaHandler handler = new FastaHandler(1);
+        handler.seqType = SequenceType.DNA;
+        handler.parseFastaScanner(this.fasta.toString(), false);
+        return handler.fastaObjectList.size();
+    }
+}
@@ -0,0 +1,95 @@
+package org.analyzer;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per entry kernels: alphabet counting, translation and the formulas of the SequenceType on one random sequence.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SequenceBenchmark {
+    @Param({"1000", "1000000"})
+    public int length;
+
+    private String dna;
+    private byte[] dnaBytes;
+    private PackedSequence packedDna;
+    private long[] dnaComposition;
+    private Map<Character, Double> dnaAlphabet;
+    private long[] peptideComposition;
+
+    @Setup(Level.Trial)
+    public void createSequences() {
+        this.dnaBytes = BenchmarkData.randomSequence("ACGT", this.length);
+        this.dna = new String(this.dnaBytes, StandardCharsets.ISO_8859_1);
+        this.packedDna = PackedSequence.pack(this.dnaBytes, this.length, (byte) 'T');
+        this.dnaComposition = FastaEntry.SequenceHandler.countComposition(this.dna);
+        this.dnaAlphabet = FastaEntry.SequenceHandler.toAlphabetMap(this.dnaComposition);
+        this.peptideComposition = FastaEntry.SequenceHandler.countComposition(new String(BenchmarkData.randomSequence(SequenceType.PEPTIDE.getAlphabet(), this.length), StandardCharsets.ISO_8859_1));
+    }
+
+    @Benchmark
+    public Map<Character, Double> countAlphabet() {
+        return FastaEntry.SequenceHandler.countAlphabet(this.dna);
+    }
+
+    @Benchmark
+    public long[] countCompositionBytes() {
+        long[] composition = new long[FastaEntry.COMPOSITION_SIZE];
+        FastaEntry.SequenceHandler.countComposition(this.dnaBytes, 0, this.length, composition);
+        return composition;
+    }
+
+    @Benchmark
+    public long[] countCompositionPacked() {
+        return FastaEntry.SequenceHandler.countComposition(this.packedDna);
+    }
+
+    @Benchmark
+    public String translateSequence() {
+        return FastaEntry.SequenceHandler.translateSequence(this.dna);
+    }
+
+    @Benchmark
+    public String translatePacked() {
+        return GeneticCode.STANDARD.translate(this.packedDna);
+    }
+
+    @Benchmark
+    public double gcEnrichment() {
+        return SequenceType.DNA.gcEnrichment(this.length, this.dnaComposition);
+    }
+
+    @Benchmark
+    public double molecularWeight() {
+        return SequenceType.DNA.molecularWeight(this.dnaComposition);
+    }
+
+    @Benchmark
+    public double meltingPoint() {
+        return SequenceType.DNA.meltingPoint(this.length, this.dnaComposition);
+    }
+
+    @Benchmark
+    public double meltingPointMap() {
+        return SequenceType.DNA.meltingPoint(this.length, this.dnaAlphabet);
+    }
+
+    @Benchmark
+    public double netCharge() {
+        return SequenceType.PEPTIDE.netCharge(this.peptideComposition, 7.0);
+    }
+
+    @Benchmark
+    public double isoelectricPoint() {
+        return SequenceType.PEPTIDE.isoelectricPoint(this.peptideComposition, SequenceType.DEFAULT_PI_TOLERANCE);
+    }
+}
@@ -0,0 +1,78 @@
+package org.analyzer;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formatting of calculated entries by the FastaOutputWriter. The output goes to a channel that drops the bytes, so
+ * only the formatting is measured, not the disk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WriterBenchmark {
+    // bases of all written entries together
+    private static final int TOTAL_BASES = 16 << 20;
+
+    @Param({"1000", "1000000"})
+    public int entryBases;
+
+    @Param({"false", "true"})
+    public boolean translate;
+
+    private final List<FastaEntry> entries = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void calculateEntries() {
+        byte[] sequence = BenchmarkData.randomSequence("ACGT", this.entryBases);
+        PackedSequence packed = PackedSequence.pack(sequence, sequence.length, (byte) 'T');
+        for (int i = 0; i < Math.max(1, TOTAL_BASES / this.entryBases); i++) {
+            FastaEntry entry = new FastaEntry(">entry" + i);
+            entry.settingSequenceData(packed);
+            entry.setSequenceType(SequenceType.DNA);
+            entry.run();
+            this.entries.add(entry);
+        }
+    }
+
+    @Benchmark
+    public long writeEntry() throws IOException {
+        DiscardingChannel channel = new DiscardingChannel();
+        try (FastaOutputWriter writer = new FastaOutputWriter(channel)) {
+            for (FastaEntry entry : this.entries) {
+                writer.writeEntry(entry, this.translate);
+            }
+        }
+        return channel.written;
+    }
+
+    private static final class DiscardingChannel implements WritableByteChannel {
+        private long written;
+
+        @Override
+        public int write(ByteBuffer src) {
+            int length = src.remaining();
+            src.position(src.limit());
+            this.written += length;
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package org.analyzer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Analyzes many fasta files inside one JVM. Every file gets its own FastaHandler session, but the calculations of all
+ * files run on one shared worker pool. In the PLATFORM mode files are parsed one after another by a reader thread
+ * and written by a writer thread, so parsing of the next file overlaps with the calculations of the previous ones.
+ * In the VIRTUAL mode every file is read and written on its own virtual thread. The number of files that
+ * are parsed but not written yet is bounded, so the heap use doesn't grow with the number of input files.
+ */
+class BatchAnalyzer {
+    // parsed files waiting for their calculations or the writer, besides the one that is parsed at the moment
+    static final int FILES_IN_FLIGHT = 4;
+    // files in flight for the virtual mode, where many files are read and written at the same time
+    static final int VIRTUAL_FILES_IN_FLIGHT = 64;
+
+    /**
+     * Threads for reading, parsing and writing the files. The calculations always run on the bounded worker pool.
+     */
+    enum ExecutionMode {
+        /**
+         * One platform thread reads and parses the files one after another, one platform thread writes them.
+         */
+        PLATFORM,
+        /**
+         * Every file is read, parsed and written on its own virtual thread (Java 21), so blocking reads and writes
+         * of many files overlap, e.g. on network storage. Falls back to a cached platform thread pool on older Java
+         * versions.
+         */
+        VIRTUAL
+    }
+
+    /**
+     * One input file of the batch
+     *
+     * @param fasta path of the fasta file
+     * @param type  sequence type of the file, null for ambiguous
+     */
+    record Job(String fasta, String type) {
+    }
+
+    /**
+     * Timings of one file of the batch
+     *
+     * @param job             the analyzed file
+     * @param entries         number of analyzed entries
+     * @param parseSeconds    time for parsing the file
+     * @param analysisSeconds makespan of the calculations, from handing the entries to the pool until all of them are
+     *                        calculated
+     * @param writeSeconds    time for writing the output files
+     * @param error           message if the file couldn't be analyzed, null otherwise
+     * @param metrics         instrumentation of the stages of the file, up to the failure for failed files
+     */
+    record FileResult(Job job, int entries, double parseSeconds, double analysisSeconds, double writeSeconds, String error, RunMetrics metrics) {
+    }
+
+    private final FastaHandler configuration;
+    private final String outputDirectory;
+    private final boolean translate;
+    private final boolean verbose;
+    private final boolean verboseWorkers;
+    private boolean sixFrames;
+    private boolean duplicateReport;
+    private int kmerLength;
+    private int topKmers;
+    private int profileWindow;
+    private int profileStep;
+    private WindowProfile.Format profileFormat;
+    private boolean orfs;
+    private int minOrfLength = OrfFinder.DEFAULT_MIN_LENGTH;
+    private String startCodons = OrfFinder.DEFAULT_START_CODONS;
+    private static volatile boolean virtualFallbackReported;
+    private ExecutionMode executionMode = ExecutionMode.PLATFORM;
+    private int filesInFlight = FILES_IN_FLIGHT;
+    // keeps the console output of files that are written at the same time apart
+    private final Object consoleLock = new Object();
+
+    /**
+     * Package wide Constructor.
+     *
+     * @param configuration   handler whose thread count, genetic code and pI tolerance are used for every file
+     * @param outputDirectory directory of the output files, null if no output files should be written
+     * @param translate       write the translated sequences instead of the input sequences
+     * @param verbose         print the results of every entry
+     * @param verboseWorkers  boolean for verbose Output of worker tasks
+     */
+    BatchAnalyzer(FastaHandler configuration, String outputDirectory, boolean translate, boolean verbose, boolean verboseWorkers) {
+        this.configuration = configuration;
+        this.outputDirectory = outputDirectory;
+        this.translate = translate;
+        this.verbose = verbose;
+        this.verboseWorkers = verboseWorkers;
+    }
+
+    /**
+     * Additionally writes the six-frame translation and/or the ORFs of every DNA/RNA file.
+     */
+    void setFrameOutput(boolean sixFrames, boolean orfs, int minOrfLength, String startCodons) {
+        this.sixFrames = sixFrames;
+        this.orfs = orfs;
+        this.minOrfLength = minOrfLength;
+        this.startCodons = startCodons;
+    }
+
+    /**
+     * Additionally counts the k-mers of every DNA/RNA file and writes their histogram and the most frequent ones.
+     *
+     * @param kmerLength length of the k-mers, 0 for no k-mer counting
+     */
+    void setKmerOutput(int kmerLength, int topKmers) {
+        this.kmerLength = kmerLength;
+        this.topKmers = topKmers;
+    }
+
+    /**
+     * Additionally writes the sliding window profile of every DNA/RNA file.
+     *
+     * @param window length of the windows, 0 for no profile
+     */
+    void setProfileOutput(int window, int step, WindowProfile.Format format) {
+        this.profileWindow = window;
+        this.profileStep = step;
+        this.profileFormat = format;
+    }
+
+    /**
+     * Additionally writes the groups of entries with the same sequence of every file.
+     */
+    void setDuplicateReport(boolean duplicateReport) {
+        this.duplicateReport = duplicateReport;
+    }
+
+    /**
+     * @param executionMode threads for reading, parsing and writing the files
+     * @param filesInFlight maximal number of files that are read, calculated or written at the same time
+     */
+    void setExecutionMode(ExecutionMode executionMode, int filesInFlight) {
+        this.executionMode = executionMode;
+        this.filesInFlight = Math.max(1, filesInFlight);
+    }
+
+    /**
+     * Creates an executor that starts a new virtual thread for every task. Virtual threads are available since
+     * Java 21, the project is built for Java 17, so the factory method is looked up by reflection.
+     *
+     * @return virtual thread executor, or a cached platform thread pool if virtual threads aren't available
+     */
+    static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            if (!virtualFallbackReported) {
+                virtualFallbackReported = true;
+                System.err.println("-> Virtual threads need Java 21 or newer, a cached platform thread pool is used instead");
+            }
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Reads a manifest file with one input file per line, followed by its sequence type. Both are separated by
+     * whitespace, a missing sequence type means ambiguous. Empty lines and lines starting with # are ignored.
+     *
+     * @param manifest path of the manifest file
+     * @return the jobs in file order
+     */
+    static List<Job> readManifest(Path manifest) throws IOException {
+        List<Job> jobs = new ArrayList<>();
+        for (String line : Files.readAllLines(manifest)) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\\s+");
+            jobs.add(new Job(fields[0], (fields.length > 1) ? fields[1] : null));
+        }
+        return jobs;
+    }
+
+    /**
+     * Checks that no two input files get the same output file names. All output files go to one directory and are
+     * named after the base name of the input, so e.g. a/x.fasta and b/x.fasta.gz would overwrite each other.
+     *
+     * @throws IllegalArgumentException naming the first two inputs with the same base name
+     */
+    void checkOutputNames(List<Job> jobs) {
+        if (this.outputDirectory == null) {
+            return;
+        }
+        Map<String, String> inputsByBaseName = new HashMap<>();
+        for (Job job : jobs) {
+            String filename = job.fasta().split("/")[job.fasta().split("/").length - 1];
+            String previous = inputsByBaseName.putIfAbsent(FastaHandler.baseName(filename), job.fasta());
+            if (previous != null) {
+                throw new IllegalArgumentException("Input files " + previous + " and " + job.fasta() + " would write the same output files " +
+                        FastaHandler.baseName(filename) + "_*, rename one of them or analyze them in separate runs");
+            }
+        }
+    }
+
+    /**
+     * Analyzes all jobs and prints a summary with the timings of every file. Fails before any file is read if two
+     * inputs would write the same output files.
+     *
+     * @param jobs files to analyze
+     * @return the results in the order of the jobs
+     */
+    List<FileResult> run(List<Job> jobs) {
+        this.checkOutputNames(jobs);
+        long startTime = System.nanoTime();
+        ExecutorService threadPool = new ForkJoinPool(this.configuration.numberThreads);
+        ExecutorService reader;
+        ExecutorService writer;
+        if (this.executionMode == ExecutionMode.VIRTUAL) {
+            reader = newVirtualThreadExecutor();
+            writer = reader;
+        } else {
+            reader = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "fasta-batch-reader"));
+            writer = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "fasta-batch-writer"));
+        }
+        Semaphore filesInFlight = new Semaphore(this.filesInFlight);
+
+        List<CompletableFuture<FileResult>> results = new ArrayList<>();
+        try {
+            for (Job job : jobs) {
+                // released by the writer, so the reader can't run away from the calculations
+                filesInFlight.acquire();
+                results.add(this.analyzeFile(job, threadPool, reader, writer).whenComplete((result, throwable) -> filesInFlight.release()));
+            }
+            CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).join();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } finally {
+            reader.shutdown();
+            writer.shutdown();
+            threadPool.shutdown();
+        }
+
+        List<FileResult> fileResults = new ArrayList<>();
+        for (CompletableFuture<FileResult> result : results) {
+            fileResults.add(result.join());
+        }
+        printSummary(fileResults, (System.nanoTime() - startTime) / 1_000_000_000.0);
+        return fileResults;
+    }
+
+    private CompletableFuture<FileResult> analyzeFile(Job job, ExecutorService threadPool, ExecutorService reader, ExecutorService writer) {
+        FastaHandler handler = this.configuration.copyConfiguration(threadPool);
+        double[] seconds = new double[3];
+
+        return CompletableFuture.runAsync(() -> {
+            long parseStart = System.nanoTime();
+            try {
+                handler.generateFastaHandlerObject(job.fasta(), job.type(), this.verboseWorkers);
+            } catch (WrongSequenceTypeException | MalformattedFastaFileException e) {
+                throw new CompletionException(e);
+            }
+            seconds[0] = (System.nanoTime() - parseStart) / 1_000_000_000.0;
+        }, reader).thenCompose(parsed -> {
+            EntryScheduler scheduler = new EntryScheduler(this.configuration.numberThreads);
+            return handler.submitFastaEntries(threadPool, scheduler).thenRun(() -> {
+                seconds[1] = scheduler.getMakespanSeconds();
+                handler.countCachedResults();
+            });
+        }).thenApplyAsync(analyzed -> {
+            long writeStart = System.nanoTime();
+            this.writeResults(handler, threadPool);
+            seconds[2] = (System.nanoTime() - writeStart) / 1_000_000_000.0;
+            handler.getMetrics().finish();
+            return new FileResult(job, handler.fastaObjectList.size(), seconds[0], seconds[1], seconds[2], null, handler.getMetrics());
+        }, writer).exceptionally(throwable -> {
+            Throwable cause = (throwable instanceof CompletionException && throwable.getCause() != null) ? throwable.getCause() : throwable;
+            System.err.println("-> " + job.fasta() + ": " + cause.getMessage());
+            return new FileResult(job, 0, seconds[0], seconds[1], seconds[2], cause.getMessage(), handler.getMetrics());
+        });
+    }
+
+    private void writeResults(FastaHandler handler, ExecutorService threadPool) {
+        if (this.verbose) {
+            synchronized (this.consoleLock) {
+                handler.verbosePrinting();
+            }
+        }
+        if (this.outputDirectory != null) {
+            handler.generateOutputFiles(this.outputDirectory, this.translate);
+            if (this.sixFrames || this.orfs) {
+                handler.generateFrameOutputFiles(this.outputDirectory, this.sixFrames, this.orfs, this.minOrfLength, this.startCodons, threadPool);
+            }
+            if (this.kmerLength > 0) {
+                handler.generateKmerOutputFiles(this.outputDirectory, this.kmerLength, this.topKmers, threadPool);
+            }
+            if (this.profileWindow > 0) {
+                handler.generateProfileOutputFile(this.outputDirectory, this.profileWindow, this.profileStep, this.profileFormat, threadPool);
+            }
+            if (handler.motifScanner != null) {
+                handler.generateMotifOutputFile(this.outputDirectory);
+            }
+            if (this.duplicateReport) {
+                handler.generateDuplicateReport(this.outputDirectory);
+            }
+        }
+        System.out.println("-> Finished analyzing Input File: " + handler.filename);
+    }
+
+    private static void printSummary(List<FileResult> results, double elapsedSeconds) {
+        double parseSum = 0;
+        double analysisSum = 0;
+        double writeSum = 0;
+        int entries = 0;
+        int failed = 0;
+
+        System.out.println("\n-> Batch summary:");
+        System.out.println(String.format("\t%-40s %8s %10s %10s %10s", "Input File", "Entries", "Parse[s]", "Analyze[s]", "Write[s]"));
+        for (FileResult result : results) {
+            if (result.error() != null) {
+                failed++;
+                System.out.println(String.format("\t%-40s failed: %s", result.job().fasta(), result.error()));
+                continue;
+            }
+            System.out.println(String.format("\t%-40s %8d %10.3f %10.3f %10.3f", result.job().fasta(), result.entries(), result.parseSeconds(), result.analysisSeconds(), result.writeSeconds()));
+            parseSum += result.parseSeconds();
+            analysisSum += result.analysisSeconds();
+            writeSum += result.writeSeconds();
+            entries += result.entries();
+        }
+        System.out.println(String.format("\t%-40s %8d %10.3f %10.3f %10.3f", "Sum", entries, parseSum, analysisSum, writeSum));
+        System.out.println("-> Elapsed time: " + elapsedSeconds + " seconds for analyzing " + (results.size() - failed) + " of " + results.size() + " Input Files");
+    }
+}
@@ -0,0 +1,225 @@
+package org.analyzer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Channel that writes BGZF, the blocked gzip format of samtools and bgzip. The written bytes are split into blocks of
+ * at most MAX_BLOCK_INPUT bytes, every block is deflated as an independent gzip member on a worker pool, and the
+ * compressed blocks are written in order. On close the empty end of file block is appended, and, if an index file is
+ * given, a bgzip compatible .gzi index with the compressed and uncompressed offset of every block. The result can be
+ * read by any gzip reader, and random access tools like samtools faidx can index it.
+ */
+final class BgzfOutputChannel implements WritableByteChannel {
+    // like bgzip, so even an incompressible block fits into the 64 KiB limit of a BGZF block
+    static final int MAX_BLOCK_INPUT = 0xff00;
+    private static final int MAX_BLOCK_SIZE = 1 << 16;
+    private static final int HEADER_SIZE = 18;
+    private static final int FOOTER_SIZE = 8;
+    // compressed blocks waiting for the output, besides the block that is filled at the moment
+    private static final int BLOCKS_IN_FLIGHT = 256;
+    private static final byte[] EOF_BLOCK = {
+            0x1f, (byte) 0x8b, 8, 4, 0, 0, 0, 0, 0, (byte) 0xff, 6, 0, 'B', 'C', 2, 0, 0x1b, 0, 3, 0, 0, 0, 0, 0, 0, 0, 0, 0
+    };
+
+    /**
+     * Block that is compressed on the pool
+     *
+     * @param compressed     future of the complete BGZF block
+     * @param inflatedLength number of uncompressed bytes inside the block
+     */
+    private record PendingBlock(CompletableFuture<byte[]> compressed, int inflatedLength) {
+    }
+
+    private final WritableByteChannel output;
+    private final Executor compressionPool;
+    private final Path indexFile;
+    private final byte[] block;
+    private int blockLength;
+    private final Queue<PendingBlock> pendingBlocks = new ArrayDeque<>();
+    // compressed and uncompressed start offset of every block after the first one
+    private final List<long[]> blockOffsets = new ArrayList<>();
+    private long compressedOffset;
+    private long inflatedOffset;
+    private boolean open = true;
+
+    /**
+     * @param output          channel the compressed blocks are written to. It's closed by close()
+     * @param compressionPool pool the blocks are compressed on
+     * @param indexFile       path of the .gzi index written on close, null for no index
+     */
+    BgzfOutputChannel(WritableByteChannel output, Executor compressionPool, Path indexFile) {
+        this(output, compressionPool, indexFile, MAX_BLOCK_INPUT);
+    }
+
+    BgzfOutputChannel(WritableByteChannel output, Executor compressionPool, Path indexFile, int blockSize) {
+        this.output = output;
+        this.compressionPool = compressionPool;
+        this.indexFile = indexFile;
+        this.block = new byte[Math.min(blockSize, MAX_BLOCK_INPUT)];
+    }
+
+    /**
+     * Creates or truncates the file and writes its .gzi index next to it on close.
+     *
+     * @param file            path of the compressed file
+     * @param compressionPool pool the blocks are compressed on
+     * @return channel to the file
+     */
+    static BgzfOutputChannel open(Path file, Executor compressionPool) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        return new BgzfOutputChannel(channel, compressionPool, file.resolveSibling(file.getFileName() + ".gzi"));
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        int written = src.remaining();
+        while (src.hasRemaining()) {
+            int chunk = Math.min(src.remaining(), this.block.length - this.blockLength);
+            src.get(this.block, this.blockLength, chunk);
+            this.blockLength += chunk;
+            if (this.blockLength == this.block.length) {
+                this.submitBlock();
+            }
+        }
+        return written;
+    }
+
+    private void submitBlock() throws IOException {
+        byte[] data = Arrays.copyOf(this.block, this.blockLength);
+        this.pendingBlocks.add(new PendingBlock(CompletableFuture.supplyAsync(() -> compress(data), this.compressionPool), data.length));
+        this.blockLength = 0;
+        while (this.pendingBlocks.size() > BLOCKS_IN_FLIGHT) {
+            this.writeNextBlock();
+        }
+    }
+
+    private void writeNextBlock() throws IOException {
+        PendingBlock pending = this.pendingBlocks.poll();
+        byte[] compressed;
+        try {
+            compressed = pending.compressed().get();
+        } catch (ExecutionException ee) {
+            throw (ee.getCause() instanceof UncheckedIOException uioe) ? uioe.getCause() : new IOException(ee.getCause());
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while compressing the output file", ie);
+        }
+        if (this.compressedOffset > 0) {
+            this.blockOffsets.add(new long[]{this.compressedOffset, this.inflatedOffset});
+        }
+        this.writeFully(ByteBuffer.wrap(compressed));
+        this.compressedOffset += compressed.length;
+        this.inflatedOffset += pending.inflatedLength();
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            this.output.write(buffer);
+        }
+    }
+
+    /**
+     * @param data uncompressed bytes of one block
+     * @return the complete BGZF block: gzip header with the block size, deflated data, CRC32 and uncompressed size
+     */
+    static byte[] compress(byte[] data) {
+        byte[] deflated = new byte[MAX_BLOCK_SIZE];
+        int deflatedLength = deflate(data, Deflater.DEFAULT_COMPRESSION, deflated);
+        if (deflatedLength < 0) {
+            // incompressible data, stored blocks always fit
+            deflatedLength = deflate(data, Deflater.NO_COMPRESSION, deflated);
+        }
+        if (deflatedLength < 0) {
+            throw new UncheckedIOException(new IOException("BGZF block exceeds " + MAX_BLOCK_SIZE + " bytes"));
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data);
+
+        ByteBuffer block = ByteBuffer.allocate(HEADER_SIZE + deflatedLength + FOOTER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        // same header as the end of file block, only the block size differs
+        block.put(EOF_BLOCK, 0, 16);
+        block.putShort((short) (block.capacity() - 1));
+        block.put(deflated, 0, deflatedLength);
+        block.putInt((int) crc.getValue());
+        block.putInt(data.length);
+        return block.array();
+    }
+
+    /**
+     * @return length of the deflated data, -1 if the block would get larger than MAX_BLOCK_SIZE
+     */
+    private static int deflate(byte[] data, int level, byte[] deflated) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            int limit = MAX_BLOCK_SIZE - HEADER_SIZE - FOOTER_SIZE;
+            int length = deflater.deflate(deflated, 0, limit);
+            return deflater.finished() ? length : -1;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private void writeIndex() throws IOException {
+        ByteBuffer index = ByteBuffer.allocate(8 + 16 * this.blockOffsets.size()).order(ByteOrder.LITTLE_ENDIAN);
+        index.putLong(this.blockOffsets.size());
+        for (long[] offsets : this.blockOffsets) {
+            index.putLong(offsets[0]);
+            index.putLong(offsets[1]);
+        }
+        index.flip();
+        try (FileChannel channel = FileChannel.open(this.indexFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (index.hasRemaining()) {
+                channel.write(index);
+            }
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return this.open;
+    }
+
+    /**
+     * Writes the last block, the end of file block and the index.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!this.open) {
+            return;
+        }
+        this.open = false;
+        try {
+            if (this.blockLength > 0) {
+                this.submitBlock();
+            }
+            while (!this.pendingBlocks.isEmpty()) {
+                this.writeNextBlock();
+            }
+            this.writeFully(ByteBuffer.wrap(EOF_BLOCK));
+        } finally {
+            this.output.close();
+        }
+        if (this.indexFile != null) {
+            this.writeIndex();
+        }
+    }
+}
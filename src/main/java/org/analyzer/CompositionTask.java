@@ -0,0 +1,101 @@
+package org.analyzer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Fork/join task for the compositions of one large sequence. The sequence is split into chunks of CHUNK_BASES, every
+ * chunk counts its bases and, for DNA/RNA, translates and counts its codons. Chunk borders are multiples of 3, so
+ * every chunk starts in frame +1, and multiples of 32, so they fall on the longs of a PackedSequence. Compositions
+ * are plain counts, so the partial results of the chunks are merged by adding them up.
+ * The task returns {composition, translatedComposition}, the second one is null if nothing is translated.
+ */
+final class CompositionTask extends RecursiveTask<long[][]> {
+    private static final long serialVersionUID = 1L;
+    static final int CHUNK_BASES = 96 * 16384;
+
+    private final PackedSequence packedSequence;
+    private final byte[] sequence;
+    private final GeneticCode geneticCode;
+    private final int from;
+    private final int to;
+    // end of the last complete codon of the whole sequence
+    private final int codonEnd;
+
+    private CompositionTask(PackedSequence packedSequence, byte[] sequence, GeneticCode geneticCode, int from, int to, int codonEnd) {
+        this.packedSequence = packedSequence;
+        this.sequence = sequence;
+        this.geneticCode = geneticCode;
+        this.from = from;
+        this.to = to;
+        this.codonEnd = codonEnd;
+    }
+
+    /**
+     * @param packedSequence packed DNA/RNA sequence
+     * @param geneticCode    translation table, null if the sequence shouldn't be translated
+     * @return task over the whole sequence
+     */
+    static CompositionTask of(PackedSequence packedSequence, GeneticCode geneticCode) {
+        int length = packedSequence.length();
+        return new CompositionTask(packedSequence, null, geneticCode, 0, length, length - length % 3);
+    }
+
+    /**
+     * @param sequence    uppercase sequence
+     * @param geneticCode translation table, null if the sequence shouldn't be translated
+     * @return task over the whole sequence
+     */
+    static CompositionTask of(String sequence, GeneticCode geneticCode) {
+        int length = sequence.length();
+        return new CompositionTask(null, sequence.getBytes(StandardCharsets.ISO_8859_1), geneticCode, 0, length, length - length % 3);
+    }
+
+    @Override
+    protected long[][] compute() {
+        if (this.to - this.from <= CHUNK_BASES) {
+            return this.countChunk();
+        }
+        int middle = this.from + Math.max(1, (this.to - this.from) / 2 / CHUNK_BASES) * CHUNK_BASES;
+        CompositionTask right = new CompositionTask(this.packedSequence, this.sequence, this.geneticCode, middle, this.to, this.codonEnd);
+        right.fork();
+        long[][] left = new CompositionTask(this.packedSequence, this.sequence, this.geneticCode, this.from, middle, this.codonEnd).compute();
+        return merge(left, right.join());
+    }
+
+    private long[][] countChunk() {
+        long[] composition = new long[FastaEntry.COMPOSITION_SIZE];
+        if (this.packedSequence != null) {
+            this.packedSequence.countComposition(this.from, this.to, composition);
+        } else {
+            FastaEntry.SequenceHandler.countComposition(this.sequence, this.from, this.to, composition);
+        }
+        if (this.geneticCode == null) {
+            return new long[][]{composition, null};
+        }
+
+        long[] translatedComposition = new long[FastaEntry.COMPOSITION_SIZE];
+        int translateTo = Math.min(this.to, this.codonEnd);
+        if (translateTo > this.from) {
+            byte[] peptide = new byte[(translateTo - this.from) / 3];
+            if (this.packedSequence != null) {
+                this.geneticCode.translate(this.packedSequence, this.from, translateTo, peptide, 0);
+            } else {
+                this.geneticCode.translate(this.sequence, this.from, translateTo, peptide, 0);
+            }
+            FastaEntry.SequenceHandler.countComposition(peptide, 0, peptide.length, translatedComposition);
+        }
+        return new long[][]{composition, translatedComposition};
+    }
+
+    private static long[][] merge(long[][] left, long[][] right) {
+        for (int part = 0; part < left.length; part++) {
+            if (left[part] != null) {
+                for (int c = 0; c < left[part].length; c++) {
+                    left[part][c] += right[part][c];
+                }
+            }
+        }
+        return left;
+    }
+}
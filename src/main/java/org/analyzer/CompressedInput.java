@@ -0,0 +1,239 @@
+package org.analyzer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+/**
+ * Opens plain, gzip or BGZF compressed input files as one channel of uncompressed bytes. The format is detected by
+ * the first bytes of the file, not by the file extension. Gzip files are inflated by a GZIPInputStream on the reading
+ * thread. BGZF files are a series of small, independent gzip members: they are read one after another, inflated in
+ * parallel on a worker pool and handed to the reader in file order.
+ */
+final class CompressedInput {
+    // inflated or inflating blocks ahead of the reader, at most 64 KiB each
+    static final int BLOCKS_IN_FLIGHT = 256;
+
+    private static final int GZIP_HEADER_SIZE = 12;
+    private static final int FEXTRA = 4;
+
+    enum Format {
+        PLAIN, GZIP, BGZF
+    }
+
+    private CompressedInput() {
+    }
+
+    /**
+     * @param file input file
+     * @return compression format of the file
+     */
+    static Format formatOf(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return formatOf(channel);
+        }
+    }
+
+    private static Format formatOf(FileChannel channel) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(GZIP_HEADER_SIZE + 4);
+        channel.read(head, 0);
+        byte[] bytes = head.array();
+        if (head.position() < 2 || bytes[0] != (byte) 0x1f || bytes[1] != (byte) 0x8b) {
+            return Format.PLAIN;
+        }
+        // BGZF marks its blocks with the extra subfield BC, which holds the size of the block
+        boolean bgzf = head.position() == head.capacity() && (bytes[3] & FEXTRA) != 0 && bytes[12] == 'B' && bytes[13] == 'C';
+        return bgzf ? Format.BGZF : Format.GZIP;
+    }
+
+    /**
+     * Opens the input file for reading the uncompressed bytes.
+     *
+     * @param file              input file, plain or compressed
+     * @param decompressionPool pool BGZF blocks are inflated on, null for inflating them on the reading thread
+     * @return channel of the uncompressed bytes
+     */
+    static ReadableByteChannel open(Path file, Executor decompressionPool) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            Format format = formatOf(channel);
+            if (format == Format.PLAIN) {
+                return channel;
+            }
+            if (format == Format.BGZF && decompressionPool != null) {
+                return new BgzfChannel(channel, decompressionPool);
+            }
+            // a BGZF file is also a valid multi member gzip file
+            return Channels.newChannel(new GZIPInputStream(Channels.newInputStream(channel), 1 << 16));
+        } catch (IOException ioe) {
+            channel.close();
+            throw ioe;
+        }
+    }
+
+    /**
+     * Reads the BGZF blocks of the input sequentially and inflates up to BLOCKS_IN_FLIGHT of them on the pool, while
+     * the reader consumes the already inflated blocks in order.
+     */
+    private static final class BgzfChannel implements ReadableByteChannel {
+        private final ReadableByteChannel input;
+        private final Executor decompressionPool;
+        private final Queue<CompletableFuture<byte[]>> pendingBlocks = new ArrayDeque<>();
+        private final ByteBuffer header = ByteBuffer.allocate(GZIP_HEADER_SIZE);
+        private ByteBuffer currentBlock = ByteBuffer.allocate(0);
+        private boolean endOfInput;
+        private boolean open = true;
+
+        BgzfChannel(ReadableByteChannel input, Executor decompressionPool) {
+            this.input = input;
+            this.decompressionPool = decompressionPool;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            int transferred = 0;
+            while (dst.hasRemaining()) {
+                if (!this.currentBlock.hasRemaining()) {
+                    this.submitBlocks();
+                    CompletableFuture<byte[]> next = this.pendingBlocks.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    this.currentBlock = ByteBuffer.wrap(await(next));
+                    continue;
+                }
+                int chunk = Math.min(dst.remaining(), this.currentBlock.remaining());
+                dst.put(this.currentBlock.array(), this.currentBlock.position(), chunk);
+                this.currentBlock.position(this.currentBlock.position() + chunk);
+                transferred += chunk;
+            }
+            return (transferred == 0 && dst.hasRemaining()) ? -1 : transferred;
+        }
+
+        private void submitBlocks() throws IOException {
+            while (!this.endOfInput && this.pendingBlocks.size() < BLOCKS_IN_FLIGHT) {
+                byte[] block = this.readBlock();
+                if (block == null) {
+                    this.endOfInput = true;
+                } else {
+                    this.pendingBlocks.add(CompletableFuture.supplyAsync(() -> inflate(block), this.decompressionPool));
+                }
+            }
+        }
+
+        /**
+         * @return the rest of the next block after its header: compressed data, CRC32 and uncompressed size.
+         * null at the end of the input
+         */
+        private byte[] readBlock() throws IOException {
+            this.header.clear();
+            if (!this.readFully(this.header) && this.header.position() == 0) {
+                return null;
+            }
+            byte[] head = this.header.array();
+            if (this.header.hasRemaining() || head[0] != (byte) 0x1f || head[1] != (byte) 0x8b || (head[3] & FEXTRA) == 0) {
+                throw new IOException("Invalid BGZF block header");
+            }
+            ByteBuffer extra = ByteBuffer.allocate((head[10] & 0xFF) | (head[11] & 0xFF) << 8);
+            if (!this.readFully(extra)) {
+                throw new IOException("Truncated BGZF block header");
+            }
+            int blockSize = blockSize(extra.array());
+            ByteBuffer block = ByteBuffer.allocate(blockSize - GZIP_HEADER_SIZE - extra.capacity());
+            if (!this.readFully(block)) {
+                throw new IOException("Truncated BGZF block");
+            }
+            return block.array();
+        }
+
+        private static int blockSize(byte[] extra) throws IOException {
+            for (int i = 0; i + 4 <= extra.length; ) {
+                int length = (extra[i + 2] & 0xFF) | (extra[i + 3] & 0xFF) << 8;
+                if (extra[i] == 'B' && extra[i + 1] == 'C' && length == 2 && i + 6 <= extra.length) {
+                    return ((extra[i + 4] & 0xFF) | (extra[i + 5] & 0xFF) << 8) + 1;
+                }
+                i += 4 + length;
+            }
+            throw new IOException("BGZF block without block size");
+        }
+
+        private boolean readFully(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                if (this.input.read(buffer) == -1) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static byte[] inflate(byte[] block) {
+            int compressedLength = block.length - 8;
+            int crc = readIntLE(block, compressedLength);
+            byte[] inflated = new byte[readIntLE(block, compressedLength + 4)];
+            Inflater inflater = new Inflater(true);
+            try {
+                inflater.setInput(block, 0, compressedLength);
+                int length = 0;
+                while (length < inflated.length && !inflater.finished()) {
+                    int inflatedBytes = inflater.inflate(inflated, length, inflated.length - length);
+                    if (inflatedBytes == 0 && inflater.needsInput()) {
+                        break;
+                    }
+                    length += inflatedBytes;
+                }
+                CRC32 checksum = new CRC32();
+                checksum.update(inflated, 0, length);
+                if (length != inflated.length || (int) checksum.getValue() != crc) {
+                    throw new UncheckedIOException(new IOException("Corrupt BGZF block"));
+                }
+                return inflated;
+            } catch (DataFormatException dfe) {
+                throw new UncheckedIOException(new IOException("Corrupt BGZF block: " + dfe.getMessage()));
+            } finally {
+                inflater.end();
+            }
+        }
+
+        private static int readIntLE(byte[] bytes, int offset) {
+            return (bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8 | (bytes[offset + 2] & 0xFF) << 16 | (bytes[offset + 3] & 0xFF) << 24;
+        }
+
+        private static byte[] await(CompletableFuture<byte[]> block) throws IOException {
+            try {
+                return block.get();
+            } catch (ExecutionException ee) {
+                throw (ee.getCause() instanceof UncheckedIOException uioe) ? uioe.getCause() : new IOException(ee.getCause());
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while inflating the input file", ie);
+            }
+        }
+
+        @Override
+        public boolean isOpen() {
+            return this.open;
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.open = false;
+            this.pendingBlocks.forEach(block -> block.cancel(false));
+            this.pendingBlocks.clear();
+            this.input.close();
+        }
+    }
+}
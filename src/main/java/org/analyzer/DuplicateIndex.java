@@ -0,0 +1,100 @@
+package org.analyzer;
+
+/**
+ * Finds entries with the same sequence while a file is parsed. The sequences are hashed with the ResultCache.Hasher
+ * into an open addressing table with primitive long keys, so an entry costs two array slots instead of a map entry.
+ * A hash match is confirmed by comparing the sequences, two different sequences are never grouped.
+ * The first entry of a sequence is the representative of its group, every later entry with the same sequence shares
+ * its sequence object and gets its results after the representative is calculated.
+ * The index is filled by the single parsing thread of a file, so it isn't synchronized.
+ */
+final class DuplicateIndex {
+    private static final long SEED = 0x5851F42D4C957F2DL;
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private FastaEntry[] representatives = new FastaEntry[INITIAL_CAPACITY];
+    private int size;
+    private int duplicates;
+
+    /**
+     * Looks up the sequence of the entry. A new sequence makes the entry a representative, a known sequence links the
+     * entry to the representative of its group.
+     *
+     * @param entry entry with its sequence set
+     * @return the representative of the sequence, null if the entry is the first one with this sequence
+     */
+    FastaEntry add(FastaEntry entry) {
+        long key = hashOf(entry);
+        int mask = this.keys.length - 1;
+        int slot = (int) (key ^ (key >>> 32)) & mask;
+        while (this.representatives[slot] != null) {
+            FastaEntry candidate = this.representatives[slot];
+            if (this.keys[slot] == key && sameSequence(candidate, entry)) {
+                entry.shareSequenceOf(candidate);
+                this.duplicates++;
+                return candidate;
+            }
+            slot = (slot + 1) & mask;
+        }
+        this.keys[slot] = key;
+        this.representatives[slot] = entry;
+        if (++this.size > this.keys.length * 3 / 4) {
+            this.grow();
+        }
+        return null;
+    }
+
+    private void grow() {
+        long[] oldKeys = this.keys;
+        FastaEntry[] oldRepresentatives = this.representatives;
+        this.keys = new long[oldKeys.length << 1];
+        this.representatives = new FastaEntry[oldKeys.length << 1];
+        int mask = this.keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldRepresentatives[i] == null) {
+                continue;
+            }
+            int slot = (int) (oldKeys[i] ^ (oldKeys[i] >>> 32)) & mask;
+            while (this.representatives[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            this.keys[slot] = oldKeys[i];
+            this.representatives[slot] = oldRepresentatives[i];
+        }
+    }
+
+    private static long hashOf(FastaEntry entry) {
+        ResultCache.Hasher hasher = new ResultCache.Hasher(SEED);
+        if (entry.getPackedSequence() != null) {
+            entry.getPackedSequence().hashInto(hasher);
+        } else {
+            hasher.putString(entry.getSequence());
+        }
+        return hasher.finish().high();
+    }
+
+    private static boolean sameSequence(FastaEntry first, FastaEntry second) {
+        if (first.getSequenceLength() != second.getSequenceLength()) {
+            return false;
+        }
+        if (first.getPackedSequence() != null && second.getPackedSequence() != null) {
+            return first.getPackedSequence().contentEquals(second.getPackedSequence());
+        }
+        return first.getPackedSequence() == null && second.getPackedSequence() == null && first.getSequence().equals(second.getSequence());
+    }
+
+    /**
+     * @return number of distinct sequences
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * @return number of entries that share the sequence of an earlier entry
+     */
+    int getDuplicates() {
+        return this.duplicates;
+    }
+}
@@ -3,9 +3,10 @@ package org.analyzer;
 import java.util.Map;
 
 /**
- * Interface for provided methods for class FastaEntry
+ * Interface for provided methods for class FastaEntry. Public, so the results of a FastaHandler session can be read
+ * by code outside of this package.
  */
-interface EntryI {
+public interface EntryI {
 
     void calcAlphabet();
 
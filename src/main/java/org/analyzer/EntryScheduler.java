@@ -0,0 +1,214 @@
+package org.analyzer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size aware scheduling of the entry calculations of one file. The sequence lengths are known after parsing, so the
+ * tasks are submitted largest first: a huge entry at the end of a file can't keep one thread busy long after all
+ * others are done. Large entries are split into chunks by a CompositionTask, small entries are packed into batches,
+ * so the task overhead stays small. On a ForkJoinPool idle threads steal the remaining batches and chunks from the
+ * busy ones. While waiting, the scheduler reports stalls instead of hiding them, and it measures the makespan, the
+ * wall clock time from the submission until the last task is done.
+ * Duplicates of a representative that is submitted too aren't calculated at all, they complete with the task of their
+ * representative, which hands its results to them.
+ */
+final class EntryScheduler {
+    // entries with at least this many bases are split into chunks by a CompositionTask
+    static final int CHUNKED_ENTRY_BASES = 2 * CompositionTask.CHUNK_BASES;
+    // small entries are calculated in batches of up to this many bases, at least BATCHES_PER_THREAD per thread
+    private static final long MAX_BATCH_BASES = 1 << 20;
+    private static final int BATCHES_PER_THREAD = 4;
+    // a stall is reported if no task finished within this time
+    static final long STALL_REPORT_SECONDS = 60;
+
+    private final int numberThreads;
+    private final AtomicInteger finishedTasks = new AtomicInteger();
+    private final AtomicLong busyNanos = new AtomicLong();
+    // labels of the running tasks and how many tasks with that label are running, entries may share their seqID
+    private final Map<String, Integer> runningTasks = new ConcurrentHashMap<>();
+    private final Map<FastaEntry, CompletableFuture<Void>> taskOfEntry = new IdentityHashMap<>();
+    private CompletableFuture<Void> completion;
+    private RunMetrics metrics;
+    private int taskCount;
+    private int entryCount;
+    private int sharedCount;
+    private long largestEntry;
+    private long submitTime;
+    private volatile long finishTime;
+
+    /**
+     * @param numberThreads number of threads of the pool the tasks are submitted to
+     */
+    EntryScheduler(int numberThreads) {
+        this.numberThreads = Math.max(1, numberThreads);
+    }
+
+    /**
+     * @param metrics run the calculation tasks are recorded for, null for no instrumentation
+     */
+    void setMetrics(RunMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return the calculation of the entry as one task, chunked for large sequences
+     */
+    static Runnable calculation(FastaEntry entry) {
+        return (entry.getSequenceLength() >= CHUNKED_ENTRY_BASES) ? entry::runChunked : entry;
+    }
+
+    /**
+     * Submits the calculations of all entries, largest first. Can only be called once per scheduler.
+     *
+     * @param entries    prepared entries of one file
+     * @param threadPool pool the entries are calculated on. It's not shut down by the scheduler
+     * @return future that completes when all entries are calculated
+     */
+    CompletableFuture<Void> submit(Collection<FastaEntry> entries, Executor threadPool) {
+        this.submitTime = System.nanoTime();
+        Set<FastaEntry> submitted = Collections.newSetFromMap(new IdentityHashMap<>());
+        submitted.addAll(entries);
+        List<FastaEntry> bySize = new ArrayList<>(entries.size());
+        List<FastaEntry> shared = new ArrayList<>();
+        for (FastaEntry entry : entries) {
+            if (entry.getRepresentative() != null && submitted.contains(entry.getRepresentative())) {
+                shared.add(entry);
+            } else {
+                bySize.add(entry);
+            }
+        }
+        bySize.sort(Comparator.comparingInt(FastaEntry::getSequenceLength).reversed());
+        this.entryCount = entries.size();
+        this.sharedCount = shared.size();
+        this.largestEntry = bySize.isEmpty() ? 0 : bySize.get(0).getSequenceLength();
+
+        long totalBases = 0;
+        for (FastaEntry entry : bySize) {
+            totalBases += entry.getSequenceLength();
+        }
+        // batches stay small enough that every thread still gets a few of them
+        long batchBases = Math.max(1, Math.min(MAX_BATCH_BASES, totalBases / ((long) this.numberThreads * BATCHES_PER_THREAD)));
+
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        List<FastaEntry> batch = new ArrayList<>();
+        long basesInBatch = 0;
+        for (FastaEntry entry : bySize) {
+            if (entry.getSequenceLength() >= CHUNKED_ENTRY_BASES) {
+                CompletableFuture<Void> task = this.submitTask(entry.getSeqID(), entry::runChunked, entry.getSequenceLength(), 1, threadPool);
+                this.taskOfEntry.put(entry, task);
+                tasks.add(task);
+                continue;
+            }
+            batch.add(entry);
+            basesInBatch += entry.getSequenceLength();
+            if (basesInBatch >= batchBases) {
+                tasks.add(this.submitBatch(batch, threadPool));
+                batch = new ArrayList<>();
+                basesInBatch = 0;
+            }
+        }
+        if (!batch.isEmpty()) {
+            tasks.add(this.submitBatch(batch, threadPool));
+        }
+        for (FastaEntry entry : shared) {
+            this.taskOfEntry.put(entry, this.taskOfEntry.get(entry.getRepresentative()));
+        }
+        this.taskCount = tasks.size();
+        this.completion = CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).whenComplete((done, throwable) -> this.finishTime = System.nanoTime());
+        return this.completion;
+    }
+
+    private CompletableFuture<Void> submitBatch(List<FastaEntry> batch, Executor threadPool) {
+        String label = (batch.size() == 1) ? batch.get(0).getSeqID() : "batch of " + batch.size() + " entries from " + batch.get(0).getSeqID();
+        long bases = 0;
+        for (FastaEntry entry : batch) {
+            bases += entry.getSequenceLength();
+        }
+        CompletableFuture<Void> task = this.submitTask(label, () -> batch.forEach(FastaEntry::run), bases, batch.size(), threadPool);
+        for (FastaEntry entry : batch) {
+            this.taskOfEntry.put(entry, task);
+        }
+        return task;
+    }
+
+    /**
+     * @param entry submitted entry
+     * @return future of the task that calculates the entry
+     */
+    CompletableFuture<Void> completionOf(FastaEntry entry) {
+        return this.taskOfEntry.get(entry);
+    }
+
+    private CompletableFuture<Void> submitTask(String label, Runnable task, long bases, int entries, Executor threadPool) {
+        Runnable calculation = (this.metrics != null) ? this.metrics.stage(RunMetrics.Stage.COMPUTE).measured(task, bases, entries) : task;
+        return CompletableFuture.runAsync(() -> {
+            long start = System.nanoTime();
+            this.runningTasks.merge(label, 1, Integer::sum);
+            try {
+                calculation.run();
+            } finally {
+                this.runningTasks.computeIfPresent(label, (running, count) -> (count > 1) ? count - 1 : null);
+                this.busyNanos.addAndGet(System.nanoTime() - start);
+                this.finishedTasks.incrementAndGet();
+            }
+        }, threadPool);
+    }
+
+    /**
+     * Waits until all submitted tasks are done. If no task finishes within STALL_REPORT_SECONDS, the running tasks are
+     * reported and the scheduler keeps waiting.
+     *
+     * @param filename name of the file for the reports
+     */
+    void awaitCompletion(String filename) throws InterruptedException, ExecutionException {
+        // no task is finished at the submission, so the first interval without a finished task is reported too
+        int lastFinished = 0;
+        while (true) {
+            try {
+                this.completion.get(STALL_REPORT_SECONDS, TimeUnit.SECONDS);
+                return;
+            } catch (TimeoutException te) {
+                int finished = this.finishedTasks.get();
+                if (finished == lastFinished) {
+                    System.err.println("-> Stall warning: no calculation of " + filename + " finished within " + STALL_REPORT_SECONDS + " seconds. " +
+                            finished + " of " + this.taskCount + " tasks are done, still running: " + this.runningTasks.keySet());
+                }
+                lastFinished = finished;
+            }
+        }
+    }
+
+    /**
+     * @return wall clock time from the submission until the last task finished, in seconds
+     */
+    double getMakespanSeconds() {
+        return (this.finishTime - this.submitTime) / 1_000_000_000.0;
+    }
+
+    /**
+     * @return summary of the makespan and the thread utilization. Utilization well below 100 % means threads were idle
+     * while others were still busy
+     */
+    String makespanReport(String filename) {
+        double makespan = this.getMakespanSeconds();
+        double utilization = (makespan > 0) ? this.busyNanos.get() / 1_000_000_000.0 / (makespan * this.numberThreads) * 100 : 100;
+        return "-> Makespan: " + String.format("%.3f", makespan) + " seconds for " + this.entryCount + " entries of " + filename +
+                " in " + this.taskCount + " tasks on " + this.numberThreads + " threads (largest entry: " + this.largestEntry +
+                ((this.sharedCount > 0) ? ", duplicates sharing results: " + this.sharedCount : "") + ", thread utilization: " + String.format("%.1f", Math.min(100, utilization)) + " %)";
+    }
+}
@@ -2,6 +2,30 @@ package org.analyzer;
 
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -154,7 +178,14 @@ public class FastaAnalyzerTest {
         testhandler.numberThreads = 1;
         testhandler.processFastaEntries();
 
-        assertEquals(6.333508902276007, testhandler.fastaObjectList.get(0).getIsoelectricPoint());
+        double isoelectricPoint = testhandler.fastaObjectList.get(0).getIsoelectricPoint();
+        assertEquals(6.3529, isoelectricPoint, SequenceType.DEFAULT_PI_TOLERANCE);
+
+        // netCharge curve of the batch api has to cross 0 at the iso electric Point
+        long[][] compositions = {testhandler.fastaObjectList.get(0).getComposition()};
+        double[][] curves = SequenceType.PEPTIDE.netChargeCurves(compositions, new double[]{isoelectricPoint - 0.01, isoelectricPoint + 0.01});
+        assertTrue(curves[0][0] > 0);
+        assertTrue(curves[0][1] < 0);
     }
 
     /**
@@ -220,4 +251,786 @@ public class FastaAnalyzerTest {
         assertTrue(hasWrongSequenceType);
 
     }
+
+    /**
+     * Unittest for the byte level parser. Has to produce the same entries as the Scanner based parser.
+     */
+    @Test
+    void byteParserMatchesScannerParser() throws WrongSequenceTypeException, MalformattedFastaFileException {
+        FastaHandler testhandler = FastaHandler.getInstance();
+        testhandler.generateFastaHandlerObject("TestFiles/test.fasta", "dna", this.verboseWorkers);
+        List<FastaEntry> byteParsed = testhandler.fastaObjectList;
+
+        testhandler.parseFastaScanner("TestFiles/test.fasta", this.verboseWorkers);
+        List<FastaEntry> scannerParsed = testhandler.fastaObjectList;
+
+        assertEquals(scannerParsed.size(), byteParsed.size());
+        for (int i = 0; i < scannerParsed.size(); i++) {
+            assertEquals(scannerParsed.get(i).getSeqID(), byteParsed.get(i).getSeqID());
+            assertEquals(scannerParsed.get(i).getSequence(), byteParsed.get(i).getSequence());
+        }
+    }
+
+    /**
+     * Unittest for the streaming mode. Output has to be the same as the output of the batch mode.
+     */
+    @Test
+    void streamingMatchesBatchOutput() throws WrongSequenceTypeException, MalformattedFastaFileException, IOException {
+        Path batchDir = Files.createTempDirectory("batch");
+        Path streamDir = Files.createTempDirectory("stream");
+
+        FastaHandler testhandler = FastaHandler.getInstance();
+        testhandler.numberThreads = 2;
+        testhandler.generateFastaHandlerObject("TestFiles/test.fasta", "dna", this.verboseWorkers);
+        testhandler.processFastaEntries();
+        testhandler.generateOutputFiles(batchDir + "/", true);
+
+        testhandler.streamFastaEntries("TestFiles/test.fasta", "dna", streamDir + "/", true, this.verboseWorkers);
+
+        assertEquals(Files.readString(batchDir.resolve("test_analyzed_translated.fasta")), Files.readString(streamDir.resolve("test_analyzed_translated.fasta")));
+    }
+
+    /**
+     * Unittest for the multi file mode. Files on the shared pool need the same output as analyzed one by one, a
+     * malformatted file must not stop the other files.
+     */
+    @Test
+    void multiFileBatchMatchesSingleFiles() throws WrongSequenceTypeException, MalformattedFastaFileException, IOException {
+        Path singleDir = Files.createTempDirectory("single");
+        Path multiDir = Files.createTempDirectory("multi");
+
+        FastaHandler testhandler = FastaHandler.getInstance();
+        testhandler.numberThreads = 2;
+        for (String[] file : new String[][]{{"test", "dna"}, {"peptide", "peptide"}}) {
+            testhandler.generateFastaHandlerObject("TestFiles/" + file[0] + ".fasta", file[1], this.verboseWorkers);
+            testhandler.processFastaEntries();
+            testhandler.generateOutputFiles(singleDir + "/", false);
+        }
+
+        List<BatchAnalyzer.FileResult> results = new BatchAnalyzer(testhandler, multiDir + "/", false, false, this.verboseWorkers).run(List.of(
+                new BatchAnalyzer.Job("TestFiles/test.fasta", "dna"),
+                new BatchAnalyzer.Job("TestFiles/malformated.fasta", "dna"),
+                new BatchAnalyzer.Job("TestFiles/peptide.fasta", "peptide")));
+
+        assertEquals(660, results.get(0).entries());
+        assertNotNull(results.get(1).error());
+        assertEquals(Files.readString(singleDir.resolve("test_analyzed.fasta")), Files.readString(multiDir.resolve("test_analyzed.fasta")));
+        assertEquals(Files.readString(singleDir.resolve("peptide_analyzed.fasta")), Files.readString(multiDir.resolve("peptide_analyzed.fasta")));
+    }
+
+    /**
+     * Unittest for the virtual execution mode. Reading and writing every file on its own thread must not change the
+     * output files.
+     */
+    @Test
+    void virtualModeMatchesPlatformMode() throws IOException {
+        List<BatchAnalyzer.Job> jobs = List.of(new BatchAnalyzer.Job("TestFiles/dna.fasta", "dna"), new BatchAnalyzer.Job("TestFiles/peptide.fasta", "peptide"), new BatchAnalyzer.Job("TestFiles/rna.fasta", "rna"));
+        Path platformDir = Files.createTempDirectory("platform");
+        Path virtualDir = Files.createTempDirectory("virtual");
+
+        new BatchAnalyzer(new FastaHandler(2), platformDir + "/", true, false, this.verboseWorkers).run(jobs);
+        BatchAnalyzer virtualBatch = new BatchAnalyzer(new FastaHandler(2), virtualDir + "/", true, false, this.verboseWorkers);
+        virtualBatch.setExecutionMode(BatchAnalyzer.ExecutionMode.VIRTUAL, BatchAnalyzer.VIRTUAL_FILES_IN_FLIGHT);
+        virtualBatch.run(jobs);
+
+        for (String output : List.of("dna_analyzed_translated.fasta", "peptide_analyzed_translated.fasta", "rna_analyzed_translated.fasta")) {
+            assertEquals(Files.readString(platformDir.resolve(output)), Files.readString(virtualDir.resolve(output)));
+        }
+    }
+
+    /**
+     * Unittest for the output names of a batch. Only known extensions are cut from the input names, and two inputs with
+     * the same base name are rejected before any file is written, instead of overwriting each other's output.
+     */
+    @Test
+    void batchRejectsSameOutputNames() throws Exception {
+        assertEquals("sample.v2", FastaHandler.baseName("sample.v2.fasta"));
+        assertEquals("x", FastaHandler.baseName("x.fa.gz"));
+        assertEquals("reads", FastaHandler.baseName("reads"));
+
+        Path outputDirectory = Files.createTempDirectory("batch_names");
+        BatchAnalyzer batch = new BatchAnalyzer(new FastaHandler(1), outputDirectory + "/", false, false, this.verboseWorkers);
+        IllegalArgumentException collision = assertThrows(IllegalArgumentException.class, () -> batch.run(List.of(
+                new BatchAnalyzer.Job("TestFiles/dna.fasta", "dna"), new BatchAnalyzer.Job("other/dna.fasta.gz", "dna"))));
+        assertTrue(collision.getMessage().contains("other/dna.fasta.gz"));
+        assertEquals(0, outputDirectory.toFile().list().length);
+        batch.checkOutputNames(List.of(new BatchAnalyzer.Job("a/sample.v1.fasta", "dna"), new BatchAnalyzer.Job("a/sample.v2.fasta", "dna")));
+        Files.delete(outputDirectory);
+    }
+
+    /**
+     * Unittest for independent sessions. Two sessions with different files and sequence types running at the same
+     * time must not overwrite each other's entries or sequence type.
+     */
+    @Test
+    void concurrentSessionsKeepTheirResults() throws Exception {
+        ExecutorService sharedPool = Executors.newFixedThreadPool(2);
+        FastaHandler dnaSession = new FastaHandler(sharedPool, 2);
+        FastaHandler peptideSession = new FastaHandler(1);
+
+        Thread peptideJob = new Thread(() -> {
+            try {
+                for (int i = 0; i < 20; i++) {
+                    peptideSession.generateFastaHandlerObject("TestFiles/peptide.fasta", "peptide", this.verboseWorkers);
+                    peptideSession.processFastaEntries();
+                }
+            } catch (WrongSequenceTypeException | MalformattedFastaFileException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        peptideJob.start();
+        for (int i = 0; i < 5; i++) {
+            dnaSession.generateFastaHandlerObject("TestFiles/test.fasta", "dna", this.verboseWorkers);
+            dnaSession.processFastaEntries();
+        }
+        peptideJob.join();
+        // the shared pool belongs to the caller
+        assertFalse(sharedPool.isShutdown());
+        sharedPool.shutdown();
+
+        assertEquals(SequenceType.DNA, dnaSession.getSequenceType());
+        assertEquals(660, dnaSession.getFastaEntries().size());
+        assertEquals(SequenceType.PEPTIDE, peptideSession.getSequenceType());
+        assertEquals(2, peptideSession.getFastaEntries().size());
+        assertNotEquals(0.0, peptideSession.getFastaEntries().get(0).getIsoelectricPoint());
+        assertNotEquals(0.0, dnaSession.getFastaEntries().get(0).getMeltingPoint());
+    }
+
+    /**
+     * Unittest for the indexed mode. The written .fai has to match samtools and the indexed entry has to get the
+     * same calculations as the fully parsed one.
+     */
+    @Test
+    void indexedEntryMatchesParsedEntry() throws WrongSequenceTypeException, MalformattedFastaFileException, IOException {
+        Path fasta = Files.createTempDirectory("indexed").resolve("peptide.fasta");
+        Files.copy(Path.of("TestFiles/peptide.fasta"), fasta);
+
+        FastaHandler testhandler = FastaHandler.getInstance();
+        testhandler.numberThreads = 1;
+        testhandler.generateFastaHandlerObject(fasta.toString(), "peptide", List.of("Seq2", "SeqID:"), this.verboseWorkers);
+        testhandler.processFastaEntries();
+
+        assertEquals(List.of("SeqID:\t174\t16\t50\t51", "Seq2\t8\t200\t8\t9"), Files.readAllLines(FastaIndex.indexPath(fasta)));
+        assertEquals("AKVGGGYA", testhandler.fastaObjectList.get(0).getSequence());
+        assertEquals(-1.4247671868363128, testhandler.fastaObjectList.get(1).getNetCharge());
+    }
+
+    /**
+     * Unittest for the headers of the indexed mode. The index only holds the sequence IDs, the output of the indexed
+     * entries still has to keep the whole header lines with their descriptions, like the output of a full parse.
+     */
+    @Test
+    void indexedOutputKeepsHeaderDescription() throws Exception {
+        Path directory = Files.createTempDirectory("indexed_header");
+        Path fasta = directory.resolve("peptide.fasta");
+        Files.copy(Path.of("TestFiles/peptide.fasta"), fasta);
+        Path indexedOutput = Files.createDirectory(directory.resolve("indexed"));
+        Path parsedOutput = Files.createDirectory(directory.resolve("parsed"));
+
+        FastaHandler indexed = new FastaHandler(1);
+        indexed.generateFastaHandlerObject(fasta.toString(), "peptide", List.of("SeqID:", "Seq2"), this.verboseWorkers);
+        indexed.processFastaEntries(indexedOutput + "/", false);
+        FastaHandler parsed = new FastaHandler(1);
+        parsed.generateFastaHandlerObject(fasta.toString(), "peptide", this.verboseWorkers);
+        parsed.processFastaEntries(parsedOutput + "/", false);
+
+        assertEquals(">SeqID: PEPTIDE", indexed.fastaObjectList.get(0).getSeqID());
+        assertEquals(Files.readString(parsedOutput.resolve("peptide_analyzed.fasta")), Files.readString(indexedOutput.resolve("peptide_analyzed.fasta")));
+    }
+
+    /**
+     * Unittest for the 2-bit packed sequences. Decoding has to return the input, also for rare non ACGT characters
+     * and ranges across the packed words.
+     */
+    @Test
+    void packedSequenceRoundTrip() {
+        String sequence = "ACGTNACGTTGCAACGTRACGTACGTACGTACGTGGCCAATTNNACGT";
+        PackedSequence packed = PackedSequence.pack(sequence.getBytes(), sequence.length(), (byte) 'T');
+
+        assertEquals(sequence, packed.toString());
+        assertEquals('N', packed.byteAt(4));
+        assertEquals('R', packed.byteAt(17));
+
+        byte[] range = new byte[20];
+        packed.decode(25, 45, range, 0);
+        assertEquals(sequence.substring(25, 45), new String(range));
+    }
+
+    /**
+     * Unittest for the size aware scheduling. The largest entry has to be the first task, even if it's the last entry
+     * of the file, and the small entries are packed into batches.
+     */
+    @Test
+    void schedulerSubmitsLargestEntryFirst() throws Exception {
+        List<FastaEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            FastaEntry entry = new FastaEntry(">small" + i);
+            entry.settingSequenceData("ACGTACGTAC");
+            entries.add(entry);
+        }
+        FastaEntry large = new FastaEntry(">large");
+        large.settingSequenceData("ACGT".repeat(1000));
+        entries.add(large);
+
+        List<Runnable> tasks = new ArrayList<>();
+        EntryScheduler scheduler = new EntryScheduler(2);
+        CompletableFuture<Void> done = scheduler.submit(entries, tasks::add);
+
+        assertTrue(tasks.size() < entries.size());
+        tasks.get(0).run();
+        assertNotNull(large.getComposition());
+        assertNull(entries.get(0).getComposition());
+
+        tasks.subList(1, tasks.size()).forEach(Runnable::run);
+        scheduler.awaitCompletion("test");
+        assertTrue(done.isDone());
+        assertNotNull(entries.get(0).getComposition());
+    }
+
+    /**
+     * Unittest for the chunked analysis. A sequence over several chunks, with a length that isn't a multiple of 3
+     * and some non ACGT characters, needs the same results as the calculation in one task.
+     */
+    @Test
+    void chunkedAnalysisMatchesSingleTask() {
+        Random random = new Random(42);
+        byte[] bases = new byte[2 * CompositionTask.CHUNK_BASES + 1001];
+        for (int i = 0; i < bases.length; i++) {
+            bases[i] = (random.nextInt(5000) == 0) ? (byte) 'N' : (byte) "ACGT".charAt(random.nextInt(4));
+        }
+        PackedSequence packed = PackedSequence.pack(bases, bases.length, (byte) 'T');
+
+        FastaEntry single = new FastaEntry(">single");
+        FastaEntry chunked = new FastaEntry(">chunked");
+        for (FastaEntry entry : List.of(single, chunked)) {
+            entry.settingSequenceData(packed);
+            entry.setSequenceType(SequenceType.DNA);
+        }
+        single.run();
+        ForkJoinPool pool = new ForkJoinPool(2);
+        pool.submit(chunked::runChunked).join();
+        pool.shutdown();
+
+        assertArrayEquals(single.getComposition(), chunked.getComposition());
+        assertEquals(single.getGcEnrichment(), chunked.getGcEnrichment());
+        assertEquals(single.getMolecularWeight(), chunked.getMolecularWeight());
+        assertEquals(single.getNetCharge(), chunked.getNetCharge());
+        assertEquals(single.getIsoelectricPoint(), chunked.getIsoelectricPoint());
+
+        long[] range = new long[FastaEntry.COMPOSITION_SIZE];
+        packed.countComposition(7, 70, range);
+        long[] expected = new long[FastaEntry.COMPOSITION_SIZE];
+        FastaEntry.SequenceHandler.countComposition(bases, 7, 70, expected);
+        assertArrayEquals(expected, range);
+    }
+
+    /**
+     * Unittest for compressed input. Gzip and BGZF files, the latter with many small blocks that are inflated in
+     * parallel, have to give the same entries as the plain file.
+     */
+    @Test
+    void compressedInputMatchesPlainInput() throws Exception {
+        Path directory = Files.createTempDirectory("fasta-compressed");
+        byte[] plain = Files.readAllBytes(Path.of("TestFiles/test.fasta"));
+        Path gzip = directory.resolve("test.fasta.gz");
+        try (GZIPOutputStream out = new GZIPOutputStream(Files.newOutputStream(gzip))) {
+            out.write(plain);
+        }
+        Path bgzf = directory.resolve("test.fasta.bgz");
+        Files.write(bgzf, bgzf(plain, 1000));
+
+        List<FastaEntry> expected = new ArrayList<>();
+        new FastaParser(SequenceType.DNA, false).parse(Path.of("TestFiles/test.fasta"), expected::add);
+        assertEquals(CompressedInput.Format.GZIP, CompressedInput.formatOf(gzip));
+        assertEquals(CompressedInput.Format.BGZF, CompressedInput.formatOf(bgzf));
+
+        ForkJoinPool pool = new ForkJoinPool(2);
+        for (Path compressed : List.of(gzip, bgzf)) {
+            List<FastaEntry> parsed = new ArrayList<>();
+            FastaParser parser = new FastaParser(SequenceType.DNA, false);
+            parser.setDecompressionPool(pool);
+            parser.parse(compressed, parsed::add);
+            assertEquals(expected.size(), parsed.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getSeqID(), parsed.get(i).getSeqID());
+                assertEquals(expected.get(i).getSequence(), parsed.get(i).getSequence());
+            }
+        }
+        pool.shutdown();
+    }
+
+    /**
+     * Writes the data as BGZF blocks of the given size, followed by the empty end of file block. Written by hand after
+     * the SAM specification, so the reader isn't only tested against the BgzfOutputChannel.
+     */
+    private static byte[] bgzf(byte[] data, int blockSize) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int start = 0; start < data.length + blockSize; start += blockSize) {
+            int from = Math.min(start, data.length);
+            int length = Math.min(blockSize, data.length - from);
+            Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            deflater.setInput(data, from, length);
+            deflater.finish();
+            byte[] compressed = new byte[length + 1024];
+            int compressedLength = deflater.deflate(compressed);
+            deflater.end();
+            CRC32 crc = new CRC32();
+            crc.update(data, from, length);
+
+            ByteBuffer block = ByteBuffer.allocate(18 + compressedLength + 8).order(ByteOrder.LITTLE_ENDIAN);
+            block.put(new byte[]{0x1f, (byte) 0x8b, 8, 4, 0, 0, 0, 0, 0, (byte) 0xff, 6, 0, 'B', 'C', 2, 0});
+            block.putShort((short) (block.capacity() - 1));
+            block.put(compressed, 0, compressedLength);
+            block.putInt((int) crc.getValue());
+            block.putInt(length);
+            out.writeBytes(block.array());
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Unittest for compressed output. The BGZF output has to inflate to the plain output, and the .gzi index has to
+     * hold the offsets of every block after the first one.
+     */
+    @Test
+    void compressedOutputMatchesPlainOutput() throws Exception {
+        Path directory = Files.createTempDirectory("fasta-bgzf");
+        FastaHandler handler = new FastaHandler(2);
+        handler.generateFastaHandlerObject("TestFiles/test.fasta", "dna", this.verboseWorkers);
+        handler.processFastaEntries();
+        handler.generateOutputFiles(directory + "/", false);
+        handler.setCompressOutput(true);
+        handler.generateOutputFiles(directory + "/", false);
+
+        Path compressed = directory.resolve("test_analyzed.fasta.gz");
+        byte[] plain = Files.readAllBytes(directory.resolve("test_analyzed.fasta"));
+        assertEquals(CompressedInput.Format.BGZF, CompressedInput.formatOf(compressed));
+        try (GZIPInputStream in = new GZIPInputStream(Files.newInputStream(compressed))) {
+            assertArrayEquals(plain, in.readAllBytes());
+        }
+        ByteBuffer index = ByteBuffer.wrap(Files.readAllBytes(directory.resolve("test_analyzed.fasta.gz.gzi"))).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals((plain.length - 1) / BgzfOutputChannel.MAX_BLOCK_INPUT, index.getLong());
+        index.getLong();
+        assertEquals(BgzfOutputChannel.MAX_BLOCK_INPUT, index.getLong());
+
+        // small blocks, checked with the JDK gzip reader and by walking the BSIZE fields of the block headers
+        byte[] data = Files.readAllBytes(Path.of("TestFiles/test.fasta"));
+        Path blocks = directory.resolve("blocks.fasta.gz");
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try (BgzfOutputChannel out = new BgzfOutputChannel(Files.newByteChannel(blocks, StandardOpenOption.CREATE, StandardOpenOption.WRITE), pool, null, 1000)) {
+            out.write(ByteBuffer.wrap(data));
+        }
+        pool.shutdown();
+        try (GZIPInputStream in = new GZIPInputStream(Files.newInputStream(blocks))) {
+            assertArrayEquals(data, in.readAllBytes());
+        }
+        ByteBuffer file = ByteBuffer.wrap(Files.readAllBytes(blocks)).order(ByteOrder.LITTLE_ENDIAN);
+        int blockCount = 0;
+        int offset = 0;
+        while (offset < file.limit()) {
+            assertEquals(4, file.get(offset + 3));
+            assertEquals(6, file.getShort(offset + 10));
+            assertEquals('B', file.get(offset + 12));
+            assertEquals('C', file.get(offset + 13));
+            assertEquals(2, file.getShort(offset + 14));
+            offset += (file.getShort(offset + 16) & 0xFFFF) + 1;
+            blockCount++;
+        }
+        assertEquals(file.limit(), offset);
+        // data blocks and the empty end of file block
+        assertEquals((data.length + 999) / 1000 + 1, blockCount);
+        assertEquals(0, file.getInt(file.limit() - 4));
+    }
+
+    /**
+     * Unittest for the output writer. The fast number formatting has to round like String.format, also for values
+     * on the rounding boundary and negative values rounded to zero.
+     */
+    @Test
+    void outputWriterFormatsLikeStringFormat() throws IOException {
+        List<Double> values = new ArrayList<>(List.of(0.125, 1.005, 2.675, -0.001, -0.0, 0.0, 99.995, 1e9, Double.NaN));
+        Random random = new Random(7);
+        for (int i = 0; i < 10000; i++) {
+            values.add((random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(8)));
+            values.add(random.nextInt(100000) / 1000.0);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        StringBuilder expected = new StringBuilder();
+        try (FastaOutputWriter writer = new FastaOutputWriter(Channels.newChannel(bytes))) {
+            for (double value : values) {
+                writer.putFixed2(value);
+                expected.append(String.format("%.2f", value));
+            }
+        }
+        assertEquals(expected.toString(), bytes.toString());
+    }
+
+    /**
+     * Unittest for the synthetic fasta generator. The same seed gives the same file, another seed a different one, and
+     * the generated proteins pass the per line peptide check of the parser with lengths inside the set range, none of
+     * them ends with a last line of less than 5 letters.
+     */
+    @Test
+    void syntheticFastaIsDeterministic() throws Exception {
+        Path directory = Files.createTempDirectory("synthetic");
+        SyntheticFasta generator = new SyntheticFasta(SequenceType.PEPTIDE);
+        generator.setRecords(500);
+        generator.setLengths(50, 3000, SyntheticFasta.LengthDistribution.LOG_NORMAL);
+        generator.setLineWidth(60);
+        Path first = directory.resolve("first.fasta");
+        Path second = directory.resolve("second.fasta");
+        Path otherSeed = directory.resolve("other.fasta");
+        generator.write(first);
+        generator.write(second);
+        generator.setSeed(7);
+        generator.write(otherSeed);
+
+        assertArrayEquals(Files.readAllBytes(first), Files.readAllBytes(second));
+        assertFalse(Arrays.equals(Files.readAllBytes(first), Files.readAllBytes(otherSeed)));
+
+        List<FastaEntry> entries = new ArrayList<>();
+        new FastaParser(SequenceType.PEPTIDE, false).parse(first, entries::add);
+        assertEquals(500, entries.size());
+        for (FastaEntry entry : entries) {
+            assertTrue(entry.getSequenceLength() >= 50 && entry.getSequenceLength() <= 3000);
+            int lastLine = entry.getSequenceLength() % 60;
+            assertTrue(lastLine == 0 || lastLine >= 5);
+        }
+        for (Path file : List.of(first, second, otherSeed, directory)) {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Unittest for the run metrics. Every stage of a run with output file gets recorded with the bytes and records it
+     * handled, and the JSON summary holds all stages.
+     */
+    @Test
+    void runMetricsCoverAllStages() throws Exception {
+        Path directory = Files.createTempDirectory("metrics");
+        FastaHandler handler = new FastaHandler(2);
+        handler.generateFastaHandlerObject("TestFiles/dna.fasta", "dna", this.verboseWorkers);
+        handler.processFastaEntries(directory + "/", false);
+        RunMetrics metrics = handler.getMetrics();
+        metrics.finish();
+
+        assertEquals(Files.size(Path.of("TestFiles/dna.fasta")), metrics.stage(RunMetrics.Stage.READ).getBytes());
+        assertEquals(2, metrics.stage(RunMetrics.Stage.PARSE).getRecords());
+        assertEquals(2, metrics.stage(RunMetrics.Stage.COMPUTE).getRecords());
+        assertEquals(Files.size(directory.resolve("dna_analyzed.fasta")), metrics.stage(RunMetrics.Stage.WRITE).getBytes());
+        assertEquals(2, metrics.stage(RunMetrics.Stage.WRITE).getRecords());
+        assertEquals(1L, metrics.stage(RunMetrics.Stage.WRITE).getTasksPerThread().get(Thread.currentThread().getName()));
+        for (String stage : List.of("\"read\"", "\"parse\"", "\"compute\"", "\"write\"", "\"file\": \"dna.fasta\"")) {
+            assertTrue(metrics.toJson().contains(stage));
+        }
+        Files.delete(directory.resolve("dna_analyzed.fasta"));
+        Files.delete(directory);
+    }
+
+    /**
+     * Unittest for the result cache. A second run restores every entry from the saved cache with the same results, a
+     * different genetic code misses, and a small cache evicts down to its size.
+     */
+    @Test
+    void resultCacheRestoresResults() throws Exception {
+        Path cacheFile = Files.createTempFile("results", ".cache");
+        Files.delete(cacheFile);
+        FastaHandler calculated = new FastaHandler(1);
+        calculated.setResultCache(ResultCache.open(cacheFile, ResultCache.DEFAULT_MAX_BYTES));
+        calculated.generateFastaHandlerObject("TestFiles/dnatopeptide.fasta", "dna", this.verboseWorkers);
+        calculated.processFastaEntries();
+        calculated.resultCache.save();
+
+        FastaHandler restored = new FastaHandler(1);
+        restored.setResultCache(ResultCache.open(cacheFile, ResultCache.DEFAULT_MAX_BYTES));
+        restored.generateFastaHandlerObject("TestFiles/dnatopeptide.fasta", "dna", this.verboseWorkers);
+        restored.processFastaEntries();
+        assertEquals(restored.fastaObjectList.size(), restored.getMetrics().getCacheHits());
+        for (int i = 0; i < calculated.fastaObjectList.size(); i++) {
+            FastaEntry expected = calculated.fastaObjectList.get(i);
+            FastaEntry entry = restored.fastaObjectList.get(i);
+            assertTrue(entry.isCachedResult());
+            assertEquals(expected.getMolecularWeight(), entry.getMolecularWeight());
+            assertEquals(expected.getIsoelectricPoint(), entry.getIsoelectricPoint());
+            assertEquals(expected.getNetCharge(), entry.getNetCharge());
+            assertArrayEquals(expected.getComposition(), entry.getComposition());
+            assertEquals(expected.getTranslatedSequence(), entry.getTranslatedSequence());
+        }
+
+        restored.setGeneticCode(GeneticCode.byId(2));
+        restored.generateFastaHandlerObject("TestFiles/dnatopeptide.fasta", "dna", this.verboseWorkers);
+        restored.processFastaEntries();
+        assertEquals(0, restored.getMetrics().getCacheHits());
+
+        ResultCache small = ResultCache.open(cacheFile, 1);
+        assertEquals(0, small.size());
+        Files.delete(cacheFile);
+    }
+
+    /**
+     * Unittest for the k-mer counting. The counts of the sharded tables have to match a plain count of the canonical
+     * k-mers, also across the chunk borders of a long sequence and around N bases.
+     */
+    @Test
+    void kmerCountsMatchPlainCount() throws Exception {
+        Random random = new Random(7);
+        List<FastaEntry> entries = new ArrayList<>();
+        for (int length : new int[]{3, 40, 1000, 2 * CompositionTask.CHUNK_BASES + 17}) {
+            byte[] bases = new byte[length];
+            for (int i = 0; i < length; i++) {
+                bases[i] = (byte) ((random.nextInt(50) == 0) ? 'N' : "ACGT".charAt(random.nextInt(4)));
+            }
+            FastaEntry entry = new FastaEntry(">seq" + length);
+            entry.settingSequenceData(PackedSequence.pack(bases, length, (byte) 'T'));
+            entries.add(entry);
+        }
+        int k = 5;
+        Map<String, Long> expected = new HashMap<>();
+        long total = 0;
+        for (FastaEntry entry : entries) {
+            String sequence = entry.getSequence();
+            for (int i = 0; i + k <= sequence.length(); i++) {
+                String kmer = sequence.substring(i, i + k);
+                if (kmer.indexOf('N') < 0) {
+                    String reverse = new StringBuilder(kmer).reverse().toString().replace('A', 't').replace('T', 'a').replace('C', 'g').replace('G', 'c').toUpperCase();
+                    expected.merge((kmer.compareTo(reverse) <= 0) ? kmer : reverse, 1L, Long::sum);
+                    total++;
+                }
+            }
+        }
+
+        KmerCounter counter = new KmerCounter(k, 4);
+        ExecutorService pool = new ForkJoinPool(4);
+        try {
+            counter.count(entries, pool);
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(total, counter.getTotalKmers());
+        assertEquals(expected.size(), counter.getDistinctKmers());
+        for (Map.Entry<String, Long> kmer : expected.entrySet()) {
+            assertEquals(kmer.getValue(), counter.countOf(kmer.getKey()));
+        }
+        assertEquals(counter.countOf("ACGTA"), counter.countOf("TACGT"));
+
+        long[] histogram = counter.histogram();
+        long counted = 0;
+        for (int count = 0; count < histogram.length; count++) {
+            counted += count * histogram[count];
+        }
+        assertEquals(total, counted);
+        StringWriter top = new StringWriter();
+        counter.writeTop(top, 3);
+        String[] lines = top.toString().split("\n");
+        assertEquals(4, lines.length);
+        long mostFrequent = expected.values().stream().mapToLong(Long::longValue).max().orElseThrow();
+        assertEquals(mostFrequent, Long.parseLong(lines[1].split("\t")[1]));
+        assertEquals(mostFrequent, counter.countOf(lines[1].split("\t")[0]));
+    }
+
+    /**
+     * Unittest for the window profile. The incrementally counted windows have to match windows that are counted
+     * completely, for overlapping windows, adjacent windows and windows with gaps, and the chunks written in parallel
+     * have to come out in order.
+     */
+    @Test
+    void windowProfileMatchesRecountedWindows() throws Exception {
+        Random random = new Random(11);
+        byte[] bases = new byte[100_000];
+        for (int i = 0; i < bases.length; i++) {
+            bases[i] = (byte) ((random.nextInt(100) == 0) ? 'N' : "ACGT".charAt(random.nextInt(4)));
+        }
+        FastaEntry entry = new FastaEntry(">chr1 test");
+        entry.settingSequenceData(PackedSequence.pack(bases, bases.length, (byte) 'T'));
+
+        for (int[] windowAndStep : new int[][]{{1000, 100}, {500, 500}, {200, 1000}, {150_000, 10}}) {
+            WindowProfile profile = new WindowProfile(SequenceType.DNA, windowAndStep[0], windowAndStep[1], WindowProfile.Format.TSV);
+            long windows = profile.windowCount(bases.length);
+            String[] lines = profile.profileChunk("chr1", entry.getPackedSequence(), 0, windows).split("\n");
+            assertEquals(windows, lines.length);
+            for (String line : lines) {
+                String[] fields = line.split("\t");
+                int start = Integer.parseInt(fields[1]);
+                int end = Integer.parseInt(fields[2]);
+                assertTrue(end <= bases.length && start < end);
+                long[] composition = new long[FastaEntry.COMPOSITION_SIZE];
+                FastaEntry.SequenceHandler.countComposition(bases, start, end, composition);
+                assertEquals(Math.round(SequenceType.DNA.gcEnrichment(end - start, composition) * 10000) / 10000.0, Double.parseDouble(fields[3]));
+                assertEquals(Math.round(SequenceType.DNA.meltingPoint(end - start, composition) * 10000) / 10000.0, Double.parseDouble(fields[5]));
+            }
+            if (windowAndStep[1] <= windowAndStep[0]) {
+                assertEquals(bases.length, Integer.parseInt(lines[lines.length - 1].split("\t")[2]));
+            }
+
+            StringWriter written = new StringWriter();
+            ExecutorService pool = new ForkJoinPool(3);
+            try {
+                assertEquals(windows, profile.write(List.of(entry), pool, 3, written));
+            } finally {
+                pool.shutdown();
+            }
+            assertEquals(windows + 1, written.toString().split("\n").length);
+            assertTrue(written.toString().endsWith(lines[lines.length - 1] + "\n"));
+        }
+
+        // small values are written as fixed point text, not in scientific notation
+        byte[] skewed = ("G".repeat(1001) + "C".repeat(1000)).getBytes();
+        String skewLine = new WindowProfile(SequenceType.DNA, 2001, 2001, WindowProfile.Format.TSV).profileChunk("chr2", PackedSequence.pack(skewed, skewed.length, (byte) 'T'), 0, 1);
+        assertTrue(skewLine.startsWith("chr2\t0\t2001\t1.0000\t0.0005\t"), skewLine);
+        byte[] unknown = ("G" + "N".repeat(9999)).getBytes();
+        String bedGraphLine = new WindowProfile(SequenceType.DNA, 10000, 10000, WindowProfile.Format.BEDGRAPH).profileChunk("chr3", PackedSequence.pack(unknown, unknown.length, (byte) 'T'), 0, 1);
+        assertEquals("chr3\t0\t10000\t0.0001\n", bedGraphLine);
+        StringBuilder negative = new StringBuilder();
+        WindowProfile.appendFixed4(negative, -0.04996);
+        assertEquals("-0.0500", negative.toString());
+    }
+
+    /**
+     * Unittest for the motif scan. The automaton has to find the same hits as a plain search for every concrete
+     * pattern, with reverse complements, IUPAC expansion, overlapping motifs and N bases. The hits are found while the
+     * entries are calculated and shared with duplicates.
+     */
+    @Test
+    void motifScanMatchesPlainSearch() throws Exception {
+        List<String[]> motifs = List.of(new String[]{"EcoRI", "GAATTC"}, new String[]{"adapter", "AGATCGGAAG"},
+                new String[]{"short", "GAA"}, new String[]{"degenerate", "ACNGT"});
+        assertThrows(IllegalArgumentException.class, () -> new MotifScanner(motifs, true, false));
+        MotifScanner scanner = new MotifScanner(motifs, true, true);
+        // EcoRI is a palindrome, the 4 motifs of ACNGT are reverse complements of each other
+        assertEquals(1 + 2 + 2 + 4, scanner.getPatternCount());
+
+        Random random = new Random(5);
+        StringBuilder sequence = new StringBuilder("GAATTCAGATCGGAAGNNACGGT");
+        for (int i = 0; i < 20_000; i++) {
+            sequence.append((random.nextInt(200) == 0) ? 'N' : "ACGT".charAt(random.nextInt(4)));
+        }
+        String text = sequence.toString();
+        byte[] bases = text.getBytes();
+        long[] hits = scanner.scan(PackedSequence.pack(bases, bases.length, (byte) 'T'));
+        StringWriter written = new StringWriter();
+        scanner.writeHits("seq", hits, written);
+
+        List<String> expected = new ArrayList<>();
+        for (int start = 0; start < text.length(); start++) {
+            for (String[] motif : List.of(new String[]{"EcoRI", "GAATTC", "+"}, new String[]{"adapter", "AGATCGGAAG", "+"}, new String[]{"adapter", "CTTCCGATCT", "-"},
+                    new String[]{"short", "GAA", "+"}, new String[]{"short", "TTC", "-"})) {
+                if (text.startsWith(motif[1], start)) {
+                    expected.add("seq\t" + start + "\t" + (start + motif[1].length()) + "\t" + motif[2] + "\t" + motif[0] + "\t" + motif[1]);
+                }
+            }
+            for (String middle : List.of("A", "C", "G", "T")) {
+                if (text.startsWith("AC" + middle + "GT", start)) {
+                    expected.add("seq\t" + start + "\t" + (start + 5) + "\t+\tdegenerate\tAC" + middle + "GT");
+                }
+            }
+        }
+        List<String> found = new ArrayList<>(Arrays.asList(written.toString().split("\n")));
+        assertEquals(expected.size(), hits.length);
+        assertEquals(expected.stream().sorted().toList(), found.stream().sorted().toList());
+        assertEquals("seq\t0\t6\t+\tEcoRI\tGAATTC", found.get(0));
+
+        Path fasta = Files.createTempFile("motifs", ".fasta");
+        Files.writeString(fasta, ">first\nTTGAATTCAA\n>second\nTTGAATTCAA\n>third\nAAAA\n");
+        FastaHandler handler = new FastaHandler(1);
+        handler.motifScanner = scanner;
+        handler.generateFastaHandlerObject(fasta.toString(), "dna", this.verboseWorkers);
+        handler.processFastaEntries();
+        assertArrayEquals(handler.fastaObjectList.get(0).getMotifHits(), handler.fastaObjectList.get(1).getMotifHits());
+        assertEquals(3, handler.fastaObjectList.get(0).getMotifHits().length);
+        assertEquals(0, handler.fastaObjectList.get(2).getMotifHits().length);
+        Files.delete(fasta);
+    }
+
+    /**
+     * Unittest for the duplicate detection. Entries with the same sequence, independent of case and line breaks, share
+     * the sequence and the results of the first one, different sequences of the same length aren't grouped.
+     */
+    @Test
+    void duplicatesShareSequenceAndResults() throws Exception {
+        Path fasta = Files.createTempFile("duplicates", ".fasta");
+        Files.writeString(fasta, ">first\nATGGCGAAAGTG\nTATGCGTTGTAA\n>second\nATGGCGAAAGTGTATGCGTTGTAA\n" +
+                ">other\nATGGCGAAAGTGTATGCGTTGTAG\n>third\natggcgaaagtgtatgcgttgtaa\n");
+        FastaHandler handler = new FastaHandler(1);
+        handler.generateFastaHandlerObject(fasta.toString(), "dna", this.verboseWorkers);
+        handler.processFastaEntries();
+        FastaEntry first = handler.fastaObjectList.get(0);
+        FastaEntry other = handler.fastaObjectList.get(2);
+        assertEquals(2, first.getDuplicates().size());
+        assertNull(other.getRepresentative());
+        assertTrue(other.getDuplicates().isEmpty());
+        for (FastaEntry duplicate : List.of(handler.fastaObjectList.get(1), handler.fastaObjectList.get(3))) {
+            assertSame(first, duplicate.getRepresentative());
+            assertSame(first.getPackedSequence(), duplicate.getPackedSequence());
+            assertEquals(first.getMolecularWeight(), duplicate.getMolecularWeight());
+            assertEquals(first.getIsoelectricPoint(), duplicate.getIsoelectricPoint());
+            assertArrayEquals(first.getComposition(), duplicate.getComposition());
+            assertEquals(first.getTranslatedSequence(), duplicate.getTranslatedSequence());
+        }
+
+        Path directory = Files.createTempDirectory("duplicates");
+        handler.generateDuplicateReport(directory + "/");
+        Path report = directory.resolve(FastaHandler.baseName(handler.filename) + "_duplicates.tsv");
+        assertEquals(List.of("#representative\tlength\tentries\tduplicates", "first\t24\t3\tsecond,third"), Files.readAllLines(report));
+        Files.delete(report);
+        Files.delete(directory);
+        Files.delete(fasta);
+    }
+
+    /**
+     * Unittest for the codon translation. TTG is leucine in the standard code, TGA is tryptophan in the vertebrate
+     * mitochondrial code, U and T are handled the same and packed sequences translate like Strings.
+     */
+    @Test
+    void geneticCodeTranslation() {
+        assertEquals("FLLW*", GeneticCode.STANDARD.translate("TTTTTGCTGTGGTGAA"));
+        assertEquals("FLLWW", GeneticCode.byId(2).translate("UUUTTGCUGTGGUGA"));
+        assertEquals("KX", GeneticCode.STANDARD.translate("AAANAA"));
+        // TAG is tryptophan in the Balanophoraceae plastid code, TAA stays a stop
+        assertEquals("W*", GeneticCode.byId(32).translate("TAGTAA"));
+
+        String sequence = "ATGGCGAAAGTGTATGCGTTGTAA";
+        assertEquals("MAKVYAL*", GeneticCode.STANDARD.translate(PackedSequence.pack(sequence.getBytes(), sequence.length(), (byte) 'T')));
+        for (GeneticCode code : GeneticCode.values()) {
+            assertEquals('M', code.translate("ATGTGG").charAt(0));
+        }
+    }
+
+    /**
+     * Unittest for the ORF finder. Coordinates are reported 1-based on the forward strand, including the stop codon.
+     */
+    @Test
+    void orfFinder() throws Exception {
+        FastaEntry entry = new FastaEntry(">s test");
+        entry.settingSequenceData("CCATGAAATTTGGGTAAGG");
+        ExecutorService threadPool = Executors.newFixedThreadPool(2);
+        StringWriter fasta = new StringWriter();
+        StringWriter tsv = new StringWriter();
+
+        long orfCount = new OrfFinder(GeneticCode.STANDARD, 12, "ATG").findOrfs(List.of(entry), threadPool, fasta, tsv);
+        threadPool.shutdown();
+
+        assertEquals(1, orfCount);
+        assertEquals("s\ts_orf1\t+3\t+\t3\t17\t15\t4", tsv.toString().split("\n")[1]);
+        assertEquals("MKFG", fasta.toString().split("\n")[1]);
+    }
+
+    /**
+     * Unittest for the ORF finder from stop to stop. The codons before the first stop of a frame have no known start,
+     * so that leading partial ORF isn't reported, only the one between the two stops.
+     */
+    @Test
+    void orfFinderStopToStop() throws Exception {
+        FastaEntry entry = new FastaEntry(">s test");
+        entry.settingSequenceData("GCCAAATTTGGGTAACCCGGGAAATTTTAG");
+        ExecutorService threadPool = Executors.newFixedThreadPool(2);
+        StringWriter fasta = new StringWriter();
+        StringWriter tsv = new StringWriter();
+
+        long orfCount = new OrfFinder(GeneticCode.STANDARD, 12, "").findOrfs(List.of(entry), threadPool, fasta, tsv);
+        threadPool.shutdown();
+
+        assertEquals(1, orfCount);
+        assertEquals("s\ts_orf1\t+1\t+\t16\t30\t15\t4", tsv.toString().split("\n")[1]);
+        assertEquals("PGKF", fasta.toString().split("\n")[1]);
+    }
 }
@@ -1,6 +1,9 @@
 package org.analyzer;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 
@@ -12,100 +15,44 @@ class FastaEntry implements Runnable, EntryI {
      * Static Class for Sequence manipulation in context of nucleotype or peptide sequences
      */
     static class SequenceHandler {
-        private static final Map<String, Character> codonMap = createCodonMap();
-
-        private static Map<String, Character> createCodonMap() {
-            Map<String, Character> codonMap = new HashMap<>();
-            codonMap.put("AAA", 'K');
-            codonMap.put("AAC", 'N');
-            codonMap.put("AAG", 'K');
-            codonMap.put("AAT", 'N');
-            codonMap.put("ACA", 'T');
-            codonMap.put("ACC", 'T');
-            codonMap.put("ACG", 'T');
-            codonMap.put("ACT", 'T');
-            codonMap.put("AGA", 'R');
-            codonMap.put("AGC", 'S');
-            codonMap.put("AGG", 'R');
-            codonMap.put("AGT", 'S');
-            codonMap.put("ATA", 'I');
-            codonMap.put("ATC", 'I');
-            codonMap.put("ATG", 'M');
-            codonMap.put("ATT", 'I');
-            codonMap.put("CAA", 'Q');
-            codonMap.put("CAC", 'H');
-            codonMap.put("CAG", 'Q');
-            codonMap.put("CAT", 'H');
-            codonMap.put("CCA", 'P');
-            codonMap.put("CCC", 'P');
-            codonMap.put("CCG", 'P');
-            codonMap.put("CCT", 'P');
-            codonMap.put("CGA", 'R');
-            codonMap.put("CGC", 'R');
-            codonMap.put("CGG", 'R');
-            codonMap.put("CGT", 'R');
-            codonMap.put("CTA", 'L');
-            codonMap.put("CTC", 'L');
-            codonMap.put("CTG", 'L');
-            codonMap.put("CTT", 'L');
-            codonMap.put("GAA", 'E');
-            codonMap.put("GAC", 'D');
-            codonMap.put("GAG", 'E');
-            codonMap.put("GAT", 'D');
-            codonMap.put("GCA", 'A');
-            codonMap.put("GCC", 'A');
-            codonMap.put("GCG", 'A');
-            codonMap.put("GCT", 'A');
-            codonMap.put("GGA", 'G');
-            codonMap.put("GGC", 'G');
-            codonMap.put("GGG", 'G');
-            codonMap.put("GGT", 'G');
-            codonMap.put("GTA", 'V');
-            codonMap.put("GTC", 'V');
-            codonMap.put("GTG", 'V');
-            codonMap.put("GTT", 'V');
-            codonMap.put("TAA", '*');
-            codonMap.put("TTA", 'L');
-            codonMap.put("TAC", 'Y');
-            codonMap.put("TAG", '*');
-            codonMap.put("TAT", 'Y');
-            codonMap.put("TCA", 'S');
-            codonMap.put("TCC", 'S');
-            codonMap.put("TCG", 'S');
-            codonMap.put("TCT", 'S');
-            codonMap.put("TGA", '*');
-            codonMap.put("TGC", 'C');
-            codonMap.put("TGG", 'W');
-            codonMap.put("TGT", 'C');
-            codonMap.put("TTT", 'F');
-            codonMap.put("TTC", 'F');
-            codonMap.put("TTG", 'F');
-
-            return codonMap;
-        }
-
         /**
-         * Generates a Peptide Sequence from DNA or RNA type Sequences
+         * Generates a Peptide Sequence from DNA or RNA type Sequences with the standard genetic code
          *
          * @param seq Sequence to get Translated
          * @return The Translated Sequence
          */
         public static String translateSequence(String seq) {
-            // Ignoring if DNA or RNA... Still need to handle PEPTIDES
-            String sequence = seq.toUpperCase().replaceAll("U", "T");
-
-            // If a Sequence is not dividable through 3, the functions gets an Out-ofBound Error, since no corresponding
-            // Codon can be found inside the Map for Codon translation. With modulo und subtraction the SeqLength gets
-            // corrected.
-            int baseOverhang = sequence.length() % 3;
-            int newEnd = sequence.length() - baseOverhang;
-            StringBuilder translatedSequence = new StringBuilder();
-
-            for (int i = 0; i < newEnd; i += 3) {
-                translatedSequence.append(codonMap.get(sequence.substring(i, i + 3)));
+            return GeneticCode.STANDARD.translate(seq);
+        }
+
+        /**
+         * Builds the reverse complement of DNA or RNA sequence bytes. U gets complemented to A, characters besides
+         * ACGTU are kept as they are.
+         *
+         * @param sequence bytes of the sequence
+         * @return the reverse complement as new array
+         */
+        static byte[] reverseComplement(byte[] sequence) {
+            byte[] reverse = new byte[sequence.length];
+            for (int i = 0, j = sequence.length - 1; j >= 0; i++, j--) {
+                reverse[i] = COMPLEMENT[sequence[j] & 0xFF];
             }
-            return translatedSequence.toString();
+            return reverse;
+        }
 
+        private static final byte[] COMPLEMENT = createComplementTable();
+
+        private static byte[] createComplementTable() {
+            byte[] complement = new byte[256];
+            for (int i = 0; i < complement.length; i++) {
+                complement[i] = (byte) i;
+            }
+            complement['A'] = 'T';
+            complement['T'] = 'A';
+            complement['U'] = 'A';
+            complement['C'] = 'G';
+            complement['G'] = 'C';
+            return complement;
         }
 
         /**
@@ -115,24 +62,116 @@ class FastaEntry implements Runnable, EntryI {
          * @return a HashMap of the Counts
          */
         public static Map<Character, Double> countAlphabet(String sequence) {
-            Map<Character, Double> count = new HashMap<>();
-            sequence.toUpperCase().chars().mapToObj(c -> (char) c).forEach(c -> count.merge(c, 1.0, Double::sum));
+            return toAlphabetMap(countComposition(sequence));
+        }
+
+        /**
+         * Composition kernel. Counts every uppercased ASCII character of the sequence in one pass into an array that
+         * is indexed by the character itself.
+         *
+         * @param sequence Sequence which alphabet should be counted.
+         * @return array of length COMPOSITION_SIZE with the count of every character
+         */
+        static long[] countComposition(CharSequence sequence) {
+            long[] composition = new long[COMPOSITION_SIZE];
+            for (int i = 0, length = sequence.length(); i < length; i++) {
+                char c = sequence.charAt(i);
+                if (c < COMPOSITION_SIZE) {
+                    composition[(c >= 'a' && c <= 'z') ? c - 32 : c]++;
+                }
+            }
+            return composition;
+        }
+
+        /**
+         * Composition kernel for sequence bytes.
+         *
+         * @param sequence bytes of the sequence
+         * @param from     first index to count
+         * @param to       index after the last one to count
+         * @param composition array of length COMPOSITION_SIZE the counts are added to
+         */
+        static void countComposition(byte[] sequence, int from, int to, long[] composition) {
+            for (int i = from; i < to; i++) {
+                int c = sequence[i];
+                if (c >= 0) {
+                    composition[(c >= 'a' && c <= 'z') ? c - 32 : c]++;
+                }
+            }
+        }
+
+        /**
+         * Composition kernel for 2-bit packed sequences. Counts the four codes of every packed long with bit counts,
+         * the positions of the side list are corrected afterwards.
+         *
+         * @param sequence packed sequence
+         * @return array of length COMPOSITION_SIZE with the count of every character
+         */
+        static long[] countComposition(PackedSequence sequence) {
+            long[] composition = new long[COMPOSITION_SIZE];
+            sequence.countComposition(composition);
+            return composition;
+        }
 
+        /**
+         * Converts a composition array into the Map representation of the alphabet count.
+         *
+         * @param composition array of length COMPOSITION_SIZE
+         * @return a HashMap of the Counts
+         */
+        static Map<Character, Double> toAlphabetMap(long[] composition) {
+            Map<Character, Double> count = new HashMap<>();
+            for (int c = 0; c < composition.length; c++) {
+                if (composition[c] != 0) {
+                    count.put((char) c, (double) composition[c]);
+                }
+            }
             return count;
         }
+
+        /**
+         * Converts the Map representation of an alphabet count into a composition array.
+         *
+         * @param alphabetCount Count of each char occurrence in the inputSequence
+         * @return array of length COMPOSITION_SIZE
+         */
+        static long[] toComposition(Map<Character, Double> alphabetCount) {
+            long[] composition = new long[COMPOSITION_SIZE];
+            alphabetCount.forEach((c, count) -> {
+                if (c < COMPOSITION_SIZE) {
+                    composition[c] = Math.round(count);
+                }
+            });
+            return composition;
+        }
     }
 
+    static final int COMPOSITION_SIZE = 128;
+
     private final String seqID;
     private String sequence;
+    private PackedSequence packedSequence;
     private String commentLine;
-    private String translatedSequence;
+    private boolean translatable;
+    private SequenceType seqType = SequenceType.AMBIGUOUS;
+    private GeneticCode geneticCode = GeneticCode.STANDARD;
+    private double isoelectricTolerance = SequenceType.DEFAULT_PI_TOLERANCE;
+    private long[] translatedComposition;
     private int sequenceLength;
+    private long[] composition;
     private Map<Character, Double> alphabetCount;
     private double molecularWeight;
     private double gcEnrichment;
     private double meltingPoint;
     private double netCharge;
     private double isoelectricPoint;
+    private ResultCache resultCache;
+    private boolean cachedResult;
+    // first entry of the file with the same sequence, null for a representative
+    private FastaEntry representative;
+    private List<FastaEntry> duplicates;
+    private MotifScanner motifScanner;
+    private long[] motifHits;
     boolean verboseWorkers = false;
 
     /**
@@ -151,9 +190,32 @@ class FastaEntry implements Runnable, EntryI {
     @Override
     public void run() {
         if (this.verboseWorkers) {
-            System.out.println(Thread.currentThread().getName() + " starting calculations for : " + this.seqID.split(">")[1] + " Number of Threads: " + FastaHandler.getInstance().numberThreads);
+            System.out.println(Thread.currentThread().getName() + " starting calculations for : " + this.seqID.split(">")[1]);
+        }
+        ResultCache.Key key = this.restoreCachedResults();
+        if (!this.cachedResult) {
+            calculateSequenceProperties(this.seqType);
+            this.storeCachedResults(key);
+        }
+        this.finishRun();
+    }
+
+    /**
+     * @return the cache key of the entry, null without cache. Sets cachedResult if the results got restored
+     */
+    private ResultCache.Key restoreCachedResults() {
+        if (this.resultCache == null) {
+            return null;
+        }
+        ResultCache.Key key = ResultCache.keyOf(this, this.seqType, this.geneticCode, this.isoelectricTolerance);
+        this.cachedResult = this.resultCache.restore(key, this);
+        return key;
+    }
+
+    private void storeCachedResults(ResultCache.Key key) {
+        if (key != null) {
+            this.resultCache.store(key, this);
         }
-        calculateSequenceProperties(FastaHandler.getInstance().seqType);
     }
 
     /**
@@ -164,9 +226,21 @@ class FastaEntry implements Runnable, EntryI {
      */
     void settingSequenceData(String sequenceHandler) {
         this.sequence = sequenceHandler.toUpperCase();
+        this.packedSequence = null;
         this.sequenceLength = sequenceHandler.length();
     }
 
+    /**
+     * Sets a 2-bit packed DNA or RNA sequence. The sequence String is only decoded on demand by the getters.
+     *
+     * @param packedSequence packed input sequence
+     */
+    void settingSequenceData(PackedSequence packedSequence) {
+        this.sequence = null;
+        this.packedSequence = packedSequence;
+        this.sequenceLength = packedSequence.length();
+    }
+
     /**
      * Wrapper for calculations to be done.
      *
@@ -175,6 +249,155 @@ class FastaEntry implements Runnable, EntryI {
     void calculateSequenceProperties(SequenceType seqType) {
         this.calcAlphabet();
         this.setTranslatedSequence(seqType);
+        this.calculateMetrics(seqType);
+    }
+
+    /**
+     * Same calculations as run(), but the compositions are counted by a CompositionTask in chunks of the sequence.
+     * Called on a ForkJoinPool, the chunks of one large sequence are spread over all threads of the pool.
+     */
+    void runChunked() {
+        if (this.verboseWorkers) {
+            System.out.println(Thread.currentThread().getName() + " starting chunked calculations for : " + this.seqID.split(">")[1]);
+        }
+        ResultCache.Key key = this.restoreCachedResults();
+        if (this.cachedResult) {
+            this.finishRun();
+            return;
+        }
+        boolean translate = this.seqType == SequenceType.DNA || this.seqType == SequenceType.RNA;
+        GeneticCode code = translate ? this.geneticCode : null;
+        CompositionTask task = (this.packedSequence != null) ? CompositionTask.of(this.packedSequence, code) : CompositionTask.of(this.sequence, code);
+        long[][] compositions = task.invoke();
+
+        this.composition = compositions[0];
+        this.alphabetCount = null;
+        if (translate) {
+            this.translatable = true;
+            this.translatedComposition = compositions[1];
+        }
+        this.calculateMetrics(this.seqType);
+        this.storeCachedResults(key);
+        this.finishRun();
+    }
+
+    /**
+     * Sets the results of an earlier calculation of the same sequence with the same settings, from the result cache.
+     *
+     * @param composition           composition of the sequence
+     * @param translatedComposition composition of the translation, null if the sequence isn't translated
+     */
+    void setCachedResults(long[] composition, long[] translatedComposition, double gcEnrichment, double molecularWeight, double meltingPoint, double netCharge, double isoelectricPoint) {
+        this.composition = composition;
+        this.alphabetCount = null;
+        this.translatedComposition = translatedComposition;
+        this.translatable = translatedComposition != null;
+        this.gcEnrichment = gcEnrichment;
+        this.molecularWeight = molecularWeight;
+        this.meltingPoint = meltingPoint;
+        this.netCharge = netCharge;
+        this.isoelectricPoint = isoelectricPoint;
+    }
+
+    /**
+     * Makes this entry a duplicate of an earlier entry with the same sequence. The sequence object is shared, the
+     * results are copied from the representative once it is calculated.
+     *
+     * @param representative first entry of the file with this sequence
+     */
+    void shareSequenceOf(FastaEntry representative) {
+        this.sequence = representative.sequence;
+        this.packedSequence = representative.packedSequence;
+        this.sequenceLength = representative.sequenceLength;
+        this.representative = representative;
+        if (representative.duplicates == null) {
+            representative.duplicates = new ArrayList<>();
+        }
+        representative.duplicates.add(this);
+    }
+
+    /**
+     * Last step of every calculation, also of restored results: the motifs are scanned inside the same task and the
+     * results are handed to the duplicates.
+     */
+    private void finishRun() {
+        if (this.motifScanner != null) {
+            this.motifHits = this.motifScanner.scan(this.toPackedSequence());
+        }
+        this.shareResults();
+    }
+
+    /**
+     * Hands the results of this representative to all its duplicates, they are never calculated themselves. The
+     * compositions are shared, they aren't changed after the calculation.
+     */
+    private void shareResults() {
+        if (this.duplicates == null) {
+            return;
+        }
+        for (FastaEntry duplicate : this.duplicates) {
+            duplicate.composition = this.composition;
+            duplicate.alphabetCount = null;
+            duplicate.translatedComposition = this.translatedComposition;
+            duplicate.translatable = this.translatable;
+            duplicate.gcEnrichment = this.gcEnrichment;
+            duplicate.molecularWeight = this.molecularWeight;
+            duplicate.meltingPoint = this.meltingPoint;
+            duplicate.netCharge = this.netCharge;
+            duplicate.isoelectricPoint = this.isoelectricPoint;
+            duplicate.cachedResult = this.cachedResult;
+            duplicate.motifHits = this.motifHits;
+        }
+    }
+
+    /**
+     * @return the first entry with the same sequence, null if this entry is the first one
+     */
+    FastaEntry getRepresentative() {
+        return this.representative;
+    }
+
+    /**
+     * @return the later entries with the same sequence, empty if there are none
+     */
+    List<FastaEntry> getDuplicates() {
+        return (this.duplicates != null) ? this.duplicates : List.of();
+    }
+
+    /**
+     * @param motifScanner scanner for the motifs of the sequence, null for no motif scan
+     */
+    void setMotifScanner(MotifScanner motifScanner) {
+        this.motifScanner = motifScanner;
+    }
+
+    /**
+     * @return the motif hits of the last run as start position << 32 | pattern index of the scanner, null without scan
+     */
+    long[] getMotifHits() {
+        return this.motifHits;
+    }
+
+    /**
+     * @param resultCache cache the results are restored from and stored to, null for always calculating
+     */
+    void setResultCache(ResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    /**
+     * @return true if the results of the last run were restored from the result cache instead of calculated
+     */
+    boolean isCachedResult() {
+        return this.cachedResult;
+    }
+
+    /**
+     * Calculates all metrics from the compositions, which need to be counted before.
+     *
+     * @param seqType SequenceType Enum for the calculation
+     */
+    private void calculateMetrics(SequenceType seqType) {
         this.setGC(seqType);
         this.setMolecularWeight(seqType);
         this.setMeltingPoint(seqType);
@@ -187,19 +410,26 @@ class FastaEntry implements Runnable, EntryI {
      */
     @Override
     public void calcAlphabet() {
-        this.alphabetCount = SequenceHandler.countAlphabet(this.sequence);
+        this.composition = (this.packedSequence != null) ? SequenceHandler.countComposition(this.packedSequence) : SequenceHandler.countComposition(this.sequence);
+        this.alphabetCount = null;
     }
 
     /**
      * Sets the peptide translation for this Sequence by the SequenceType Enum.
-     * Only available for DNA/RNA sequence types.
+     * Only available for DNA/RNA sequence types. The translation itself isn't stored, only its composition for
+     * the peptide calculations. getTranslatedSequence() translates on demand.
      *
      * @param seqType SequenceType Enum for the calculation
      */
     @Override
     public void setTranslatedSequence(SequenceType seqType) {
         switch (seqType) {
-            case DNA, RNA -> this.translatedSequence = SequenceHandler.translateSequence(this.sequence);
+            case DNA, RNA -> {
+                this.translatable = true;
+                byte[] peptide = this.translatePeptide();
+                this.translatedComposition = new long[COMPOSITION_SIZE];
+                SequenceHandler.countComposition(peptide, 0, peptide.length, this.translatedComposition);
+            }
         }
     }
 
@@ -210,7 +440,7 @@ class FastaEntry implements Runnable, EntryI {
      */
     @Override
     public void setGC(SequenceType seqType) {
-        this.gcEnrichment = seqType.gcEnrichment(this.sequenceLength, this.alphabetCount);
+        this.gcEnrichment = seqType.gcEnrichment(this.sequenceLength, this.composition);
     }
 
     /**
@@ -220,7 +450,7 @@ class FastaEntry implements Runnable, EntryI {
      */
     @Override
     public void setMolecularWeight(SequenceType seqType) {
-        this.molecularWeight = seqType.molecularWeight(this.alphabetCount);
+        this.molecularWeight = seqType.molecularWeight(this.composition);
     }
 
     /**
@@ -230,7 +460,7 @@ class FastaEntry implements Runnable, EntryI {
      */
     @Override
     public void setMeltingPoint(SequenceType seqType) {
-        this.meltingPoint = seqType.meltingPoint(this.sequenceLength, this.alphabetCount);
+        this.meltingPoint = seqType.meltingPoint(this.sequenceLength, this.composition);
     }
 
     /**
@@ -241,38 +471,98 @@ class FastaEntry implements Runnable, EntryI {
     @Override
     public void setNetCharge(SequenceType seqType) {
         switch (seqType) {
-            case PEPTIDE -> this.netCharge = seqType.netCharge(this.alphabetCount, 7.0);
-            case DNA, RNA ->
-                    this.netCharge = SequenceType.PEPTIDE.netCharge(SequenceHandler.countAlphabet(this.translatedSequence), 7.0);
+            case PEPTIDE -> this.netCharge = seqType.netCharge(this.composition, 7.0);
+            case DNA, RNA -> this.netCharge = SequenceType.PEPTIDE.netCharge(this.translatedComposition, 7.0);
         }
     }
 
     /**
-     * Recursive Logic for getting the iso electric Point of a sequence.
+     * Bisection for getting the iso electric Point of a sequence, with the tolerance set for this entry.
      *
      * @param seqType SequenceType Enum for the calculation
-     * @param pH      Initial pH to start the recursive Function. (typically 7)
+     * @param pH      not needed by the bisection. Kept for compatibility
      */
     @Override
     public void setIsoelectricPoint(SequenceType seqType, Double pH) {
 
         switch (seqType) {
-            case PEPTIDE -> this.isoelectricPoint = seqType.isoelectricPoint(seqType, this.alphabetCount, 7.0);
+            case PEPTIDE -> this.isoelectricPoint = seqType.isoelectricPoint(this.composition, this.isoelectricTolerance);
             case DNA, RNA ->
-                    this.isoelectricPoint = SequenceType.PEPTIDE.isoelectricPoint(SequenceType.PEPTIDE, SequenceHandler.countAlphabet(this.translatedSequence), 7.0);
+                    this.isoelectricPoint = SequenceType.PEPTIDE.isoelectricPoint(this.translatedComposition, this.isoelectricTolerance);
         }
     }
 
+    /**
+     * Sets the tolerance in pH for the iso electric Point calculation.
+     *
+     * @param isoelectricTolerance maximal distance of the result to the real iso-electric point
+     */
+    void setIsoelectricTolerance(double isoelectricTolerance) {
+        this.isoelectricTolerance = isoelectricTolerance;
+    }
+
     @Override
     public String getTranslatedSequence() {
-        return this.translatedSequence;
+        return this.translatable ? new String(this.translatePeptide(), StandardCharsets.ISO_8859_1) : null;
+    }
+
+    /**
+     * @return the translation as bytes or null if the sequence isn't translatable
+     */
+    byte[] getTranslatedBytes() {
+        return this.translatable ? this.translatePeptide() : null;
+    }
+
+    private byte[] translatePeptide() {
+        byte[] peptide = new byte[this.sequenceLength / 3];
+        if (this.packedSequence != null) {
+            this.geneticCode.translate(this.packedSequence, 0, this.sequenceLength, peptide, 0);
+        } else {
+            this.geneticCode.translate(this.sequence.getBytes(StandardCharsets.ISO_8859_1), 0, this.sequenceLength, peptide, 0);
+        }
+        return peptide;
+    }
+
+    /**
+     * Sets the SequenceType of the file this entry belongs to. It's set by the parser, so the calculations of the
+     * entry don't depend on any FastaHandler state while the entry runs on a worker pool.
+     *
+     * @param seqType SequenceType Enum for the calculation
+     */
+    void setSequenceType(SequenceType seqType) {
+        this.seqType = seqType;
+    }
+
+    /**
+     * Sets the NCBI translation table for the translation of DNA/RNA sequences. Default is the standard code.
+     *
+     * @param geneticCode GeneticCode Enum for the translation
+     */
+    void setGeneticCode(GeneticCode geneticCode) {
+        this.geneticCode = geneticCode;
+    }
+
+    GeneticCode getGeneticCode() {
+        return this.geneticCode;
     }
 
     @Override
     public Map<Character, Double> getAlphabetCount() {
+        // lazily built view of the composition, only for compatibility
+        if (this.alphabetCount == null && this.composition != null) {
+            this.alphabetCount = SequenceHandler.toAlphabetMap(this.composition);
+        }
         return this.alphabetCount;
     }
 
+    long[] getComposition() {
+        return this.composition;
+    }
+
+    long[] getTranslatedComposition() {
+        return this.translatedComposition;
+    }
+
     @Override
     public double getGcEnrichment() {
         return gcEnrichment;
@@ -300,7 +590,30 @@ class FastaEntry implements Runnable, EntryI {
 
     @Override
     public String getSequence() {
-        return sequence;
+        return (this.packedSequence != null) ? this.packedSequence.toString() : this.sequence;
+    }
+
+    /**
+     * @return the uppercase sequence as bytes, decoded from the packed sequence if needed
+     */
+    byte[] getSequenceBytes() {
+        return (this.packedSequence != null) ? this.packedSequence.toBytes() : this.sequence.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    PackedSequence getPackedSequence() {
+        return this.packedSequence;
+    }
+
+    /**
+     * @return the packed sequence, a String sequence gets packed as DNA. Characters besides ACGT/U stay in the side
+     * list of the packed sequence
+     */
+    PackedSequence toPackedSequence() {
+        if (this.packedSequence != null) {
+            return this.packedSequence;
+        }
+        byte[] bases = this.sequence.getBytes(StandardCharsets.ISO_8859_1);
+        return PackedSequence.pack(bases, bases.length, (byte) 'T');
     }
 
     @Override
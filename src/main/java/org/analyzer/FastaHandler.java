@@ -1,37 +1,166 @@
 package org.analyzer;
 
 import java.io.*;
+import java.nio.file.Path;
 import java.util.*;
 import java.lang.StringBuilder;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
-import java.util.regex.Pattern;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
  * Class for handling the FastaEntry's. Methods are hidden inside the Constructor. It's possible to
  * append more Objects to this Object via the wrapper Function addFastaEntry()
+ * <p>
+ * Every FastaHandler is an independent analysis session with its own configuration and results, so many sessions
+ * can run in parallel inside one JVM. A session either creates a worker pool with numberThreads threads for every
+ * analysis step or uses a shared pool given to the constructor, which is never shut down by the session. Calls on
+ * the same session are synchronized, so one session only runs one analysis step at a time.
+ * getInstance() is only the default session of the command line program.
  */
 public class FastaHandler {
-    private static FastaHandler instance;
+    // number of entries per worker thread that may be parsed ahead of the writer in streaming mode
+    private static final int IN_FLIGHT_PER_THREAD = 4;
+    // extensions cut from the input file name for the names of the output files
+    private static final String[] COMPRESSION_EXTENSIONS = {".gz", ".bgz"};
+    private static final String[] FASTA_EXTENSIONS = {".fasta", ".fas", ".fa", ".fna", ".ffn", ".faa", ".frn", ".fsa"};
+    private static final Future<FastaEntry> END_OF_STREAM = CompletableFuture.completedFuture(null);
+    private final ExecutorService sharedPool;
     int numberThreads;
     LinkedList<FastaEntry> fastaObjectList = new LinkedList<>();
     String filename;
     SequenceType seqType;
+    GeneticCode geneticCode = GeneticCode.STANDARD;
+    double isoelectricTolerance = SequenceType.DEFAULT_PI_TOLERANCE;
+    boolean compressOutput;
+    RunMetrics metrics;
+    ResultCache resultCache;
+    MotifScanner motifScanner;
+    private String makespanReport;
+
+    private static final class DefaultSession {
+        private static final FastaHandler INSTANCE = new FastaHandler();
+    }
+
+    /**
+     * Creates a session with its own worker pools of 3/4 of the available processors, but at least one thread.
+     */
+    public FastaHandler() {
+        this(Math.max(1, Runtime.getRuntime().availableProcessors() * 3 / 4));
+    }
+
+    /**
+     * Creates a session with its own worker pools.
+     *
+     * @param numberThreads number of worker threads of every analysis step
+     */
+    public FastaHandler(int numberThreads) {
+        this.sharedPool = null;
+        this.numberThreads = numberThreads;
+    }
+
+    /**
+     * Creates a session that calculates on a pool shared with other sessions. The pool isn't shut down by the
+     * session.
+     *
+     * @param sharedPool    pool for all calculations of this session
+     * @param numberThreads number of threads of the shared pool, used to bound the entries in flight while streaming
+     */
+    public FastaHandler(ExecutorService sharedPool, int numberThreads) {
+        this.sharedPool = Objects.requireNonNull(sharedPool);
+        this.numberThreads = numberThreads;
+    }
 
     /**
-     * Invoke for singleton
+     * Invoke for singleton. Only the default session of the command line program, embedding code should create its
+     * own FastaHandler for every analysis.
      *
      * @return instance of the class
      */
     public static FastaHandler getInstance() {
-        if (instance == null) {
-            instance = new FastaHandler();
+        return DefaultSession.INSTANCE;
+    }
+
+    /**
+     * @param geneticCode NCBI translation table for the Dna/Rna translation of this session
+     */
+    public synchronized void setGeneticCode(GeneticCode geneticCode) {
+        this.geneticCode = Objects.requireNonNull(geneticCode);
+    }
+
+    /**
+     * @param isoelectricTolerance tolerance of the isoelectric point in pH for this session
+     */
+    public synchronized void setIsoelectricTolerance(double isoelectricTolerance) {
+        this.isoelectricTolerance = isoelectricTolerance;
+    }
+
+    /**
+     * @param compressOutput write the analyzed output files BGZF compressed, as .fasta.gz with a .gzi index
+     */
+    public synchronized void setCompressOutput(boolean compressOutput) {
+        this.compressOutput = compressOutput;
+    }
+
+    /**
+     * @param resultCache cache the results of the entries are restored from and stored to, null to always calculate
+     */
+    synchronized void setResultCache(ResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    /**
+     * @return the entries of the last parsed file of this session
+     */
+    public synchronized List<EntryI> getFastaEntries() {
+        return List.copyOf(this.fastaObjectList);
+    }
+
+    public synchronized String getFilename() {
+        return this.filename;
+    }
+
+    public synchronized SequenceType getSequenceType() {
+        return this.seqType;
+    }
+
+    /**
+     * @return the instrumentation of the last run of this session, started by parsing a file. null before the first run
+     */
+    synchronized RunMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * @return makespan and thread utilization of the last processFastaEntries call, null before the first one
+     */
+    synchronized String getMakespanReport() {
+        return this.makespanReport;
+    }
+
+    /**
+     * The own pools are ForkJoinPools, so the chunks of large entries are spread over the threads of the pool. A shared
+     * pool should be a ForkJoinPool too, otherwise the chunks are forked into the common pool.
+     *
+     * @return the shared pool or a new pool with numberThreads threads for one analysis step
+     */
+    private ExecutorService acquirePool() {
+        return (this.sharedPool != null) ? this.sharedPool : new ForkJoinPool(this.numberThreads);
+    }
+
+    private void releasePool(ExecutorService threadPool) {
+        if (threadPool != this.sharedPool) {
+            threadPool.shutdown();
         }
-        return instance;
     }
 
-    void verbosePrinting() {
+    synchronized void verbosePrinting() {
         for (FastaEntry entry : this.fastaObjectList) {
             System.out.println("-> SequenceID: " + entry.getSeqID().split(">")[1]);
             System.out.println("\t-> Sequence Length:   " + entry.getSequenceLength());
@@ -45,21 +174,225 @@ public class FastaHandler {
 
 
     /**
-     * Enables Multithreading
+     * Enables Multithreading. The entries are scheduled largest first by an EntryScheduler. Returns when all entries of
+     * the session are calculated, the makespan of the file is kept for getMakespanReport().
      */
-    void processFastaEntries() {
-        ExecutorService threadPool = Executors.newFixedThreadPool(this.numberThreads);
+    public synchronized void processFastaEntries() {
+        ExecutorService threadPool = this.acquirePool();
+        EntryScheduler scheduler = new EntryScheduler(this.numberThreads);
+        try {
+            this.submitFastaEntries(threadPool, scheduler);
+            scheduler.awaitCompletion(this.filename);
+            this.makespanReport = scheduler.makespanReport(this.filename);
+            this.countCachedResults();
+            this.printCacheReport();
+        } catch (ExecutionException ee) {
+            System.err.println("-> Calculation failed: " + ee.getCause());
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } finally {
+            this.releasePool(threadPool);
+        }
+    }
 
+    /**
+     * Same as processFastaEntries(), but the output file is written while the entries are still calculated. Every
+     * entry is written in input order as soon as its calculation is done.
+     *
+     * @param outputDirectory specifies the Directory where the output file is saved to
+     * @param translate       write the translated sequence instead of the input sequence
+     */
+    public synchronized void processFastaEntries(String outputDirectory, boolean translate) {
+        ExecutorService threadPool = this.acquirePool();
+        EntryScheduler scheduler = new EntryScheduler(this.numberThreads);
+        try {
+            this.submitFastaEntries(threadPool, scheduler);
+            try (FastaOutputWriter writer = this.openOutput(outputDirectory, translate, threadPool)) {
+                for (FastaEntry entry : this.fastaObjectList) {
+                    long waitStart = System.nanoTime();
+                    scheduler.completionOf(entry).get();
+                    writer.addQueueWait(System.nanoTime() - waitStart);
+                    writer.writeEntry(entry, translate);
+                }
+            } catch (IOException ioe) {
+                System.err.println("-> Could not write output file: " + ioe.getMessage());
+            }
+            scheduler.awaitCompletion(this.filename);
+            this.makespanReport = scheduler.makespanReport(this.filename);
+            this.countCachedResults();
+            this.printCacheReport();
+        } catch (ExecutionException ee) {
+            System.err.println("-> Calculation failed: " + ee.getCause());
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } finally {
+            this.releasePool(threadPool);
+        }
+    }
+
+    /**
+     * Submits the calculations of all entries to a pool that may be shared with other handlers. Used by the batch
+     * mode, where the entries of many files are calculated on one pool.
+     *
+     * @param threadPool pool the entries are calculated on. It's not shut down by this method
+     * @param scheduler  new scheduler for the entries of this session
+     * @return future that completes when all entries are calculated
+     */
+    synchronized CompletableFuture<Void> submitFastaEntries(Executor threadPool, EntryScheduler scheduler) {
         for (FastaEntry entry : this.fastaObjectList) {
-            threadPool.submit(entry);
+            this.prepareEntry(entry);
+        }
+        scheduler.setMetrics(this.metrics);
+        return scheduler.submit(this.fastaObjectList, threadPool);
+    }
+
+    /**
+     * Hands the settings of this handler to the entry before it gets calculated.
+     */
+    private void prepareEntry(FastaEntry entry) {
+        entry.setSequenceType(this.seqType);
+        entry.setGeneticCode(this.geneticCode);
+        entry.setIsoelectricTolerance(this.isoelectricTolerance);
+        entry.setResultCache(this.resultCache);
+        entry.setMotifScanner((this.seqType == SequenceType.DNA || this.seqType == SequenceType.RNA) ? this.motifScanner : null);
+    }
+
+    /**
+     * Counts the entries whose results came from the result cache, after all entries are calculated.
+     */
+    synchronized void countCachedResults() {
+        if (this.resultCache == null || this.metrics == null) {
+            return;
         }
-        threadPool.shutdown();
+        for (FastaEntry entry : this.fastaObjectList) {
+            this.metrics.countCacheLookup(entry.isCachedResult());
+        }
+    }
+
+    private void printCacheReport() {
+        if (this.resultCache != null && this.metrics != null) {
+            System.out.println(this.metrics.cacheReport());
+        }
+    }
+
+    /**
+     * @param sharedPool pool for all calculations of the new handler
+     * @return a new handler with the same thread count, genetic code and pI tolerance but without any entries
+     */
+    synchronized FastaHandler copyConfiguration(ExecutorService sharedPool) {
+        FastaHandler handler = new FastaHandler(sharedPool, this.numberThreads);
+        handler.geneticCode = this.geneticCode;
+        handler.isoelectricTolerance = this.isoelectricTolerance;
+        handler.compressOutput = this.compressOutput;
+        handler.resultCache = this.resultCache;
+        handler.motifScanner = this.motifScanner;
+        return handler;
+    }
+
+    /**
+     * Streaming mode with bounded memory. The parser hands every entry to the worker pool as soon as it is parsed and
+     * an ordered writer thread writes the results while parsing is still going on. Only a bounded number of entries
+     * is in flight at the same time, so the heap use doesn't depend on the size of the input file. Entries aren't
+     * kept inside the fastaObjectList.
+     *
+     * @param fasta           File to analyze
+     * @param type            Type of the given FastaFile
+     * @param outputDirectory specifies the Directory where the output file is saved to
+     * @param translate       write the translated sequence instead of the input sequence
+     * @param verboseWorkers  boolean for verbose Output of worker tasks
+     */
+    public synchronized void streamFastaEntries(String fasta, String type, String outputDirectory, boolean translate, boolean verboseWorkers) throws WrongSequenceTypeException, MalformattedFastaFileException {
+        this.filename = fasta.split("/")[fasta.split("/").length - 1];
+        setSequenceType(type, this.filename);
+        this.fastaObjectList = new LinkedList<>();
+        this.metrics = new RunMetrics(this.filename, this.seqType, this.numberThreads);
+        RunMetrics.StageMetrics compute = this.metrics.stage(RunMetrics.Stage.COMPUTE);
+
+        ExecutorService threadPool = this.acquirePool();
+        BlockingQueue<Future<FastaEntry>> pendingEntries = new ArrayBlockingQueue<>(this.numberThreads * IN_FLIGHT_PER_THREAD);
+        OrderedEntryWriter writer = new OrderedEntryWriter(outputDirectory, pendingEntries, translate, threadPool);
+        writer.start();
+
         try {
-            if (!threadPool.awaitTermination(100, TimeUnit.MINUTES)) {
-                System.err.println("Threads doesn't finish work within given time-limit of 100 Minutes.");
+            FastaParser parser = new FastaParser(this.seqType, verboseWorkers);
+            parser.setDecompressionPool(threadPool);
+            parser.setMetrics(this.metrics);
+            parser.parse(Path.of(fasta), entry -> {
+                try {
+                    this.prepareEntry(entry);
+                    pendingEntries.put(threadPool.submit(compute.measured(EntryScheduler.calculation(entry), entry.getSequenceLength(), 1), entry));
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new CancellationException("Streaming got interrupted while parsing " + this.filename);
+                }
+            });
+        } catch (IOException ioe) {
+            System.err.println("-> Could not read input file: " + ioe.getMessage());
+        } finally {
+            try {
+                pendingEntries.put(END_OF_STREAM);
+                writer.join();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+            // released after the writer, it compresses the output on the same pool
+            this.releasePool(threadPool);
+            this.metrics.finish();
+        }
+        if (writer.failure != null) {
+            System.err.println("-> Could not write output file: " + writer.failure.getMessage());
+        }
+        this.printCacheReport();
+    }
+
+    /**
+     * Writer thread for the streaming mode. Takes the futures of the submitted entries in input order from the queue
+     * and writes every entry as soon as its calculations are done.
+     */
+    private class OrderedEntryWriter extends Thread {
+        private final String outputDirectory;
+        private final BlockingQueue<Future<FastaEntry>> pendingEntries;
+        private final boolean translate;
+        private final Executor compressionPool;
+        private volatile Exception failure;
+
+        OrderedEntryWriter(String outputDirectory, BlockingQueue<Future<FastaEntry>> pendingEntries, boolean translate, Executor compressionPool) {
+            super("fasta-writer");
+            this.outputDirectory = outputDirectory;
+            this.pendingEntries = pendingEntries;
+            this.translate = translate;
+            this.compressionPool = compressionPool;
+        }
+
+        @Override
+        public void run() {
+            try (FastaOutputWriter writer = openOutput(this.outputDirectory, this.translate, this.compressionPool)) {
+                while (true) {
+                    long waitStart = System.nanoTime();
+                    Future<FastaEntry> pending = this.pendingEntries.take();
+                    if (pending == END_OF_STREAM) {
+                        writer.addQueueWait(System.nanoTime() - waitStart);
+                        break;
+                    }
+                    FastaEntry entry = pending.get();
+                    writer.addQueueWait(System.nanoTime() - waitStart);
+                    if (resultCache != null) {
+                        metrics.countCacheLookup(entry.isCachedResult());
+                    }
+                    writer.writeEntry(entry, this.translate);
+                }
+            } catch (IOException | ExecutionException | InterruptedException e) {
+                this.failure = e;
+                // keep draining, so the parser never blocks on a full queue
+                try {
+                    Future<FastaEntry> discarded;
+                    do {
+                        discarded = this.pendingEntries.take();
+                    } while (discarded != END_OF_STREAM);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
             }
-        } catch (InterruptedException e) {
-            e.getMessage();
         }
     }
 
@@ -71,9 +404,10 @@ public class FastaHandler {
      * @param type           Type of the given FastaFile
      * @param verboseWorkers boolean for verbose Output of worker tasks
      */
-    public void generateFastaHandlerObject(String fasta, String type, boolean verboseWorkers) throws WrongSequenceTypeException, MalformattedFastaFileException {
+    public synchronized void generateFastaHandlerObject(String fasta, String type, boolean verboseWorkers) throws WrongSequenceTypeException, MalformattedFastaFileException {
         this.filename = fasta.split("/")[fasta.split("/").length - 1];
         setSequenceType(type, this.filename);
+        this.metrics = new RunMetrics(this.filename, this.seqType, this.numberThreads);
         this.parseFasta(fasta, verboseWorkers);
     }
 
@@ -84,12 +418,76 @@ public class FastaHandler {
      * @param fasta          File to analyze
      * @param verboseWorkers boolean for verbose Output of worker tasks
      */
-    public void generateFastaHandlerObject(String fasta, boolean verboseWorkers) throws WrongSequenceTypeException, MalformattedFastaFileException {
+    public synchronized void generateFastaHandlerObject(String fasta, boolean verboseWorkers) throws WrongSequenceTypeException, MalformattedFastaFileException {
         this.filename = fasta.split("/")[fasta.split("/").length - 1];
         setSequenceType(null, this.filename);
+        this.metrics = new RunMetrics(this.filename, this.seqType, this.numberThreads);
         this.parseFasta(fasta, verboseWorkers);
     }
 
+    /**
+     * Fills the handler only with the entries of the given sequence IDs. The entries are read by the .fai index of the
+     * input file, which gets built next to the input if it doesn't exist yet, so the rest of the file is never parsed.
+     * IDs that aren't inside the index are reported and skipped. Compressed files can't be indexed, they are parsed
+     * completely and only the entries of the given IDs are kept.
+     *
+     * @param fasta          File to analyze
+     * @param type           Type of the given FastaFile
+     * @param sequenceIDs    IDs of the sequences to analyze, as written in the header until the first whitespace
+     * @param verboseWorkers boolean for verbose Output of worker tasks
+     */
+    public synchronized void generateFastaHandlerObject(String fasta, String type, Collection<String> sequenceIDs, boolean verboseWorkers) throws WrongSequenceTypeException, MalformattedFastaFileException {
+        this.filename = fasta.split("/")[fasta.split("/").length - 1];
+        setSequenceType(type, this.filename);
+        this.metrics = new RunMetrics(this.filename, this.seqType, this.numberThreads);
+
+        try {
+            if (CompressedInput.formatOf(Path.of(fasta)) != CompressedInput.Format.PLAIN) {
+                this.parseFasta(fasta, verboseWorkers);
+                this.keepSequenceIDs(sequenceIDs);
+                return;
+            }
+        } catch (IOException ioe) {
+            System.err.println("-> Could not read input file: " + ioe.getMessage());
+            return;
+        }
+
+        LinkedList<FastaEntry> entryList = new LinkedList<>();
+        try (IndexedFastaReader reader = new IndexedFastaReader(Path.of(fasta))) {
+            for (String sequenceID : sequenceIDs) {
+                FastaEntry entry = reader.readEntry(sequenceID, this.seqType, verboseWorkers);
+                if (entry == null) {
+                    System.err.println("-> Sequence ID not found in index: " + sequenceID);
+                } else {
+                    entryList.add(entry);
+                }
+            }
+            this.fastaObjectList = entryList;
+        } catch (IOException ioe) {
+            System.err.println("-> Could not read input file: " + ioe.getMessage());
+        }
+    }
+
+    /**
+     * Keeps only the entries of the given IDs, in the order of the IDs. Missing IDs are reported.
+     */
+    private void keepSequenceIDs(Collection<String> sequenceIDs) {
+        Map<String, FastaEntry> entriesByID = new HashMap<>();
+        for (FastaEntry entry : this.fastaObjectList) {
+            entriesByID.putIfAbsent(FastaIndex.sequenceName(entry.getSeqID()), entry);
+        }
+        LinkedList<FastaEntry> entryList = new LinkedList<>();
+        for (String sequenceID : sequenceIDs) {
+            FastaEntry entry = entriesByID.get(sequenceID);
+            if (entry == null) {
+                System.err.println("-> Sequence ID not found in input file: " + sequenceID);
+            } else {
+                entryList.add(entry);
+            }
+        }
+        this.fastaObjectList = entryList;
+    }
+
     private void setSequenceType(String type, String filename) {
         if (type != null) {
             try {
@@ -115,17 +513,41 @@ public class FastaHandler {
                     No Sequence Type provided. No immediate action required.
                     FastaEntry object are still filled with the seqID the Sequence and translated Sequence(If DNA or RNA),
                     but no further metadata analysis is available from here.\s
-                    Please consider to rerun the Program and submit the Sequence Type of the Fasta Sequences for further analysis.""" + "\nFile is saved as: " + filename.split("\\.")[0] + "-ambiguous.fasta in the FastaHandler");
+                    Please consider to rerun the Program and submit the Sequence Type of the Fasta Sequences for further analysis.""" + "\nFile is saved as: " + baseName(filename) + "-ambiguous.fasta in the FastaHandler");
         }
     }
 
     /**
-     * Parses the input fasta file and checks for format. Object gets filled here and given input file
+     * Parses the input fasta file and checks for format. Object gets filled here and given input file.
+     * The file is read by the byte level FastaParser, BGZF compressed files are inflated on the pool of the session.
      *
      * @param fasta          input file that needs to be checked
      * @param verboseWorkers boolean for verbose Output of worker tasks
      */
     private void parseFasta(String fasta, boolean verboseWorkers) throws MalformattedFastaFileException, WrongSequenceTypeException {
+        LinkedList<FastaEntry> entryList = new LinkedList<>();
+        ExecutorService threadPool = this.acquirePool();
+        try {
+            FastaParser parser = new FastaParser(this.seqType, verboseWorkers);
+            parser.setDecompressionPool(threadPool);
+            parser.setMetrics(this.metrics);
+            parser.setDeduplication(true);
+            parser.parse(Path.of(fasta), entryList::add);
+            this.fastaObjectList = entryList;
+        } catch (IOException ioe) {
+            System.err.println("-> Could not read input file: " + ioe.getMessage());
+        } finally {
+            this.releasePool(threadPool);
+        }
+    }
+
+    /**
+     * Scanner based parser. Replaced by the FastaParser, only kept as reference for parser benchmarks.
+     *
+     * @param fasta          input file that needs to be checked
+     * @param verboseWorkers boolean for verbose Output of worker tasks
+     */
+    void parseFastaScanner(String fasta, boolean verboseWorkers) throws MalformattedFastaFileException, WrongSequenceTypeException {
 
         try {
             Scanner fastaReader = new Scanner(new File(fasta));
@@ -152,6 +574,7 @@ public class FastaHandler {
                     }
                     FastaEntry tmpEntry = new FastaEntry(line);
                     tmpEntry.verboseWorkers = verboseWorkers;
+                    tmpEntry.setSequenceType(this.seqType);
                     entryList.add(tmpEntry);
                     sequenceHandler = new StringBuilder();
                     inHeader = true;
@@ -189,49 +612,283 @@ public class FastaHandler {
      *
      * @param outputDirectory specifies the Directory where the files are saved to
      */
-    public void generateOutputFiles(String outputDirectory, boolean translate) {
-        String outFile = this.filename.split("\\.")[0] + "_analyzed.fasta";
-        if (translate) {
-            outFile = this.filename.split("\\.")[0] + "_analyzed_translated.fasta";
-        }
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(outputDirectory + outFile))) {
+    public synchronized void generateOutputFiles(String outputDirectory, boolean translate) {
+        ExecutorService threadPool = this.acquirePool();
+        try (FastaOutputWriter writer = this.openOutput(outputDirectory, translate, threadPool)) {
             for (FastaEntry entry : this.fastaObjectList) {
-                writeEntry(writer, entry, translate);
+                writer.writeEntry(entry, translate);
+            }
+        } catch (IOException ioe) {
+            System.err.println("-> Could not write output file: " + ioe.getMessage());
+        } finally {
+            this.releasePool(threadPool);
+        }
+    }
+
+    /**
+     * Generates the six-frame translation and the ORF files for every DNA/RNA entry. Frames and chunks of long
+     * sequences are processed in parallel on the worker pool.
+     *
+     * @param outputDirectory specifies the Directory where the files are saved to
+     * @param sixFrames       write the translation of all six frames
+     * @param orfs            write the ORFs as peptide fasta and TSV
+     * @param minOrfLength    minimal length of an ORF in nucleotides, without the stop codon
+     * @param startCodons     start codons of an ORF, separated by commas. Empty for ORFs from stop to stop
+     */
+    public synchronized void generateFrameOutputFiles(String outputDirectory, boolean sixFrames, boolean orfs, int minOrfLength, String startCodons) {
+        ExecutorService threadPool = this.acquirePool();
+        try {
+            this.generateFrameOutputFiles(outputDirectory, sixFrames, orfs, minOrfLength, startCodons, threadPool);
+        } finally {
+            this.releasePool(threadPool);
+        }
+    }
+
+    /**
+     * Same as generateFrameOutputFiles above, but on a given pool that may be shared with other handlers.
+     *
+     * @param threadPool pool the frames and chunks are processed on. It's not shut down by this method
+     */
+    synchronized void generateFrameOutputFiles(String outputDirectory, boolean sixFrames, boolean orfs, int minOrfLength, String startCodons, ExecutorService threadPool) {
+        if (this.seqType != SequenceType.DNA && this.seqType != SequenceType.RNA) {
+            System.err.println("-> Six-frame translation and ORFs are only available for DNA/RNA sequences");
+            return;
+        }
+        OrfFinder orfFinder;
+        try {
+            orfFinder = new OrfFinder(this.geneticCode, minOrfLength, startCodons);
+        } catch (IllegalArgumentException iae) {
+            System.err.println("-> " + iae.getMessage());
+            return;
+        }
+        String baseName = outputDirectory + baseName(this.filename);
+        try {
+            if (sixFrames) {
+                try (BufferedWriter writer = new BufferedWriter(new FileWriter(baseName + "_frames.fasta"))) {
+                    orfFinder.writeSixFrames(this.fastaObjectList, threadPool, writer);
+                }
+            }
+            if (orfs) {
+                try (BufferedWriter fasta = new BufferedWriter(new FileWriter(baseName + "_orfs.fasta"));
+                     BufferedWriter tsv = new BufferedWriter(new FileWriter(baseName + "_orfs.tsv"))) {
+                    long orfCount = orfFinder.findOrfs(this.fastaObjectList, threadPool, fasta, tsv);
+                    System.out.println("-> Found " + orfCount + " ORFs in: " + this.filename);
+                }
+            }
+        } catch (IOException | ExecutionException e) {
+            System.err.println("-> Could not write frame output files: " + e.getMessage());
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Counts the canonical k-mers of all entries and writes the histogram of the counts as _k<k>_histogram.tsv and the
+     * most frequent k-mers as _k<k>_top.tsv. Only for DNA/RNA sequences.
+     *
+     * @param outputDirectory specifies the Directory where the output files are saved to
+     * @param k               length of the k-mers, up to KmerCounter.MAX_K
+     * @param top             number of written most frequent k-mers
+     */
+    public synchronized void generateKmerOutputFiles(String outputDirectory, int k, int top) {
+        ExecutorService threadPool = this.acquirePool();
+        try {
+            this.generateKmerOutputFiles(outputDirectory, k, top, threadPool);
+        } finally {
+            this.releasePool(threadPool);
+        }
+    }
+
+    /**
+     * Same as generateKmerOutputFiles above, but on a given pool that may be shared with other handlers.
+     *
+     * @param threadPool pool the k-mers are counted on. It's not shut down by this method
+     */
+    synchronized void generateKmerOutputFiles(String outputDirectory, int k, int top, ExecutorService threadPool) {
+        if (this.seqType != SequenceType.DNA && this.seqType != SequenceType.RNA) {
+            System.err.println("-> K-mer counting is only available for DNA/RNA sequences");
+            return;
+        }
+        KmerCounter counter;
+        try {
+            counter = new KmerCounter(k, this.numberThreads);
+        } catch (IllegalArgumentException iae) {
+            System.err.println("-> " + iae.getMessage());
+            return;
+        }
+        String baseName = outputDirectory + baseName(this.filename) + "_k" + k;
+        try {
+            counter.count(this.fastaObjectList, threadPool);
+            try (BufferedWriter histogram = new BufferedWriter(new FileWriter(baseName + "_histogram.tsv"));
+                 BufferedWriter topKmers = new BufferedWriter(new FileWriter(baseName + "_top.tsv"))) {
+                counter.writeHistogram(histogram);
+                counter.writeTop(topKmers, top);
             }
-        } catch (IOException e) {
-            e.getMessage();
+            System.out.println("-> Counted " + counter.getTotalKmers() + " " + k + "-mers, " + counter.getDistinctKmers() + " distinct, in: " + this.filename);
+        } catch (IOException ioe) {
+            System.err.println("-> Could not write k-mer output files: " + ioe.getMessage());
+        } catch (ExecutionException ee) {
+            System.err.println("-> K-mer counting failed: " + ee.getCause().getMessage());
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
         }
     }
 
-    private void writeEntry(BufferedWriter writer, FastaEntry entry, boolean translate) throws IOException {
-        writer.write(entry.getSeqID());
-        writer.newLine();
+    /**
+     * Writes the sliding window profile of GC content, GC skew and melting point of all entries as
+     * _profile_w<window>_s<step>.tsv or .bedgraph, see WindowProfile. Only for DNA/RNA sequences.
+     *
+     * @param outputDirectory specifies the Directory where the output file is saved to
+     * @param window          length of the windows
+     * @param step            distance of the window starts
+     * @param format          TSV with all values or bedGraph with the GC content
+     */
+    public synchronized void generateProfileOutputFile(String outputDirectory, int window, int step, WindowProfile.Format format) {
+        ExecutorService threadPool = this.acquirePool();
+        try {
+            this.generateProfileOutputFile(outputDirectory, window, step, format, threadPool);
+        } finally {
+            this.releasePool(threadPool);
+        }
+    }
 
-        writer.write(";Sequence Length: " + entry.getSequenceLength() + "\t");
-        if (entry.getMolecularWeight() != 0.0) {
-            writer.write("Molecular Weight: " + String.format("%.2f", entry.getMolecularWeight()) + "g/mole\t");
+    /**
+     * Same as generateProfileOutputFile above, but on a given pool that may be shared with other handlers.
+     *
+     * @param threadPool pool the windows are calculated on. It's not shut down by this method
+     */
+    synchronized void generateProfileOutputFile(String outputDirectory, int window, int step, WindowProfile.Format format, ExecutorService threadPool) {
+        if (this.seqType != SequenceType.DNA && this.seqType != SequenceType.RNA) {
+            System.err.println("-> Window profiles are only available for DNA/RNA sequences");
+            return;
         }
-        if (entry.getMeltingPoint() != 0.0) {
-            writer.write("Melting Point: " + String.format("%.2f", entry.getMeltingPoint()) + "°C\t");
+        WindowProfile profile;
+        try {
+            profile = new WindowProfile(this.seqType, window, step, format);
+        } catch (IllegalArgumentException iae) {
+            System.err.println("-> " + iae.getMessage());
+            return;
         }
-        if (entry.getGcEnrichment() != 0.0) {
-            writer.write("GC Enrichment: " + String.format("%.2f", entry.getGcEnrichment() * 100) + "%\t");
+        String profileFile = outputDirectory + baseName(this.filename) + "_profile_w" + window + "_s" + step +
+                ((format == WindowProfile.Format.TSV) ? ".tsv" : ".bedgraph");
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(profileFile), 1 << 16)) {
+            long windows = profile.write(this.fastaObjectList, threadPool, this.numberThreads, writer);
+            System.out.println("-> Wrote profile of " + windows + " windows of: " + this.filename);
+        } catch (IOException ioe) {
+            System.err.println("-> Could not write profile output file: " + ioe.getMessage());
+        } catch (ExecutionException ee) {
+            System.err.println("-> Profile calculation failed: " + ee.getCause().getMessage());
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
         }
-        if (entry.getNetCharge() != 0.0) {
-            writer.write("Net Charge(at ph 7): " + String.format("%.2f", entry.getNetCharge()) + "\t");
+    }
+
+    /**
+     * Writes the motif hits of all entries as _motifs.tsv, see MotifScanner. The motifs are scanned while the entries
+     * are calculated, so this needs a motifScanner before processFastaEntries. Only for DNA/RNA sequences.
+     *
+     * @param outputDirectory specifies the Directory where the output file is saved to
+     */
+    public synchronized void generateMotifOutputFile(String outputDirectory) {
+        if (this.seqType != SequenceType.DNA && this.seqType != SequenceType.RNA) {
+            System.err.println("-> Motif scans are only available for DNA/RNA sequences");
+            return;
         }
-        if (entry.getIsoelectricPoint() != 0.0) {
-            writer.write("Iso electricPoint: " + String.format("%.2f", entry.getIsoelectricPoint()) + "pH\t");
+        long hits = 0;
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(outputDirectory + baseName(this.filename) + "_motifs.tsv"), 1 << 16)) {
+            writer.write("#sequence\tstart\tend\tstrand\tmotif\tmatched\n");
+            for (FastaEntry entry : this.fastaObjectList) {
+                if (entry.getMotifHits() != null) {
+                    this.motifScanner.writeHits(FastaIndex.sequenceName(entry.getSeqID()), entry.getMotifHits(), writer);
+                    hits += entry.getMotifHits().length;
+                }
+            }
+        } catch (IOException ioe) {
+            System.err.println("-> Could not write motif output file: " + ioe.getMessage());
+            return;
         }
+        System.out.println("-> Found " + hits + " motif hits in: " + this.filename);
+    }
 
-        writer.newLine();
+    /**
+     * Writes the groups of entries with the same sequence as tab separated file, one line per group with the
+     * representative, the sequence length, the number of entries and the IDs of the duplicates. Entries are grouped
+     * while the file is parsed, see DuplicateIndex.
+     *
+     * @param outputDirectory specifies the Directory where the report is saved to
+     */
+    public synchronized void generateDuplicateReport(String outputDirectory) {
+        String reportFile = outputDirectory + baseName(this.filename) + "_duplicates.tsv";
+        int groups = 0;
+        int duplicates = 0;
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(reportFile))) {
+            writer.write("#representative\tlength\tentries\tduplicates");
+            writer.newLine();
+            for (FastaEntry entry : this.fastaObjectList) {
+                if (entry.getDuplicates().isEmpty()) {
+                    continue;
+                }
+                StringJoiner duplicateIDs = new StringJoiner(",");
+                for (FastaEntry duplicate : entry.getDuplicates()) {
+                    duplicateIDs.add(FastaIndex.sequenceName(duplicate.getSeqID()));
+                }
+                writer.write(FastaIndex.sequenceName(entry.getSeqID()) + "\t" + entry.getSequenceLength() + "\t" +
+                        (entry.getDuplicates().size() + 1) + "\t" + duplicateIDs);
+                writer.newLine();
+                groups++;
+                duplicates += entry.getDuplicates().size();
+            }
+        } catch (IOException ioe) {
+            System.err.println("-> Could not write duplicate report: " + ioe.getMessage());
+            return;
+        }
+        System.out.println("-> Found " + duplicates + " duplicate entries in " + groups + " groups of: " + this.filename);
+    }
+
+    /**
+     * @param threadPool pool the blocks of a compressed output file are compressed on
+     * @return writer to the analyzed output file, BGZF compressed if compressOutput is set. The writing until close()
+     * is recorded as write stage of the current run
+     */
+    private FastaOutputWriter openOutput(String outputDirectory, boolean translate, Executor threadPool) throws IOException {
+        Path outputFile = Path.of(outputDirectory + this.outputFileName(translate));
+        FastaOutputWriter writer = this.compressOutput ? FastaOutputWriter.openCompressed(outputFile, threadPool) : FastaOutputWriter.open(outputFile);
+        if (this.metrics != null) {
+            writer.setMetrics(this.metrics);
+        }
+        return writer;
+    }
+
+    private String outputFileName(boolean translate) {
+        String extension = this.compressOutput ? ".fasta.gz" : ".fasta";
+        if (translate) {
+            return baseName(this.filename) + "_analyzed_translated" + extension;
+        }
+        return baseName(this.filename) + "_analyzed" + extension;
+    }
+
+    /**
+     * Cuts a compression extension and then a fasta extension from a file name, other dots are kept, so
+     * sample.v2.fasta.gz becomes sample.v2. The output files of an input are named after this base name.
+     *
+     * @param filename name of the input file without directories
+     * @return the file name without its known extensions
+     */
+    static String baseName(String filename) {
+        String baseName = stripExtension(filename, COMPRESSION_EXTENSIONS);
+        return stripExtension(baseName, FASTA_EXTENSIONS);
+    }
 
-        String sequenceToWrite = (translate && entry.getTranslatedSequence() != null) ? entry.getTranslatedSequence() : entry.getSequence();
-        writer.write(insertLineBreaks(sequenceToWrite));
-        writer.newLine();
+    private static String stripExtension(String filename, String[] extensions) {
+        for (String extension : extensions) {
+            if (filename.length() > extension.length() && filename.regionMatches(true, filename.length() - extension.length(), extension, 0, extension.length())) {
+                return filename.substring(0, filename.length() - extension.length());
+            }
+        }
+        return filename;
     }
 
-    private String insertLineBreaks(String input) {
+    static String insertLineBreaks(String input) {
         StringBuilder printableSequence = new StringBuilder();
 
         int currentIndex = 0;
@@ -249,32 +906,23 @@ public class FastaHandler {
         return printableSequence.toString();
     }
 
+    /**
+     * Checks one uppercase sequence line with the alphabet table of the SequenceType. Peptide lines additionally need
+     * more than 4 distinct amino acids, which are collected as bits of a mask in the same loop.
+     */
     private void checkSequenceType(SequenceType seqtype, String sequence) throws WrongSequenceTypeException {
-        switch (seqtype) {
-            case DNA -> {
-                if (!Pattern.matches("[ATGC]+", sequence)) {
-                    throw new WrongSequenceTypeException("Sequence doesn't look like a DNA sequence");
-                }
-            }
-            case RNA -> {
-                if (!Pattern.matches("[AUGC]+", sequence)) {
-                    throw new WrongSequenceTypeException("Sequence doesn't look like a RNA sequence");
-                }
-            }
-            case PEPTIDE -> {
-
-                // In general peptides doesn't contain less than 4 unique amino acids in a peptide chain
-                // so this is for differentiate between DNA/RNA and peptides better
-                if (!Pattern.matches("[ACDEFGHIKLMNPQRSTVWY]+", sequence) || sequence.chars().distinct().count() <= 4) {
-                    throw new WrongSequenceTypeException("Sequence doesn't look like a Peptide sequence");
-                }
-            }
-            case AMBIGUOUS -> {
-                // allows all possible Characters in DNA, RNA and Peptides, but nothing more
-                if (!Pattern.matches("[ACDEFGHIKLMNPQRSTVWYU]+", sequence)) {
-                    throw new WrongSequenceTypeException("Sequence type doesn't look like any sequence at all");
-                }
+        long alphabetMask = 0L;
+        for (int i = 0; i < sequence.length(); i++) {
+            char c = sequence.charAt(i);
+            if (c > 0xFF || !seqtype.isValid((byte) c)) {
+                throw FastaParser.wrongSequenceType(seqtype);
             }
+            alphabetMask |= 1L << (c - 'A');
+        }
+        // In general peptides doesn't contain less than 4 unique amino acids in a peptide chain
+        // so this is for differentiate between DNA/RNA and peptides better
+        if (sequence.isEmpty() || (seqtype == SequenceType.PEPTIDE && Long.bitCount(alphabetMask) <= 4)) {
+            throw FastaParser.wrongSequenceType(seqtype);
         }
     }
-}
\ No newline at end of file
+}
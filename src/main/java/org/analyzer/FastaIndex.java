@@ -0,0 +1,286 @@
+package org.analyzer;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Samtools compatible fasta index (.fai). Every record holds the name of a sequence, its length, the byte offset of
+ * its first base and the number of bases and bytes per line. With these values every sequence can be found inside
+ * the fasta file without parsing the whole file.
+ */
+class FastaIndex {
+
+    /**
+     * One line of the .fai file
+     *
+     * @param name      sequence ID until the first whitespace, without the leading ">"
+     * @param length    number of bases of the sequence
+     * @param offset    byte offset of the first base inside the fasta file
+     * @param lineBases number of bases per line
+     * @param lineWidth number of bytes per line, including the line break
+     */
+    record Record(String name, long length, long offset, int lineBases, int lineWidth) {
+
+        /**
+         * @return number of bytes from the first to the last base of the sequence, including inner line breaks
+         */
+        long byteSpan() {
+            if (this.length == 0) {
+                return 0;
+            }
+            return (this.length - 1) / this.lineBases * this.lineWidth + (this.length - 1) % this.lineBases + 1;
+        }
+    }
+
+    private final Map<String, Record> records;
+
+    private FastaIndex(Map<String, Record> records) {
+        this.records = records;
+    }
+
+    Record get(String name) {
+        return this.records.get(name);
+    }
+
+    Collection<Record> records() {
+        return this.records.values();
+    }
+
+    /**
+     * Path of the index file for a fasta file. Like samtools the index is saved next to the input as input.fai
+     *
+     * @param fasta path of the fasta file
+     * @return path of the index file
+     */
+    static Path indexPath(Path fasta) {
+        return fasta.resolveSibling(fasta.getFileName() + ".fai");
+    }
+
+    /**
+     * @param header header line of an entry, with the leading ">"
+     * @return the name the sequence is indexed by, the header until the first whitespace
+     */
+    static String sequenceName(String header) {
+        String name = header.startsWith(">") ? header.substring(1).strip() : header.strip();
+        int end = 0;
+        while (end < name.length() && name.charAt(end) > ' ') {
+            end++;
+        }
+        return name.substring(0, end);
+    }
+
+    /**
+     * Reads the index next to the fasta file. If there is no index or it's older than the fasta file, a new index is
+     * built and written next to the input.
+     *
+     * @param fasta path of the fasta file
+     * @return the index for the fasta file
+     */
+    static FastaIndex loadOrBuild(Path fasta) throws IOException, MalformattedFastaFileException {
+        Path fai = indexPath(fasta);
+        if (Files.exists(fai) && Files.getLastModifiedTime(fai).compareTo(Files.getLastModifiedTime(fasta)) >= 0) {
+            return read(fai);
+        }
+        FastaIndex index = build(fasta);
+        index.write(fai);
+        return index;
+    }
+
+    /**
+     * Reads an existing .fai file.
+     *
+     * @param fai path of the index file
+     * @return the index
+     */
+    static FastaIndex read(Path fai) throws IOException, MalformattedFastaFileException {
+        Map<String, Record> records = new LinkedHashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(fai, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String[] fields = line.split("\t");
+                if (fields.length < 5) {
+                    throw new MalformattedFastaFileException("Invalid index format: " + line);
+                }
+                try {
+                    records.putIfAbsent(fields[0], new Record(fields[0], Long.parseLong(fields[1]), Long.parseLong(fields[2]), Integer.parseInt(fields[3]), Integer.parseInt(fields[4])));
+                } catch (NumberFormatException nfe) {
+                    throw new MalformattedFastaFileException("Invalid index format: " + line);
+                }
+            }
+        }
+        return new FastaIndex(records);
+    }
+
+    /**
+     * Writes the index in the samtools .fai format.
+     *
+     * @param fai path of the index file
+     */
+    void write(Path fai) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(fai, StandardCharsets.UTF_8)) {
+            for (Record record : this.records.values()) {
+                writer.write(record.name() + "\t" + record.length() + "\t" + record.offset() + "\t" + record.lineBases() + "\t" + record.lineWidth());
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Builds the index by scanning the bytes of the fasta file once. Like samtools, all lines of a sequence besides
+     * the last one need the same length.
+     *
+     * @param fasta path of the fasta file
+     * @return the index for the fasta file
+     */
+    static FastaIndex build(Path fasta) throws IOException, MalformattedFastaFileException {
+        return new Builder().build(fasta);
+    }
+
+    private static class Builder {
+        private final Map<String, Record> records = new LinkedHashMap<>();
+        private int duplicates;
+
+        private byte[] lineBuffer = new byte[256];
+        private int lineLength;
+
+        private String name;
+        private long offset;
+        private long length;
+        private int lineBases;
+        private int lineWidth;
+        private boolean lastLineSeen;
+
+        FastaIndex build(Path fasta) throws IOException, MalformattedFastaFileException {
+            ByteBuffer readBuffer = ByteBuffer.allocate(FastaParser.DEFAULT_BUFFER_SIZE);
+            byte[] bytes = readBuffer.array();
+            long filePosition = 0;
+            long lineStart = 0;
+            boolean inHeaderLine = false;
+            int lineBytes = 0;
+            int lineBasesCount = 0;
+
+            try (FileChannel channel = FileChannel.open(fasta, StandardOpenOption.READ)) {
+                while (true) {
+                    int read = channel.read(readBuffer);
+                    int limit = (read == -1) ? 1 : readBuffer.position();
+                    if (read == -1) {
+                        bytes[0] = '\n';
+                    }
+
+                    for (int i = 0; i < limit; i++, filePosition++) {
+                        byte b = bytes[i];
+                        if (lineBytes == 0 && b == '>') {
+                            inHeaderLine = true;
+                            this.lineLength = 0;
+                        } else if (lineBytes == 0 && b == ';') {
+                            throw new MalformattedFastaFileException("Invalid format for indexing: Comment lines aren't supported, found one at byte " + filePosition);
+                        }
+                        lineBytes++;
+
+                        if (b == '\n') {
+                            if (inHeaderLine) {
+                                this.startRecord(filePosition + 1);
+                                inHeaderLine = false;
+                            } else if (read != -1 || lineBytes > 1) {
+                                this.addSequenceLine(lineBasesCount, lineBytes, lineStart);
+                            }
+                            lineStart = filePosition + 1;
+                            lineBytes = 0;
+                            lineBasesCount = 0;
+                        } else if (inHeaderLine) {
+                            this.appendLineByte(b);
+                        } else if (b != '\r') {
+                            lineBasesCount++;
+                        }
+                    }
+
+                    if (read == -1) {
+                        break;
+                    }
+                    readBuffer.clear();
+                }
+            }
+            this.finishRecord();
+
+            if (this.duplicates > 0) {
+                System.err.println("-> Index warning: " + this.duplicates + " duplicate sequence IDs are ignored, only the first occurrence is indexed");
+            }
+            return new FastaIndex(this.records);
+        }
+
+        private void startRecord(long sequenceOffset) {
+            this.finishRecord();
+            int start = 1;
+            while (start < this.lineLength && (this.lineBuffer[start] & 0xFF) <= ' ') {
+                start++;
+            }
+            int end = start;
+            while (end < this.lineLength && (this.lineBuffer[end] & 0xFF) > ' ') {
+                end++;
+            }
+            this.name = new String(this.lineBuffer, start, end - start, StandardCharsets.UTF_8);
+            this.offset = sequenceOffset;
+            this.length = 0;
+            this.lineBases = 0;
+            this.lineWidth = 0;
+            this.lastLineSeen = false;
+        }
+
+        private void addSequenceLine(int bases, int bytes, long lineStart) throws MalformattedFastaFileException {
+            if (this.name == null) {
+                if (bases > 0) {
+                    throw new MalformattedFastaFileException("Invalid format: Sequence found before the first header");
+                }
+                return;
+            }
+            if (bases == 0) {
+                // an empty line ends the sequence, more sequence lines afterwards aren't indexable
+                this.lastLineSeen = this.length > 0 || this.lastLineSeen;
+                return;
+            }
+            if (this.lastLineSeen) {
+                throw new MalformattedFastaFileException("Invalid format for indexing: Different line length in sequence " + this.name + " at byte " + lineStart);
+            }
+            if (this.length == 0) {
+                this.lineBases = bases;
+                this.lineWidth = bytes;
+            } else if (bases != this.lineBases || bytes != this.lineWidth) {
+                if (bases > this.lineBases) {
+                    throw new MalformattedFastaFileException("Invalid format for indexing: Different line length in sequence " + this.name + " at byte " + lineStart);
+                }
+                this.lastLineSeen = true;
+            }
+            this.length += bases;
+        }
+
+        private void finishRecord() {
+            if (this.name == null) {
+                return;
+            }
+            if (this.records.putIfAbsent(this.name, new Record(this.name, this.length, this.offset, this.lineBases, this.lineWidth)) != null) {
+                this.duplicates++;
+            }
+        }
+
+        private void appendLineByte(byte b) {
+            if (this.lineLength == this.lineBuffer.length) {
+                this.lineBuffer = Arrays.copyOf(this.lineBuffer, this.lineBuffer.length * 2);
+            }
+            this.lineBuffer[this.lineLength++] = b;
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package org.analyzer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Writer for the analyzed fasta files. Entries are formatted straight into a large direct ByteBuffer: the metrics
+ * without String.format and the sequence wrapped into lines directly from the packed or byte source, without a copy
+ * of the whole sequence. Two buffers are used in turns, while one is formatted the other one is written to the
+ * channel by a background thread, so formatting and file I/O overlap. Entries are written in the order of the calls.
+ * The output is byte for byte the same as with the former BufferedWriter and String.format.
+ */
+final class FastaOutputWriter implements AutoCloseable {
+    static final int LINE_WIDTH = 70;
+    private static final int BUFFER_SIZE = 1 << 22;
+    // above this value the scaled double isn't exact enough for the fast rounding
+    private static final double FAST_FORMAT_LIMIT = 1e9;
+    // distance to the rounding boundary, below it the rounding is done exactly by BigDecimal
+    private static final double TIE_TOLERANCE = 1e-4;
+
+    private static final byte[] LENGTH_LABEL = ";Sequence Length: ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] MOLECULAR_WEIGHT_LABEL = "Molecular Weight: ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] MELTING_POINT_LABEL = "Melting Point: ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] GC_LABEL = "GC Enrichment: ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] GC_UNIT = "%\t".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NET_CHARGE_LABEL = "Net Charge(at ph 7): ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ISOELECTRIC_POINT_LABEL = "Iso electricPoint: ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ISOELECTRIC_POINT_UNIT = "pH\t".getBytes(StandardCharsets.US_ASCII);
+
+    private final WritableByteChannel channel;
+    private final ExecutorService flusher;
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private ByteBuffer spareBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private Future<?> pendingFlush;
+    private long bytesWritten;
+    private long entriesWritten;
+    private RunMetrics metrics;
+    private RunMetrics.Probe probe;
+    private long queueWaitNanos;
+
+    private final Charset charset = Charset.defaultCharset();
+    private final byte[] lineSeparator = System.lineSeparator().getBytes(this.charset);
+    private final byte[] molecularWeightUnit = "g/mole\t".getBytes(this.charset);
+    private final byte[] meltingPointUnit = "°C\t".getBytes(this.charset);
+    private final byte decimalSeparator;
+    private final boolean fastFormat;
+    private final byte[] lineScratch = new byte[LINE_WIDTH];
+    private final byte[] numberScratch = new byte[24];
+
+    /**
+     * @param channel channel the formatted entries are written to. It's closed by close()
+     */
+    FastaOutputWriter(WritableByteChannel channel) {
+        this.channel = channel;
+        this.flusher = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "fasta-output-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // String.format uses the decimal separator of the default locale, the fast formatting does the same
+        char separator = DecimalFormatSymbols.getInstance(Locale.getDefault(Locale.Category.FORMAT)).getDecimalSeparator();
+        char zeroDigit = DecimalFormatSymbols.getInstance(Locale.getDefault(Locale.Category.FORMAT)).getZeroDigit();
+        this.fastFormat = separator < 128 && zeroDigit == '0';
+        this.decimalSeparator = (byte) separator;
+    }
+
+    /**
+     * Creates or truncates the output file.
+     *
+     * @param file path of the output file
+     * @return writer to the file
+     */
+    static FastaOutputWriter open(Path file) throws IOException {
+        return new FastaOutputWriter(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+    }
+
+    /**
+     * Creates or truncates the output file, which is written BGZF compressed with a .gzi index next to it.
+     *
+     * @param file            path of the output file
+     * @param compressionPool pool the blocks are compressed on
+     * @return writer to the file
+     */
+    static FastaOutputWriter openCompressed(Path file, Executor compressionPool) throws IOException {
+        return new FastaOutputWriter(BgzfOutputChannel.open(file, compressionPool));
+    }
+
+    /**
+     * Records the writing from now until close() as one task of the write stage.
+     *
+     * @param metrics run the writing is recorded for
+     */
+    void setMetrics(RunMetrics metrics) {
+        this.metrics = metrics;
+        this.probe = RunMetrics.probe();
+    }
+
+    /**
+     * @param nanos time the writer waited for the calculations of the next entry
+     */
+    void addQueueWait(long nanos) {
+        this.queueWaitNanos += nanos;
+    }
+
+    /**
+     * Writes one analyzed entry: header, metrics as comment line and the sequence in lines of LINE_WIDTH.
+     *
+     * @param entry     calculated entry
+     * @param translate write the translated sequence instead of the input sequence, if there is a translation
+     */
+    void writeEntry(FastaEntry entry, boolean translate) throws IOException {
+        this.entriesWritten++;
+        this.putText(entry.getSeqID());
+        this.put(this.lineSeparator);
+
+        this.put(LENGTH_LABEL);
+        this.putLong(entry.getSequenceLength());
+        this.putByte((byte) '\t');
+        if (entry.getMolecularWeight() != 0.0) {
+            this.put(MOLECULAR_WEIGHT_LABEL);
+            this.putFixed2(entry.getMolecularWeight());
+            this.put(this.molecularWeightUnit);
+        }
+        if (entry.getMeltingPoint() != 0.0) {
+            this.put(MELTING_POINT_LABEL);
+            this.putFixed2(entry.getMeltingPoint());
+            this.put(this.meltingPointUnit);
+        }
+        if (entry.getGcEnrichment() != 0.0) {
+            this.put(GC_LABEL);
+            this.putFixed2(entry.getGcEnrichment() * 100);
+            this.put(GC_UNIT);
+        }
+        if (entry.getNetCharge() != 0.0) {
+            this.put(NET_CHARGE_LABEL);
+            this.putFixed2(entry.getNetCharge());
+            this.putByte((byte) '\t');
+        }
+        if (entry.getIsoelectricPoint() != 0.0) {
+            this.put(ISOELECTRIC_POINT_LABEL);
+            this.putFixed2(entry.getIsoelectricPoint());
+            this.put(ISOELECTRIC_POINT_UNIT);
+        }
+        this.put(this.lineSeparator);
+
+        byte[] translated = translate ? entry.getTranslatedBytes() : null;
+        if (translated != null) {
+            this.putWrapped(translated);
+        } else if (entry.getPackedSequence() != null) {
+            this.putWrapped(entry.getPackedSequence());
+        } else {
+            this.putWrapped(entry.getSequenceBytes());
+        }
+        this.put(this.lineSeparator);
+    }
+
+    private void putWrapped(byte[] sequence) throws IOException {
+        for (int lineStart = 0; lineStart < sequence.length; lineStart += LINE_WIDTH) {
+            if (lineStart > 0) {
+                this.putByte((byte) '\n');
+            }
+            this.put(sequence, lineStart, Math.min(LINE_WIDTH, sequence.length - lineStart));
+        }
+    }
+
+    private void putWrapped(PackedSequence sequence) throws IOException {
+        for (int lineStart = 0; lineStart < sequence.length(); lineStart += LINE_WIDTH) {
+            if (lineStart > 0) {
+                this.putByte((byte) '\n');
+            }
+            int lineEnd = Math.min(lineStart + LINE_WIDTH, sequence.length());
+            sequence.decode(lineStart, lineEnd, this.lineScratch, 0);
+            this.put(this.lineScratch, 0, lineEnd - lineStart);
+        }
+    }
+
+    /**
+     * Formats a double like String.format("%.2f", value). The Formatter rounds the shortest decimal representation
+     * of the double half up, so only values close to the rounding boundary need the exact rounding of BigDecimal.
+     */
+    void putFixed2(double value) throws IOException {
+        if (!this.fastFormat || !(Math.abs(value) < FAST_FORMAT_LIMIT)) {
+            this.putText(String.format("%.2f", value));
+            return;
+        }
+        double scaled = Math.abs(value) * 100;
+        double floor = Math.floor(scaled);
+        long hundredths;
+        if (Math.abs(scaled - floor - 0.5) < TIE_TOLERANCE) {
+            hundredths = BigDecimal.valueOf(Math.abs(value)).setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue();
+        } else {
+            hundredths = (long) floor + ((scaled - floor > 0.5) ? 1 : 0);
+        }
+
+        int position = this.numberScratch.length;
+        this.numberScratch[--position] = (byte) ('0' + hundredths % 10);
+        this.numberScratch[--position] = (byte) ('0' + hundredths / 10 % 10);
+        this.numberScratch[--position] = this.decimalSeparator;
+        long integerPart = hundredths / 100;
+        do {
+            this.numberScratch[--position] = (byte) ('0' + integerPart % 10);
+            integerPart /= 10;
+        } while (integerPart > 0);
+        // like the Formatter, negative values keep their sign even if they are rounded to zero
+        if (Double.doubleToRawLongBits(value) < 0) {
+            this.numberScratch[--position] = '-';
+        }
+        this.put(this.numberScratch, position, this.numberScratch.length - position);
+    }
+
+    private void putLong(long value) throws IOException {
+        int position = this.numberScratch.length;
+        do {
+            this.numberScratch[--position] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        this.put(this.numberScratch, position, this.numberScratch.length - position);
+    }
+
+    private void putText(String text) throws IOException {
+        this.put(text.getBytes(this.charset));
+    }
+
+    private void put(byte[] bytes) throws IOException {
+        this.put(bytes, 0, bytes.length);
+    }
+
+    private void put(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (!this.buffer.hasRemaining()) {
+                this.flushBuffer();
+            }
+            int chunk = Math.min(length, this.buffer.remaining());
+            this.buffer.put(bytes, offset, chunk);
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    private void putByte(byte b) throws IOException {
+        if (!this.buffer.hasRemaining()) {
+            this.flushBuffer();
+        }
+        this.buffer.put(b);
+    }
+
+    /**
+     * Hands the full buffer to the flusher thread and continues with the spare buffer, after its last write is done.
+     */
+    private void flushBuffer() throws IOException {
+        this.awaitFlush();
+        ByteBuffer full = this.buffer.flip();
+        this.buffer = this.spareBuffer.clear();
+        this.spareBuffer = full;
+        this.bytesWritten += full.remaining();
+        this.pendingFlush = this.flusher.submit(() -> {
+            while (full.hasRemaining()) {
+                this.channel.write(full);
+            }
+            return null;
+        });
+    }
+
+    private void awaitFlush() throws IOException {
+        if (this.pendingFlush == null) {
+            return;
+        }
+        try {
+            this.pendingFlush.get();
+        } catch (ExecutionException ee) {
+            throw (ee.getCause() instanceof IOException ioe) ? ioe : new IOException(ee.getCause());
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing the output file", ie);
+        } finally {
+            this.pendingFlush = null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            this.flushBuffer();
+            this.awaitFlush();
+        } finally {
+            this.flusher.shutdown();
+            this.channel.close();
+            if (this.metrics != null) {
+                this.metrics.stage(RunMetrics.Stage.WRITE).record(this.probe, this.bytesWritten, this.entriesWritten, this.queueWaitNanos);
+            }
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package org.analyzer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Byte level fasta parser. Reads the input through a channel into one large reusable ByteBuffer and scans the
+ * raw bytes for line breaks, so no line Strings are created for sequence lines. Uppercasing and validation of the
+ * sequence characters are done by the SequenceValidator in the same pass in which every run of sequence bytes is
+ * copied into the sequence buffer.
+ * Gzip and BGZF compressed files are inflated transparently by the CompressedInput.
+ * The format rules and thrown exceptions are the same as in the Scanner based parser of the FastaHandler.
+ */
+class FastaParser {
+    static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    private static final int LINE_START = 0;
+    private static final int HEADER_LINE = 1;
+    private static final int COMMENT_LINE = 2;
+    private static final int SEQUENCE_LINE = 3;
+
+    private final SequenceType seqType;
+    private final SequenceValidator validator;
+    private final boolean verboseWorkers;
+    private final ByteBuffer readBuffer;
+    private Executor decompressionPool;
+    private RunMetrics metrics;
+    private DuplicateIndex duplicateIndex;
+
+    private byte[] sequenceBuffer = new byte[1 << 16];
+    private int sequenceLength;
+    private byte[] lineBuffer = new byte[256];
+    private int lineLength;
+
+    // state of the sequence line that is currently scanned
+    private int pendingWhitespace;
+    private long lineAlphabetMask;
+
+    /**
+     * Package wide Constructor.
+     *
+     * @param seqType        SequenceType Enum the sequences get validated against
+     * @param verboseWorkers boolean for verbose Output of worker tasks
+     */
+    FastaParser(SequenceType seqType, boolean verboseWorkers) {
+        this(seqType, verboseWorkers, DEFAULT_BUFFER_SIZE);
+    }
+
+    FastaParser(SequenceType seqType, boolean verboseWorkers, int bufferSize) {
+        this.seqType = seqType;
+        this.validator = SequenceValidator.forType(seqType);
+        this.verboseWorkers = verboseWorkers;
+        this.readBuffer = ByteBuffer.allocate(bufferSize);
+    }
+
+    /**
+     * @param decompressionPool pool the blocks of BGZF input files are inflated on. Without a pool they are inflated
+     *                          on the parsing thread
+     */
+    void setDecompressionPool(Executor decompressionPool) {
+        this.decompressionPool = decompressionPool;
+    }
+
+    /**
+     * @param metrics run the reads and the parsing are recorded for, null for no instrumentation
+     */
+    void setMetrics(RunMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @param deduplicate group the entries with the same sequence during parsing, every later entry of a group shares
+     *                    the sequence of the first one. Needs all entries in memory, so not for streaming
+     */
+    void setDeduplication(boolean deduplicate) {
+        this.duplicateIndex = deduplicate ? new DuplicateIndex() : null;
+    }
+
+    /**
+     * @return number of parsed entries that share the sequence of an earlier entry, 0 without deduplication
+     */
+    int getDuplicates() {
+        return (this.duplicateIndex != null) ? this.duplicateIndex.getDuplicates() : 0;
+    }
+
+    /**
+     * Parses the given fasta file, plain or compressed. Every completed entry is handed to the consumer in file order.
+     *
+     * @param fasta    input file that needs to be parsed
+     * @param consumer receives every parsed FastaEntry
+     * @throws IOException if the file can't be read
+     */
+    void parse(Path fasta, Consumer<FastaEntry> consumer) throws IOException, MalformattedFastaFileException, WrongSequenceTypeException {
+        try (ReadableByteChannel channel = CompressedInput.open(fasta, this.decompressionPool)) {
+            this.parse(channel, consumer);
+        }
+    }
+
+    /**
+     * Parses the uncompressed fasta bytes of the channel. Every completed entry is handed to the consumer in order.
+     * The channel isn't closed.
+     *
+     * @param channel  source of the fasta bytes
+     * @param consumer receives every parsed FastaEntry
+     * @throws IOException if the channel can't be read
+     */
+    void parse(ReadableByteChannel channel, Consumer<FastaEntry> consumer) throws IOException, MalformattedFastaFileException, WrongSequenceTypeException {
+        if (this.metrics == null) {
+            this.parseChannel(channel, consumer);
+            return;
+        }
+        // the time the consumer blocks, like a full queue in streaming mode, is the queue wait of the parsing
+        RunMetrics.StageMetrics read = this.metrics.stage(RunMetrics.Stage.READ);
+        RunMetrics.Probe probe = RunMetrics.probe(read);
+        long[] consumed = new long[2];
+        try {
+            this.parseChannel(channel, entry -> {
+                long start = System.nanoTime();
+                consumer.accept(entry);
+                consumed[0] += System.nanoTime() - start;
+                consumed[1]++;
+            });
+        } finally {
+            this.metrics.stage(RunMetrics.Stage.PARSE).record(probe, read.getBytes(), consumed[1], consumed[0]);
+        }
+    }
+
+    private void parseChannel(ReadableByteChannel channel, Consumer<FastaEntry> consumer) throws IOException, MalformattedFastaFileException, WrongSequenceTypeException {
+        int state = LINE_START;
+        boolean inHeader = false;
+        boolean inSequence = false;
+        int headerCount = -1;
+        String sequenceID = "No header found";
+        FastaEntry currentEntry = null;
+
+        this.sequenceLength = 0;
+        this.readBuffer.clear();
+        byte[] bytes = this.readBuffer.array();
+
+        while (true) {
+            int read = this.read(channel);
+            // a missing line break at the end of the file gets handled like a last line break
+            int limit = (read == -1) ? 1 : this.readBuffer.position();
+            if (read == -1) {
+                bytes[0] = '\n';
+            }
+
+            for (int i = 0; i < limit; i++) {
+                byte b = bytes[i];
+                switch (state) {
+                    case LINE_START -> {
+                        if (b == '>') {
+                            if (inSequence) {
+                                inHeader = false;
+                                inSequence = false;
+                                this.finishEntry(currentEntry, consumer);
+                            }
+                            if (inHeader) {
+                                throw new MalformattedFastaFileException("Invalid format: Missing sequence for " + sequenceID);
+                            }
+                            this.lineLength = 0;
+                            this.appendLineByte(b);
+                            state = HEADER_LINE;
+                        } else if (b == ';') {
+                            this.lineLength = 0;
+                            this.appendLineByte(b);
+                            state = COMMENT_LINE;
+                        } else if ((b & 0xFF) > ' ') {
+                            this.pendingWhitespace = 0;
+                            this.lineAlphabetMask = 0L;
+                            state = SEQUENCE_LINE;
+                            // the line gets scanned from this byte on as sequence line
+                            i--;
+                        }
+                    }
+                    case HEADER_LINE -> {
+                        if (b == '\n') {
+                            sequenceID = this.lineString();
+                            currentEntry = new FastaEntry(sequenceID);
+                            currentEntry.verboseWorkers = this.verboseWorkers;
+                            currentEntry.setSequenceType(this.seqType);
+                            this.sequenceLength = 0;
+                            inHeader = true;
+                            headerCount++;
+                            state = LINE_START;
+                        } else {
+                            this.appendLineByte(b);
+                        }
+                    }
+                    case COMMENT_LINE -> {
+                        if (b == '\n') {
+                            if (currentEntry != null) {
+                                currentEntry.setCommentLine(this.lineString());
+                            }
+                            state = LINE_START;
+                        } else {
+                            this.appendLineByte(b);
+                        }
+                    }
+                    case SEQUENCE_LINE -> {
+                        // the rest of the sequence line inside the current buffer is validated as one run
+                        int lineEnd = i;
+                        while (lineEnd < limit && bytes[lineEnd] != '\n') {
+                            lineEnd++;
+                        }
+                        if (inHeader) {
+                            this.appendSequenceRun(bytes, i, lineEnd);
+                        }
+                        i = lineEnd;
+                        if (lineEnd < limit) {
+                            if (inHeader) {
+                                this.finishSequenceLine();
+                                inSequence = true;
+                            }
+                            state = LINE_START;
+                        }
+                    }
+                }
+            }
+
+            if (read == -1) {
+                break;
+            }
+            this.readBuffer.clear();
+        }
+
+        if (!inSequence) {
+            throw new MalformattedFastaFileException("Invalid format: Last sequence ID: " + sequenceID + " has no sequence");
+        }
+        if (headerCount == -1) {
+            throw new MalformattedFastaFileException("Invalid format: " + sequenceID);
+        }
+
+        this.finishEntry(currentEntry, consumer);
+    }
+
+    private int read(ReadableByteChannel channel) throws IOException {
+        if (this.metrics == null) {
+            return channel.read(this.readBuffer);
+        }
+        RunMetrics.Probe probe = RunMetrics.probe();
+        int read = channel.read(this.readBuffer);
+        this.metrics.stage(RunMetrics.Stage.READ).record(probe, Math.max(0, read), 0);
+        return read;
+    }
+
+    private void finishEntry(FastaEntry entry, Consumer<FastaEntry> consumer) {
+        switch (this.seqType) {
+            case DNA -> entry.settingSequenceData(PackedSequence.pack(this.sequenceBuffer, this.sequenceLength, (byte) 'T'));
+            case RNA -> entry.settingSequenceData(PackedSequence.pack(this.sequenceBuffer, this.sequenceLength, (byte) 'U'));
+            default -> entry.settingSequenceData(new String(this.sequenceBuffer, 0, this.sequenceLength, StandardCharsets.ISO_8859_1));
+        }
+        this.sequenceLength = 0;
+        if (this.duplicateIndex != null) {
+            this.duplicateIndex.add(entry);
+        }
+        consumer.accept(entry);
+    }
+
+    /**
+     * Validates a run of sequence bytes with the SequenceValidator and appends it uppercased to the sequence buffer.
+     * Whitespace inside a sequence line is not allowed, whitespace at the end of a line gets trimmed.
+     */
+    private void appendSequenceRun(byte[] bytes, int from, int to) throws WrongSequenceTypeException {
+        int end = to;
+        while (end > from && bytes[end - 1] >= 0 && bytes[end - 1] <= ' ') {
+            end--;
+        }
+        if (end > from) {
+            if (this.pendingWhitespace > 0) {
+                throw this.wrongSequenceType();
+            }
+            if (this.sequenceLength + (end - from) > this.sequenceBuffer.length) {
+                this.sequenceBuffer = Arrays.copyOf(this.sequenceBuffer, Math.max(this.sequenceBuffer.length * 2, this.sequenceLength + (end - from)));
+            }
+            if (this.validator.copyValidated(bytes, from, end, this.sequenceBuffer, this.sequenceLength) >= 0) {
+                throw this.wrongSequenceType();
+            }
+            if (this.seqType == SequenceType.PEPTIDE) {
+                for (int i = this.sequenceLength; i < this.sequenceLength + (end - from); i++) {
+                    this.lineAlphabetMask |= 1L << (this.sequenceBuffer[i] - 'A');
+                }
+            }
+            this.sequenceLength += end - from;
+        }
+        this.pendingWhitespace += to - end;
+    }
+
+    private void finishSequenceLine() throws WrongSequenceTypeException {
+        // In general peptides doesn't contain less than 4 unique amino acids in a peptide chain
+        // so this is for differentiate between DNA/RNA and peptides better
+        if (this.seqType == SequenceType.PEPTIDE && Long.bitCount(this.lineAlphabetMask) <= 4) {
+            throw this.wrongSequenceType();
+        }
+    }
+
+    private WrongSequenceTypeException wrongSequenceType() {
+        return wrongSequenceType(this.seqType);
+    }
+
+    static WrongSequenceTypeException wrongSequenceType(SequenceType seqType) {
+        return switch (seqType) {
+            case DNA -> new WrongSequenceTypeException("Sequence doesn't look like a DNA sequence");
+            case RNA -> new WrongSequenceTypeException("Sequence doesn't look like a RNA sequence");
+            case PEPTIDE -> new WrongSequenceTypeException("Sequence doesn't look like a Peptide sequence");
+            case AMBIGUOUS -> new WrongSequenceTypeException("Sequence type doesn't look like any sequence at all");
+        };
+    }
+
+    private void appendLineByte(byte b) {
+        if (this.lineLength == this.lineBuffer.length) {
+            this.lineBuffer = Arrays.copyOf(this.lineBuffer, this.lineBuffer.length * 2);
+        }
+        this.lineBuffer[this.lineLength++] = b;
+    }
+
+    /**
+     * @return the collected header or comment line without trailing whitespace
+     */
+    private String lineString() {
+        int end = this.lineLength;
+        while (end > 0 && (this.lineBuffer[end - 1] & 0xFF) <= ' ') {
+            end--;
+        }
+        return new String(this.lineBuffer, 0, end, StandardCharsets.UTF_8);
+    }
+}
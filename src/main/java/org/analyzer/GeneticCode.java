@@ -0,0 +1,205 @@
+package org.analyzer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Enum class for the NCBI translation tables. Every codon gets encoded as 6-bit index (2 bits per base, A=0, C=1, G=2,
+ * T/U=3, same codes as inside the PackedSequence) into a 64 entry amino acid table. U and T are handled the same
+ * without copying the sequence. Codons with other characters are translated to X.
+ */
+public enum GeneticCode {
+    STANDARD(1, "Standard", "FFLLSSSSYY**CC*WLLLLPPPPHHQQRRRRIIIMTTTTNNKKSSRRVVVVAAAADDEEGGGG"),
+    VERTEBRATE_MITOCHONDRIAL(2, "Vertebrate Mitochondrial", "FFLLSSSSYY**CCWWLLLLPPPPHHQQRRRRIIMMTTTTNNKKSS**VVVVAAAADDEEGGGG"),
+    YEAST_MITOCHONDRIAL(3, "Yeast Mitochondrial", "FFLLSSSSYY**CCWWTTTTPPPPHHQQRRRRIIMMTTTTNNKKSSRRVVVVAAAADDEEGGGG"),
+    MOLD_MITOCHONDRIAL(4, "Mold, Protozoan, and Coelenterate Mitochondrial and Mycoplasma/Spiroplasma", "FFLLSSSSYY**CCWWLLLLPPPPHHQQRRRRIIIMTTTTNNKKSSRRVVVVAAAADDEEGGGG"),
+    INVERTEBRATE_MITOCHONDRIAL(5, "Invertebrate Mitochondrial", "FFLLSSSSYY**CCWWLLLLPPPPHHQQRRRRIIMMTTTTNNKKSSSSVVVVAAAADDEEGGGG"),
+    CILIATE_NUCLEAR(6, "Ciliate, Dasycladacean and Hexamita Nuclear", "FFLLSSSSYYQQCC*WLLLLPPPPHHQQRRRRIIIMTTTTNNKKSSRRVVVVAAAADDEEGGGG"),
+    ECHINODERM_MITOCHONDRIAL(9, "Echinoderm and Flatworm Mitochondrial", "FFLLSSSSYY**CCWWLLLLPPPPHHQQRRRRIIIMTTTTNNNKSSSSVVVVAAAADDEEGGGG"),
+    EUPLOTID_NUCLEAR(10, "Euplotid Nuclear", "FFLLSSSSYY**CCCWLLLLPPPPHHQQRRRRIIIMTTTTNNKKSSRRVVVVAAAADDEEGGGG"),
+    BACTERIAL_PLASTID(11, "Bacterial, Archaeal and Plant Plastid", "FFLLSSSSYY**CC*WLLLLPPPPHHQQRRRRIIIMTTTTNNKKSSRRVVVVAAAADDEEGGGG"),
+    ALTERNATIVE_YEAST_NUCLEAR(12, "Alternative Yeast Nuclear", "FFLLSSSSYY**CC*WLLLSPPPPHHQQRRRRIIIMTTTTNNKKSSRRVVVVAAAADDEEGGGG"),
+    ASCIDIAN_MITOCHONDRIAL(13, "Ascidian Mitochondrial", "FFLLSSSSYY**CCWWLLLLPPPPHHQQRRRRIIMMTTTTNNKKSSGGVVVVAAAADDEEGGGG"),
+    ALTERNATIVE_FLATWORM_MITOCHONDRIAL(14, "Alternative Flatworm Mitochondrial", "FFLLSSSSYYY*CCWWLLLLPPPPHHQQRRRRIIIMTTTTNNNKSSSSVVVVAAAADDEEGGGG"),
+    BLEPHARISMA_NUCLEAR(15, "Blepharisma Nuclear", "FFLLSSSSYY*QCC*WLLLLPPPPHHQQRRRRIIIMTTTTNNKKSSRRVVVVAAAADDEEGGGG"),
+    CHLOROPHYCEAN_MITOCHONDRIAL(16, "Chlorophycean Mitochondrial", "FFLLSSSSYY*LCC*WLLLLPPPPHHQQRRRRIIIMTTTTNNKKSSRRVVVVAAAADDEEGGGG"),
+    TREMATODE_MITOCHONDRIAL(21, "Trematode Mitochondrial", "FFLLSSSSYY**CCWWLLLLPPPPHHQQRRRRIIMMTTTTNNNKSSSSVVVVAAAADDEEGGGG"),
+    SCENEDESMUS_OBLIQUUS_MITOCHONDRIAL(22, "Scenedesmus obliquus Mitochondrial", "FFLLSS*SYY*LCC*WLLLLPPPPHHQQRRRRIIIMTTTTNNKKSSRRVVVVAAAADDEEGGGG"),
+    THRAUSTOCHYTRIUM_MITOCHONDRIAL(23, "Thraustochytrium Mitochondrial", "FF*LSSSSYY**CC*WLLLLPPPPHHQQRRRRIIIMTTTTNNKKSSRRVVVVAAAADDEEGGGG"),
+    RHABDOPLEURIDAE_MITOCHONDRIAL(24, "Rhabdopleuridae Mitochondrial", "FFLLSSSSYY**CCWWLLLLPPPPHHQQRRRRIIIMTTTTNNKKSSSKVVVVAAAADDEEGGGG"),
+    CANDIDATE_DIVISION_SR1(25, "Candidate Division SR1 and Gracilibacteria", "FFLLSSSSYY**CCGWLLLLPPPPHHQQRRRRIIIMTTTTNNKKSSRRVVVVAAAADDEEGGGG"),
+    PACHYSOLEN_TANNOPHILUS_NUCLEAR(26, "Pachysolen tannophilus Nuclear", "FFLLSSSSYY**CC*WLLLAPPPPHHQQRRRRIIIMTTTTNNKKSSRRVVVVAAAADDEEGGGG"),
+    KARYORELICT_NUCLEAR(27, "Karyorelict Nuclear", "FFLLSSSSYYQQCCWWLLLLPPPPHHQQRRRRIIIMTTTTNNKKSSRRVVVVAAAADDEEGGGG"),
+    CONDYLOSTOMA_NUCLEAR(28, "Condylostoma Nuclear", "FFLLSSSSYYQQCCWWLLLLPPPPHHQQRRRRIIIMTTTTNNKKSSRRVVVVAAAADDEEGGGG"),
+    MESODINIUM_NUCLEAR(29, "Mesodinium Nuclear", "FFLLSSSSYYYYCC*WLLLLPPPPHHQQRRRRIIIMTTTTNNKKSSRRVVVVAAAADDEEGGGG"),
+    PERITRICH_NUCLEAR(30, "Peritrich Nuclear", "FFLLSSSSYYEECC*WLLLLPPPPHHQQRRRRIIIMTTTTNNKKSSRRVVVVAAAADDEEGGGG"),
+    BLASTOCRITHIDIA_NUCLEAR(31, "Blastocrithidia Nuclear", "FFLLSSSSYYEECCWWLLLLPPPPHHQQRRRRIIIMTTTTNNKKSSRRVVVVAAAADDEEGGGG"),
+    BALANOPHORACEAE_PLASTID(32, "Balanophoraceae Plastid", "FFLLSSSSYY*WCC*WLLLLPPPPHHQQRRRRIIIMTTTTNNKKSSRRVVVVAAAADDEEGGGG"),
+    CEPHALODISCIDAE_MITOCHONDRIAL(33, "Cephalodiscidae Mitochondrial", "FFLLSSSSYYY*CCWWLLLLPPPPHHQQRRRRIIIMTTTTNNKKSSSKVVVVAAAADDEEGGGG");
+
+    /**
+     * 2-bit code of every byte. A=0, C=1, G=2, T/U=3, everything else -1
+     */
+    static final byte[] BASE_CODES = createBaseCodes();
+    private static final byte UNKNOWN_AMINO_ACID = 'X';
+
+    private final int id;
+    private final String description;
+    private final byte[] aminoAcids;
+
+    /**
+     * @param id          NCBI transl_table number
+     * @param description NCBI name of the table
+     * @param ncbiTable   the 64 amino acids in the NCBI order of the codons (TCAG for every base)
+     */
+    GeneticCode(int id, String description, String ncbiTable) {
+        this.id = id;
+        this.description = description;
+        this.aminoAcids = toCodonIndexOrder(ncbiTable);
+    }
+
+    private static byte[] createBaseCodes() {
+        byte[] codes = new byte[256];
+        Arrays.fill(codes, (byte) -1);
+        codes['A'] = 0;
+        codes['C'] = 1;
+        codes['G'] = 2;
+        codes['T'] = 3;
+        codes['U'] = 3;
+        codes['a'] = 0;
+        codes['c'] = 1;
+        codes['g'] = 2;
+        codes['t'] = 3;
+        codes['u'] = 3;
+        return codes;
+    }
+
+    private static byte[] toCodonIndexOrder(String ncbiTable) {
+        // position of A, C, G and T inside the NCBI TCAG order
+        final int[] ncbiPosition = {2, 1, 3, 0};
+        byte[] table = new byte[64];
+        for (int codon = 0; codon < 64; codon++) {
+            int ncbiIndex = ncbiPosition[codon >>> 4] * 16 + ncbiPosition[(codon >>> 2) & 3] * 4 + ncbiPosition[codon & 3];
+            table[codon] = (byte) ncbiTable.charAt(ncbiIndex);
+        }
+        return table;
+    }
+
+    /**
+     * Looks up a translation table by its NCBI number.
+     *
+     * @param id NCBI transl_table number
+     * @return the genetic code
+     * @throws IllegalArgumentException if there is no table with this number
+     */
+    public static GeneticCode byId(int id) {
+        for (GeneticCode code : values()) {
+            if (code.id == id) {
+                return code;
+            }
+        }
+        throw new IllegalArgumentException("No NCBI translation table with number " + id);
+    }
+
+    public int getId() {
+        return this.id;
+    }
+
+    public String getDescription() {
+        return this.description;
+    }
+
+    /**
+     * @param codonIndex 6-bit codon index
+     * @return the amino acid of the codon
+     */
+    byte aminoAcid(int codonIndex) {
+        return this.aminoAcids[codonIndex];
+    }
+
+    /**
+     * Translates one codon. Codons with characters besides ACGTU are translated to X.
+     *
+     * @param first  first base
+     * @param second second base
+     * @param third  third base
+     * @return the amino acid of the codon
+     */
+    byte translateCodon(byte first, byte second, byte third) {
+        int codon = (BASE_CODES[first & 0xFF] << 4) | (BASE_CODES[second & 0xFF] << 2) | BASE_CODES[third & 0xFF];
+        return (codon < 0) ? UNKNOWN_AMINO_ACID : this.aminoAcids[codon];
+    }
+
+    /**
+     * Translates the sequence bytes from (inclusive) to (exclusive) in frame of the first base into the output
+     * buffer. Overhanging bases at the end are ignored. Nothing besides the output buffer is allocated.
+     *
+     * @param sequence  bytes of the sequence
+     * @param from      first base of the first codon
+     * @param to        index after the last base
+     * @param out       output buffer, needs (to - from) / 3 free bytes
+     * @param outOffset first index to write inside the output buffer
+     * @return number of translated codons
+     */
+    int translate(byte[] sequence, int from, int to, byte[] out, int outOffset) {
+        int codons = (to - from) / 3;
+        for (int i = 0, position = from; i < codons; i++, position += 3) {
+            out[outOffset + i] = this.translateCodon(sequence[position], sequence[position + 1], sequence[position + 2]);
+        }
+        return codons;
+    }
+
+    /**
+     * Translates a 2-bit packed sequence into the output buffer, starting in frame of the base at from. The 2-bit
+     * codes of the packed sequence are used as codon index directly, only positions of the side list are decoded.
+     *
+     * @param sequence  packed sequence
+     * @param from      first base of the first codon
+     * @param to        index after the last base
+     * @param out       output buffer, needs (to - from) / 3 free bytes
+     * @param outOffset first index to write inside the output buffer
+     * @return number of translated codons
+     */
+    int translate(PackedSequence sequence, int from, int to, byte[] out, int outOffset) {
+        int codons = (to - from) / 3;
+        boolean hasExceptions = sequence.hasExceptions();
+        for (int i = 0, position = from; i < codons; i++, position += 3) {
+            if (hasExceptions && sequence.hasException(position, position + 3)) {
+                out[outOffset + i] = this.translateCodon(sequence.byteAt(position), sequence.byteAt(position + 1), sequence.byteAt(position + 2));
+            } else {
+                out[outOffset + i] = this.aminoAcids[(sequence.code(position) << 4) | (sequence.code(position + 1) << 2) | sequence.code(position + 2)];
+            }
+        }
+        return codons;
+    }
+
+    /**
+     * Translates a sequence in frame +1.
+     *
+     * @param sequence Sequence to get Translated
+     * @return The Translated Sequence
+     */
+    String translate(CharSequence sequence) {
+        byte[] out = new byte[sequence.length() / 3];
+        for (int i = 0, position = 0; i < out.length; i++, position += 3) {
+            out[i] = this.translateCodon(asciiByte(sequence.charAt(position)), asciiByte(sequence.charAt(position + 1)), asciiByte(sequence.charAt(position + 2)));
+        }
+        return new String(out, StandardCharsets.ISO_8859_1);
+    }
+
+    private static byte asciiByte(char c) {
+        return (c < 128) ? (byte) c : 0;
+    }
+
+    /**
+     * Translates a 2-bit packed sequence in frame +1.
+     *
+     * @param sequence Sequence to get Translated
+     * @return The Translated Sequence
+     */
+    String translate(PackedSequence sequence) {
+        byte[] out = new byte[sequence.length() / 3];
+        this.translate(sequence, 0, sequence.length(), out, 0);
+        return new String(out, StandardCharsets.ISO_8859_1);
+    }
+}
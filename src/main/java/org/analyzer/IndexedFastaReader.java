@@ -0,0 +1,148 @@
+package org.analyzer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Random access to the entries of a fasta file by sequence ID. The positions are taken from the .fai index and the
+ * bytes of a sequence are read from a memory mapped region of the file, so only the requested sequences are touched.
+ */
+class IndexedFastaReader implements AutoCloseable {
+    private final FastaIndex index;
+    private final FileChannel channel;
+
+    /**
+     * Opens the fasta file and loads its index. The index gets built and written next to the file if it's missing.
+     *
+     * @param fasta path of the fasta file
+     */
+    IndexedFastaReader(Path fasta) throws IOException, MalformattedFastaFileException {
+        this.index = FastaIndex.loadOrBuild(fasta);
+        this.channel = FileChannel.open(fasta, StandardOpenOption.READ);
+    }
+
+    FastaIndex getIndex() {
+        return this.index;
+    }
+
+    /**
+     * Fetches the bases of a sequence without the line breaks.
+     *
+     * @param sequenceID sequence ID as written in the index
+     * @return the raw bytes of the sequence or null if the ID isn't inside the index
+     */
+    byte[] fetchSequence(String sequenceID) throws IOException {
+        FastaIndex.Record record = this.index.get(sequenceID);
+        if (record == null) {
+            return null;
+        }
+        byte[] sequence = new byte[Math.toIntExact(record.length())];
+        if (record.length() == 0) {
+            return sequence;
+        }
+        MappedByteBuffer region = this.channel.map(FileChannel.MapMode.READ_ONLY, record.offset(), record.byteSpan());
+
+        int copied = 0;
+        int position = 0;
+        while (copied < sequence.length) {
+            int lineBases = Math.min(record.lineBases(), sequence.length - copied);
+            region.get(position, sequence, copied, lineBases);
+            copied += lineBases;
+            position += record.lineWidth();
+        }
+        return sequence;
+    }
+
+    /**
+     * Reads one entry by its sequence ID. The sequence gets uppercased and checked for the SequenceType like in the
+     * FastaParser.
+     *
+     * @param sequenceID     sequence ID as written in the index
+     * @param seqType        SequenceType Enum the sequence gets validated against
+     * @param verboseWorkers boolean for verbose Output of worker tasks
+     * @return the entry or null if the ID isn't inside the index
+     */
+    FastaEntry readEntry(String sequenceID, SequenceType seqType, boolean verboseWorkers) throws IOException, WrongSequenceTypeException, MalformattedFastaFileException {
+        FastaIndex.Record record = this.index.get(sequenceID);
+        byte[] sequence = this.fetchSequence(sequenceID);
+        if (sequence == null) {
+            return null;
+        }
+        if (sequence.length == 0) {
+            throw new MalformattedFastaFileException("Invalid format: Missing sequence for >" + sequenceID);
+        }
+
+        SequenceValidator validator = SequenceValidator.forType(seqType);
+        for (int lineStart = 0; lineStart < sequence.length; lineStart += record.lineBases()) {
+            int lineEnd = Math.min(sequence.length, lineStart + record.lineBases());
+            if (validator.copyValidated(sequence, lineStart, lineEnd, sequence, lineStart) >= 0) {
+                throw FastaParser.wrongSequenceType(seqType);
+            }
+
+            // same per line check for peptides as inside the FastaParser
+            if (seqType == SequenceType.PEPTIDE) {
+                long lineAlphabetMask = 0L;
+                for (int i = lineStart; i < lineEnd; i++) {
+                    lineAlphabetMask |= 1L << (sequence[i] - 'A');
+                }
+                if (Long.bitCount(lineAlphabetMask) <= 4) {
+                    throw FastaParser.wrongSequenceType(seqType);
+                }
+            }
+        }
+
+        FastaEntry entry = new FastaEntry(this.readHeader(record));
+        entry.verboseWorkers = verboseWorkers;
+        entry.setSequenceType(seqType);
+        switch (seqType) {
+            case DNA -> entry.settingSequenceData(PackedSequence.pack(sequence, sequence.length, (byte) 'T'));
+            case RNA -> entry.settingSequenceData(PackedSequence.pack(sequence, sequence.length, (byte) 'U'));
+            default -> entry.settingSequenceData(new String(sequence, StandardCharsets.ISO_8859_1));
+        }
+        return entry;
+    }
+
+    /**
+     * Reads the header line of a record back from the file. The .fai index only holds the sequence ID, the header
+     * line ends right before the sequence offset, so it's found by reading backwards from there until the previous
+     * line break. The header is trimmed at the end like inside the FastaParser.
+     *
+     * @return the whole header line with the leading >
+     */
+    private String readHeader(FastaIndex.Record record) throws IOException, MalformattedFastaFileException {
+        long end = record.offset() - 1;
+        for (int window = 256; ; window *= 2) {
+            long from = Math.max(0, end - window);
+            ByteBuffer bytes = ByteBuffer.allocate((int) (end - from));
+            int read = 0;
+            while (bytes.hasRemaining() && read >= 0) {
+                read = this.channel.read(bytes, from + bytes.position());
+            }
+            byte[] line = bytes.array();
+            int start = line.length - 1;
+            while (start >= 0 && line[start] != '\n') {
+                start--;
+            }
+            if (start >= 0 || from == 0) {
+                int headerEnd = line.length;
+                while (headerEnd > start + 1 && (line[headerEnd - 1] & 0xFF) <= ' ') {
+                    headerEnd--;
+                }
+                if (headerEnd == start + 1 || line[start + 1] != '>') {
+                    throw new MalformattedFastaFileException("Invalid index: No header line before the sequence of >" + record.name());
+                }
+                return new String(line, start + 1, headerEnd - start - 1, StandardCharsets.UTF_8);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+}
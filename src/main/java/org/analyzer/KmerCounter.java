@@ -0,0 +1,446 @@
+package org.analyzer;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the canonical k-mers of DNA/RNA sequences, for k-mer spectra over whole files. A k-mer is encoded with 2 bits
+ * per base into a long (k up to 31), canonical means the smaller one of the k-mer and its reverse complement, so both
+ * strands count the same. K-mers with other characters than ACGT/U are skipped.
+ * The counts are kept in open addressing tables outside of the heap, one table per shard. The sequences are split into
+ * tasks of about CHUNK_BASES bases for the worker pool, every task buffers its k-mers per shard and adds a full buffer
+ * at once, so the lock of a shard is rarely contended and the heap stays free of boxed keys and map entries.
+ * The tables live in direct buffers, their size is limited by -XX:MaxDirectMemorySize.
+ */
+final class KmerCounter {
+    static final int MAX_K = 31;
+    static final int DEFAULT_K = 21;
+    static final int DEFAULT_TOP = 20;
+    // counts of at least this value share the last bin of the histogram
+    static final int HISTOGRAM_MAX = 10_000;
+    private static final int CHUNK_BASES = CompositionTask.CHUNK_BASES;
+    // k-mers buffered per shard inside a task before they are added to the table of the shard
+    private static final int BUFFERED_KMERS = 1024;
+    private static final byte[] DECODE = {'A', 'C', 'G', 'T'};
+
+    private final int k;
+    private final long kmerMask;
+    private final int complementShift;
+    private final int shardBits;
+    private final Shard[] shards;
+    private final LongAdder totalKmers = new LongAdder();
+
+    /**
+     * @param k             length of the k-mers, 1 to MAX_K
+     * @param numberThreads number of threads that count at the same time, the tables are split into a few shards per
+     *                      thread
+     */
+    KmerCounter(int k, int numberThreads) {
+        if (k < 1 || k > MAX_K) {
+            throw new IllegalArgumentException("K-mer length has to be between 1 and " + MAX_K + ": " + k);
+        }
+        this.k = k;
+        this.kmerMask = (1L << (2 * k)) - 1;
+        this.complementShift = 2 * (k - 1);
+        int shardCount = Math.max(16, Integer.highestOneBit(Math.max(1, numberThreads) * 4 - 1) << 1);
+        this.shardBits = Integer.numberOfTrailingZeros(shardCount);
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            this.shards[i] = new Shard();
+        }
+    }
+
+    /**
+     * Counts the k-mers of all entries on the pool and returns when all of them are counted. Can be called more than
+     * once, the counts add up.
+     *
+     * @param entries    DNA/RNA entries
+     * @param threadPool pool the tasks are counted on. It's not shut down by this method
+     */
+    void count(Collection<FastaEntry> entries, Executor threadPool) throws InterruptedException, ExecutionException {
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        List<PackedSequence> batch = new ArrayList<>();
+        long basesInBatch = 0;
+        for (FastaEntry entry : entries) {
+            PackedSequence sequence = entry.toPackedSequence();
+            if (sequence.length() < this.k) {
+                continue;
+            }
+            if (sequence.length() >= CHUNK_BASES) {
+                // chunks overlap by k - 1 bases, so every k-mer is counted by exactly one chunk
+                for (int from = 0; from + this.k <= sequence.length(); from += CHUNK_BASES) {
+                    int start = from;
+                    int end = Math.min(sequence.length(), from + CHUNK_BASES + this.k - 1);
+                    tasks.add(CompletableFuture.runAsync(() -> this.countTask(List.of(sequence), start, end), threadPool));
+                }
+                continue;
+            }
+            batch.add(sequence);
+            basesInBatch += sequence.length();
+            if (basesInBatch >= CHUNK_BASES) {
+                List<PackedSequence> sequences = batch;
+                tasks.add(CompletableFuture.runAsync(() -> this.countTask(sequences, 0, Integer.MAX_VALUE), threadPool));
+                batch = new ArrayList<>();
+                basesInBatch = 0;
+            }
+        }
+        if (!batch.isEmpty()) {
+            List<PackedSequence> sequences = batch;
+            tasks.add(CompletableFuture.runAsync(() -> this.countTask(sequences, 0, Integer.MAX_VALUE), threadPool));
+        }
+        CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).get();
+    }
+
+    /**
+     * Counts the k-mers inside the range of every sequence of the task.
+     */
+    private void countTask(List<PackedSequence> sequences, int from, int to) {
+        long[][] buffered = new long[this.shards.length][BUFFERED_KMERS];
+        int[] bufferedCount = new int[this.shards.length];
+        long kmers = 0;
+        for (PackedSequence sequence : sequences) {
+            int end = Math.min(to, sequence.length());
+            int nextException = sequence.nextException(from);
+            int validBases = 0;
+            long forward = 0;
+            long reverse = 0;
+            for (int position = from; position < end; position++) {
+                int code;
+                if (position == nextException) {
+                    code = baseCode(sequence.byteAt(position));
+                    nextException = sequence.nextException(position + 1);
+                    if (code < 0) {
+                        validBases = 0;
+                        continue;
+                    }
+                } else {
+                    code = sequence.code(position);
+                }
+                forward = ((forward << 2) | code) & this.kmerMask;
+                reverse = (reverse >>> 2) | ((long) (3 - code) << this.complementShift);
+                if (++validBases >= this.k) {
+                    long kmer = Math.min(forward, reverse);
+                    kmers++;
+                    int shard = (int) (mix(kmer) >>> (64 - this.shardBits));
+                    buffered[shard][bufferedCount[shard]++] = kmer;
+                    if (bufferedCount[shard] == BUFFERED_KMERS) {
+                        this.shards[shard].addAll(buffered[shard], BUFFERED_KMERS);
+                        bufferedCount[shard] = 0;
+                    }
+                }
+            }
+        }
+        for (int shard = 0; shard < this.shards.length; shard++) {
+            if (bufferedCount[shard] > 0) {
+                this.shards[shard].addAll(buffered[shard], bufferedCount[shard]);
+            }
+        }
+        this.totalKmers.add(kmers);
+    }
+
+    private static int baseCode(byte base) {
+        return switch (base) {
+            case 'A' -> 0;
+            case 'C' -> 1;
+            case 'G' -> 2;
+            case 'T', 'U' -> 3;
+            default -> -1;
+        };
+    }
+
+    /**
+     * Finalizer of MurmurHash3, spreads the k-mer bits over the shard and slot bits.
+     */
+    private static long mix(long kmer) {
+        kmer ^= kmer >>> 33;
+        kmer *= 0xff51afd7ed558ccdL;
+        kmer ^= kmer >>> 33;
+        kmer *= 0xc4ceb9fe1a85ec53L;
+        kmer ^= kmer >>> 33;
+        return kmer;
+    }
+
+    /**
+     * @param kmer encoded k-mer
+     * @return the bases of the k-mer
+     */
+    String decode(long kmer) {
+        byte[] bases = new byte[this.k];
+        for (int i = this.k - 1; i >= 0; i--, kmer >>>= 2) {
+            bases[i] = DECODE[(int) kmer & 3];
+        }
+        return new String(bases, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * @param kmer bases of a k-mer, either strand
+     * @return how often the canonical k-mer was counted, 0 for k-mers of other lengths or with other characters
+     */
+    long countOf(String kmer) {
+        if (kmer.length() != this.k) {
+            return 0;
+        }
+        long forward = 0;
+        long reverse = 0;
+        for (int i = 0; i < kmer.length(); i++) {
+            int code = baseCode((byte) Character.toUpperCase(kmer.charAt(i)));
+            if (code < 0) {
+                return 0;
+            }
+            forward = (forward << 2) | code;
+            reverse = (reverse >>> 2) | ((long) (3 - code) << this.complementShift);
+        }
+        long canonical = Math.min(forward, reverse);
+        return this.shards[(int) (mix(canonical) >>> (64 - this.shardBits))].get(canonical);
+    }
+
+    int getK() {
+        return this.k;
+    }
+
+    /**
+     * @return number of counted k-mers, with repeats
+     */
+    long getTotalKmers() {
+        return this.totalKmers.sum();
+    }
+
+    /**
+     * @return number of distinct canonical k-mers
+     */
+    long getDistinctKmers() {
+        long distinct = 0;
+        for (Shard shard : this.shards) {
+            distinct += shard.size();
+        }
+        return distinct;
+    }
+
+    /**
+     * @return number of distinct k-mers per count, index HISTOGRAM_MAX holds all counts of at least HISTOGRAM_MAX
+     */
+    long[] histogram() {
+        long[] histogram = new long[HISTOGRAM_MAX + 1];
+        for (Shard shard : this.shards) {
+            shard.addToHistogram(histogram);
+        }
+        return histogram;
+    }
+
+    /**
+     * Writes the histogram as tab separated count and number of distinct k-mers, only counts that occur.
+     */
+    void writeHistogram(Writer writer) throws IOException {
+        long[] histogram = this.histogram();
+        writer.write("#count\tkmers\n");
+        for (int count = 1; count < histogram.length; count++) {
+            if (histogram[count] > 0) {
+                writer.write(count + "\t" + histogram[count] + "\n");
+            }
+        }
+    }
+
+    /**
+     * Writes the most frequent k-mers as tab separated k-mer and count, most frequent first.
+     *
+     * @param top number of k-mers
+     */
+    void writeTop(Writer writer, int top) throws IOException {
+        TopKmers topKmers = new TopKmers(top);
+        for (Shard shard : this.shards) {
+            shard.addToTop(topKmers);
+        }
+        long[] kmers = new long[topKmers.size];
+        long[] counts = new long[topKmers.size];
+        for (int i = topKmers.size - 1; i >= 0; i--) {
+            counts[i] = topKmers.counts[0];
+            kmers[i] = topKmers.kmers[0];
+            topKmers.removeSmallest();
+        }
+        writer.write("#kmer\tcount\n");
+        for (int i = 0; i < kmers.length; i++) {
+            writer.write(this.decode(kmers[i]) + "\t" + counts[i] + "\n");
+        }
+    }
+
+    /**
+     * Open addressing table with linear probing inside a direct buffer. Every slot holds the k-mer + 1, so 0 marks an
+     * empty slot, and its count.
+     */
+    private static final class Shard {
+        private static final int INITIAL_SLOTS = 1 << 12;
+        // 16 bytes per slot, a direct buffer holds at most 2 GB
+        private static final int MAX_SLOTS = 1 << 26;
+
+        private LongBuffer table = allocate(INITIAL_SLOTS);
+        private int slots = INITIAL_SLOTS;
+        private int size;
+
+        private static LongBuffer allocate(int slots) {
+            return ByteBuffer.allocateDirect(slots * 2 * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+        }
+
+        synchronized void addAll(long[] kmers, int count) {
+            for (int i = 0; i < count; i++) {
+                this.add(kmers[i]);
+            }
+        }
+
+        private void add(long kmer) {
+            long key = kmer + 1;
+            int mask = this.slots - 1;
+            int slot = (int) mix(kmer) & mask;
+            while (true) {
+                long stored = this.table.get(slot << 1);
+                if (stored == key) {
+                    this.table.put((slot << 1) + 1, this.table.get((slot << 1) + 1) + 1);
+                    return;
+                }
+                if (stored == 0) {
+                    this.table.put(slot << 1, key);
+                    this.table.put((slot << 1) + 1, 1);
+                    if (++this.size > this.slots / 4 * 3) {
+                        this.grow();
+                    }
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        private void grow() {
+            if (this.slots == MAX_SLOTS) {
+                throw new IllegalStateException("Too many distinct k-mers, a shard is limited to " + (MAX_SLOTS / 4 * 3) + " k-mers");
+            }
+            LongBuffer old = this.table;
+            int oldSlots = this.slots;
+            this.slots <<= 1;
+            this.table = allocate(this.slots);
+            int mask = this.slots - 1;
+            for (int i = 0; i < oldSlots; i++) {
+                long key = old.get(i << 1);
+                if (key == 0) {
+                    continue;
+                }
+                int slot = (int) mix(key - 1) & mask;
+                while (this.table.get(slot << 1) != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                this.table.put(slot << 1, key);
+                this.table.put((slot << 1) + 1, old.get((i << 1) + 1));
+            }
+        }
+
+        synchronized long get(long kmer) {
+            long key = kmer + 1;
+            int mask = this.slots - 1;
+            for (int slot = (int) mix(kmer) & mask; ; slot = (slot + 1) & mask) {
+                long stored = this.table.get(slot << 1);
+                if (stored == key) {
+                    return this.table.get((slot << 1) + 1);
+                }
+                if (stored == 0) {
+                    return 0;
+                }
+            }
+        }
+
+        synchronized int size() {
+            return this.size;
+        }
+
+        synchronized void addToHistogram(long[] histogram) {
+            for (int slot = 0; slot < this.slots; slot++) {
+                if (this.table.get(slot << 1) != 0) {
+                    histogram[(int) Math.min(HISTOGRAM_MAX, this.table.get((slot << 1) + 1))]++;
+                }
+            }
+        }
+
+        synchronized void addToTop(TopKmers top) {
+            for (int slot = 0; slot < this.slots; slot++) {
+                long key = this.table.get(slot << 1);
+                if (key != 0) {
+                    top.offer(key - 1, this.table.get((slot << 1) + 1));
+                }
+            }
+        }
+    }
+
+    /**
+     * Bounded min heap of the most frequent k-mers on primitive arrays. Equal counts are ordered by the k-mer, the
+     * smaller k-mer ranks higher, so the output doesn't depend on the table layout.
+     */
+    private static final class TopKmers {
+        private final long[] kmers;
+        private final long[] counts;
+        private int size;
+
+        TopKmers(int capacity) {
+            this.kmers = new long[Math.max(0, capacity)];
+            this.counts = new long[Math.max(0, capacity)];
+        }
+
+        private boolean lower(long countA, long kmerA, long countB, long kmerB) {
+            return countA < countB || (countA == countB && kmerA > kmerB);
+        }
+
+        void offer(long kmer, long count) {
+            if (this.size < this.kmers.length) {
+                int child = this.size++;
+                while (child > 0) {
+                    int parent = (child - 1) >>> 1;
+                    if (!this.lower(count, kmer, this.counts[parent], this.kmers[parent])) {
+                        break;
+                    }
+                    this.kmers[child] = this.kmers[parent];
+                    this.counts[child] = this.counts[parent];
+                    child = parent;
+                }
+                this.kmers[child] = kmer;
+                this.counts[child] = count;
+            } else if (this.size > 0 && this.lower(this.counts[0], this.kmers[0], count, kmer)) {
+                this.siftDown(kmer, count);
+            }
+        }
+
+        void removeSmallest() {
+            this.size--;
+            if (this.size > 0) {
+                this.siftDown(this.kmers[this.size], this.counts[this.size]);
+            }
+        }
+
+        private void siftDown(long kmer, long count) {
+            int parent = 0;
+            while (true) {
+                int child = 2 * parent + 1;
+                if (child >= this.size) {
+                    break;
+                }
+                if (child + 1 < this.size && this.lower(this.counts[child + 1], this.kmers[child + 1], this.counts[child], this.kmers[child])) {
+                    child++;
+                }
+                if (!this.lower(this.counts[child], this.kmers[child], count, kmer)) {
+                    break;
+                }
+                this.kmers[parent] = this.kmers[child];
+                this.counts[parent] = this.counts[child];
+                parent = child;
+            }
+            this.kmers[parent] = kmer;
+            this.counts[parent] = count;
+        }
+    }
+}
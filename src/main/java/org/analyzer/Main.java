@@ -1,6 +1,13 @@
 package org.analyzer;
 
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
 
 import org.apache.commons.cli.*;
 
@@ -27,10 +34,57 @@ public class Main {
         CommandLine line = createCommandLineParser(args, defaultThreads);
 
         getNumberOfThreads(line, defaultThreads);
+        getGeneticCode(line);
+        getIsoelectricTolerance(line);
+        FastaHandler.getInstance().compressOutput = line.hasOption("z");
+        if (line.hasOption("Cache")) {
+            long maxBytes = line.hasOption("Cache-Size") ? Long.parseLong(line.getOptionValue("Cache-Size")) << 20 : ResultCache.DEFAULT_MAX_BYTES;
+            FastaHandler.getInstance().resultCache = ResultCache.open(Path.of(line.getOptionValue("Cache")), maxBytes);
+        }
+        if (line.hasOption("Motifs")) {
+            try {
+                MotifScanner scanner = MotifScanner.fromFile(Path.of(line.getOptionValue("Motifs")), line.hasOption("Motif-Reverse-Complement"), line.hasOption("Motif-IUPAC"));
+                System.out.println("-> Loaded " + scanner.getPatternCount() + " motif patterns from: " + line.getOptionValue("Motifs"));
+                FastaHandler.getInstance().motifScanner = scanner;
+            } catch (IOException ioe) {
+                System.err.println("-> Could not read motif file: " + ioe.getMessage());
+            } catch (IllegalArgumentException iae) {
+                System.err.println("-> Invalid motif file: " + iae.getMessage());
+            }
+        }
 
 
+        if (line.hasOption("Generate")) {
+            generateSyntheticFasta(line);
+            return;
+        }
+
         long startTime = System.nanoTime();
 
+        if (line.hasOption("m") || (line.hasOption("i") && line.getOptionValues("i").length > 1)) {
+            runBatch(line);
+            saveResultCache();
+            return;
+        }
+
+        if (line.hasOption("S") && !line.hasOption("o")) {
+            System.err.println("-> Streaming needs an output directory (-o), the input file is analyzed in memory instead");
+        }
+        if (line.hasOption("S") && line.hasOption("o")) {
+            if (line.hasOption("Duplicates") || line.hasOption("Motifs")) {
+                System.err.println("-> Duplicate detection and motif scans need all entries in memory and aren't available in streaming mode");
+                FastaHandler.getInstance().motifScanner = null;
+            }
+            FastaHandler handler = streamFastaHandlerObject(line);
+
+            long elapsedTime = System.nanoTime() - startTime;
+            double elapsedTimeInSeconds = (double) elapsedTime / 1_000_000_000.0;
+            System.out.println("-> Elapsed time: " + elapsedTimeInSeconds + " seconds for analyzing and writing Input File: " + handler.filename);
+            writeMetrics(line, List.of(handler.getMetrics()));
+            saveResultCache();
+            return;
+        }
+
         FastaHandler handler = prepareFastaHandlerObject(line);
 
         long endTime = System.nanoTime();
@@ -39,10 +93,13 @@ public class Main {
         System.out.println("-> Elapsed time: " + elapsedTimeInSeconds + " seconds for analzying Input File: " + handler.filename);
 
         checkForOutput(line, handler);
+        if (handler.getMetrics() != null) {
+            handler.getMetrics().finish();
+            writeMetrics(line, List.of(handler.getMetrics()));
+        }
+        saveResultCache();
 
-        // Run testRuntime() for threading benchmark
-        //testRuntime();
-
+        // The runtime, parser and batch execution mode benchmarks are JMH benchmarks, see src/jmh/java (mvn -Pjmh compile exec:exec)
     }
 
     private static CommandLine createCommandLineParser(String[] args, int defaultThreads) throws ParseException {
@@ -54,6 +111,35 @@ public class Main {
         options.addOption(Option.builder("v").argName("verbose").longOpt("Verbose").desc("Make the programm output verbose").build());
         options.addOption(Option.builder("w").argName("workers").longOpt("Verbose.Workers").desc("Print out task of individual workers").build());
         options.addOption(Option.builder("p").argName("peptide-translate").longOpt("Translate-to-Peptide").desc("Translate Dna/Rna to peptide sequence").type(Integer.class).build());
+        options.addOption(Option.builder("m").argName("manifest").hasArg().longOpt("Manifest").desc("File with one input file and its sequence type per line, analyzed like multiple -i/-s values").build());
+        options.addOption(Option.builder("x").argName("mode").hasArg().longOpt("Execution-Mode").desc("Threads for reading and writing files in batch mode: platform or virtual (Java 21, for many files on slow storage) (default: platform)").build());
+        options.addOption(Option.builder().argName("files").hasArg().longOpt("Files-In-Flight").desc("Files read, analyzed or written at the same time in batch mode (default: " + BatchAnalyzer.FILES_IN_FLIGHT + ", virtual: " + BatchAnalyzer.VIRTUAL_FILES_IN_FLIGHT + ")").build());
+        options.addOption(Option.builder("S").argName("streaming").longOpt("Streaming").desc("Parse, analyze and write entries with bounded memory (needs -o)").build());
+        options.addOption(Option.builder("z").argName("compress").longOpt("Compress-Output").desc("Write the analyzed output files BGZF compressed as .fasta.gz, with a .gzi index (needs -o)").build());
+        options.addOption(Option.builder("d").argName("id_file").hasArg().longOpt("Sequence-IDs").desc("Only analyze the sequence IDs listed in this file, read by the .fai index of the input").build());
+        options.addOption(Option.builder("g").argName("genetic_code").hasArg().longOpt("Genetic-Code").desc("NCBI translation table number for Dna/Rna translation (default: 1)").build());
+        options.addOption(Option.builder("f").argName("six-frames").longOpt("Six-Frames").desc("Write the translation of all six frames of Dna/Rna sequences (needs -o)").build());
+        options.addOption(Option.builder("r").argName("orfs").longOpt("ORF").desc("Find open reading frames on all six frames of Dna/Rna sequences (needs -o)").build());
+        options.addOption(Option.builder().argName("nucleotides").hasArg().longOpt("ORF-Min-Length").desc("Minimal ORF length in nucleotides (default: " + OrfFinder.DEFAULT_MIN_LENGTH + ")").build());
+        options.addOption(Option.builder().argName("codons").hasArg().longOpt("ORF-Start-Codons").desc("Comma separated start codons, 'none' for ORFs from stop to stop (default: " + OrfFinder.DEFAULT_START_CODONS + ")").build());
+        options.addOption(Option.builder().argName("pH").hasArg().longOpt("PI-Tolerance").desc("Tolerance of the isoelectric point in pH (default: " + SequenceType.DEFAULT_PI_TOLERANCE + ")").build());
+        options.addOption(Option.builder().argName("cache_file").hasArg().longOpt("Cache").desc("Result cache file: entries with the same sequence and settings as in an earlier run are restored instead of calculated").build());
+        options.addOption(Option.builder().argName("MB").hasArg().longOpt("Cache-Size").desc("Maximal size of the result cache, least recently used results are evicted (default: " + (ResultCache.DEFAULT_MAX_BYTES >> 20) + ")").build());
+        options.addOption(Option.builder().argName("k").hasArg().longOpt("Kmer").desc("Count the canonical k-mers of Dna/Rna sequences, k up to " + KmerCounter.MAX_K + ", and write their histogram and the most frequent ones (needs -o, common: " + KmerCounter.DEFAULT_K + ")").build());
+        options.addOption(Option.builder().argName("n").hasArg().longOpt("Kmer-Top").desc("Number of the most frequent k-mers written with --Kmer (default: " + KmerCounter.DEFAULT_TOP + ")").build());
+        options.addOption(Option.builder().argName("window[,step]").hasArg().longOpt("Profile").desc("Write GC content, GC skew and melting point of sliding windows of Dna/Rna sequences (needs -o, default step: window)").build());
+        options.addOption(Option.builder().argName("format").hasArg().longOpt("Profile-Format").desc("Format of the window profile: tsv or bedgraph, with the GC content only (default: tsv)").build());
+        options.addOption(Option.builder().argName("motif_file").hasArg().longOpt("Motifs").desc("Scan Dna/Rna sequences for the motifs of this file, fasta or name and sequence per line, and write the hits as _motifs.tsv (needs -o)").build());
+        options.addOption(Option.builder().argName("reverse-complement").longOpt("Motif-Reverse-Complement").desc("Scan for the reverse complements of the motifs too").build());
+        options.addOption(Option.builder().argName("iupac").longOpt("Motif-IUPAC").desc("Expand IUPAC codes inside the motifs, up to " + MotifScanner.MAX_EXPANSIONS + " motifs per motif").build());
+        options.addOption(Option.builder().argName("duplicates").longOpt("Duplicates").desc("Write the groups of entries with the same sequence as _duplicates.tsv, duplicates are calculated once (needs -o)").build());
+        options.addOption(Option.builder().argName("json_file").hasArg().longOpt("Metrics").desc("Write bytes, records, wall/cpu time, queue wait, tasks per thread and allocations of every stage as JSON to this file, - for the console").build());
+        options.addOption(Option.builder().argName("outfile").hasArg().longOpt("Generate").desc("Write a seeded synthetic fasta file of the sequence type given by -s instead of analyzing").build());
+        options.addOption(Option.builder().argName("records").hasArg().longOpt("Records").desc("Number of generated records (default: 1000)").build());
+        options.addOption(Option.builder().argName("min,max").hasArg().longOpt("Lengths").desc("Minimal and maximal length of the generated records (default: 1000,1000)").build());
+        options.addOption(Option.builder().argName("distribution").hasArg().longOpt("Length-Distribution").desc("fixed, uniform or log_normal (default: fixed, uniform if min and max differ)").build());
+        options.addOption(Option.builder().argName("width").hasArg().longOpt("Line-Width").desc("Sequence line width of the generated file (default: 70)").build());
+        options.addOption(Option.builder().argName("seed").hasArg().longOpt("Seed").desc("Seed of the generator, the same seed gives the same file (default: 42)").build());
         options.addOption(Option.builder("t").argName("threads").hasArg().desc("Number of threads (default: " + defaultThreads + ")").longOpt("Number of Threads").build());
 
         return parser.parse(options, args);
@@ -72,79 +158,325 @@ public class Main {
         }
     }
 
+    private static void getGeneticCode(CommandLine line) {
+        if (line.hasOption("g")) {
+            try {
+                FastaHandler.getInstance().geneticCode = GeneticCode.byId(Integer.parseInt(line.getOptionValue("g")));
+            } catch (IllegalArgumentException iae) {
+                System.err.println("-> Invalid genetic code: " + line.getOptionValue("g") +
+                        "\n\t  Valid NCBI translation tables: " + Arrays.stream(GeneticCode.values()).map(code -> code.getId() + " (" + code.getDescription() + ")").collect(Collectors.joining(", ")) +
+                        "\n\t  Genetic code is set to the standard code instead");
+                FastaHandler.getInstance().geneticCode = GeneticCode.STANDARD;
+            }
+        }
+    }
+
+    private static void getIsoelectricTolerance(CommandLine line) {
+        if (line.hasOption("PI-Tolerance")) {
+            double tolerance;
+            try {
+                tolerance = Double.parseDouble(line.getOptionValue("PI-Tolerance"));
+            } catch (NumberFormatException nfe) {
+                tolerance = Double.NaN;
+            }
+            // NaN, 0 and negative tolerances would stop the bisection right away or never by the tolerance
+            if (!Double.isFinite(tolerance) || tolerance <= 0) {
+                System.err.println("-> Invalid pI tolerance: " + line.getOptionValue("PI-Tolerance") +
+                        "\n\t  Expected: a positive pH difference like 0.001\n\t  Tolerance is set to " + SequenceType.DEFAULT_PI_TOLERANCE + " instead");
+                tolerance = SequenceType.DEFAULT_PI_TOLERANCE;
+            }
+            FastaHandler.getInstance().isoelectricTolerance = tolerance;
+        }
+    }
+
     private static void checkForOutput(CommandLine line, FastaHandler handler) {
         if (line.hasOption("o")) {
-            handler.generateOutputFiles(line.getOptionValue("o"), line.hasOption("p"));
+            // the output file itself is written while the entries are calculated, see prepareFastaHandlerObject
             System.out.println("\n-> Program finished generating Output-Files for: " + handler.filename);
         }
+        if (line.hasOption("o") && (line.hasOption("f") || line.hasOption("r"))) {
+            int minOrfLength = Integer.parseInt(line.getOptionValue("ORF-Min-Length", String.valueOf(OrfFinder.DEFAULT_MIN_LENGTH)));
+            String startCodons = line.getOptionValue("ORF-Start-Codons", OrfFinder.DEFAULT_START_CODONS);
+            handler.generateFrameOutputFiles(line.getOptionValue("o"), line.hasOption("f"), line.hasOption("r"), minOrfLength, startCodons.equalsIgnoreCase("none") ? "" : startCodons);
+            System.out.println("-> Program finished generating Frame-Files for: " + handler.filename);
+        }
+        if (line.hasOption("o") && line.hasOption("Kmer")) {
+            int[] kAndTop = readKmerOptions(line);
+            if (kAndTop != null) {
+                handler.generateKmerOutputFiles(line.getOptionValue("o"), kAndTop[0], kAndTop[1]);
+            }
+        }
+        if (line.hasOption("o") && line.hasOption("Profile")) {
+            int[] windowAndStep = readProfileWindow(line);
+            WindowProfile.Format format = readProfileFormat(line);
+            if (windowAndStep != null && format != null) {
+                handler.generateProfileOutputFile(line.getOptionValue("o"), windowAndStep[0], windowAndStep[1], format);
+            }
+        }
+        if (line.hasOption("o") && handler.motifScanner != null) {
+            handler.generateMotifOutputFile(line.getOptionValue("o"));
+        }
+        if (line.hasOption("o") && line.hasOption("Duplicates")) {
+            handler.generateDuplicateReport(line.getOptionValue("o"));
+        }
     }
 
     private static FastaHandler prepareFastaHandlerObject(CommandLine line) {
         FastaHandler handler = FastaHandler.getInstance();
 
         try {
-            handler.generateFastaHandlerObject(line.getOptionValue("i"), line.getOptionValue("s"), line.hasOption("w"));
-            handler.processFastaEntries();
+            if (line.hasOption("d")) {
+                handler.generateFastaHandlerObject(line.getOptionValue("i"), line.getOptionValue("s"), readSequenceIDs(line.getOptionValue("d")), line.hasOption("w"));
+            } else {
+                handler.generateFastaHandlerObject(line.getOptionValue("i"), line.getOptionValue("s"), line.hasOption("w"));
+            }
+            if (line.hasOption("o")) {
+                handler.processFastaEntries(line.getOptionValue("o"), line.hasOption("p"));
+            } else {
+                handler.processFastaEntries();
+            }
+            if (handler.getMakespanReport() != null) {
+                System.out.println(handler.getMakespanReport());
+            }
             if (line.hasOption("v")) {
                 handler.verbosePrinting();
             } else {
                 System.out.println("-> Finished analyzing Entrys");
             }
         } catch (WrongSequenceTypeException | MalformattedFastaFileException wste) {
-            wste.getMessage();
+            System.err.println(wste.getMessage());
         }
         return handler;
     }
 
     /**
-     * Simple main for testing runtime of threads.
-     *
-     * @param benachmark_args args are prepared in testRuntime() function
-     * @throws ParseException if no parse
+     * Batch mode for multiple input files. The files are given by a manifest or as multiple -i values with one -s
+     * value per file, or a single -s value for all files. All files are analyzed in this JVM on one worker pool and
+     * every file gets its own output file.
      */
-    private static void benchmark_main(String[] benachmark_args) throws ParseException {
-        int defaultThreads = Runtime.getRuntime().availableProcessors() * 3 / 4;
+    private static void runBatch(CommandLine line) {
+        List<BatchAnalyzer.Job> jobs = new ArrayList<>();
+        if (line.hasOption("m")) {
+            try {
+                jobs.addAll(BatchAnalyzer.readManifest(Path.of(line.getOptionValue("m"))));
+            } catch (IOException ioe) {
+                System.err.println("-> Could not read manifest file: " + ioe.getMessage());
+                return;
+            }
+        }
+        if (line.hasOption("i")) {
+            String[] inputs = line.getOptionValues("i");
+            String[] types = line.hasOption("s") ? line.getOptionValues("s") : new String[0];
+            if (types.length > 1 && types.length != inputs.length) {
+                System.err.println("-> Every input file needs a corresponding sequence type, or one sequence type for all files.\n" +
+                        "\t  Number of input files: " + inputs.length +
+                        "\n\t  Number of sequence types: " + types.length);
+                return;
+            }
+            for (int i = 0; i < inputs.length; i++) {
+                jobs.add(new BatchAnalyzer.Job(inputs[i], (types.length == 0) ? null : types[(types.length == 1) ? 0 : i]));
+            }
+        }
+        if (line.hasOption("S") || line.hasOption("d")) {
+            System.err.println("-> Streaming and sequence ID selection aren't available in batch mode and are ignored");
+        }
+
+        BatchAnalyzer batch = new BatchAnalyzer(FastaHandler.getInstance(), line.getOptionValue("o"), line.hasOption("p"), line.hasOption("v"), line.hasOption("w"));
+        setExecutionMode(line, batch);
+        if (line.hasOption("f") || line.hasOption("r")) {
+            String startCodons = line.getOptionValue("ORF-Start-Codons", OrfFinder.DEFAULT_START_CODONS);
+            batch.setFrameOutput(line.hasOption("f"), line.hasOption("r"), Integer.parseInt(line.getOptionValue("ORF-Min-Length", String.valueOf(OrfFinder.DEFAULT_MIN_LENGTH))), startCodons.equalsIgnoreCase("none") ? "" : startCodons);
+        }
+        batch.setDuplicateReport(line.hasOption("Duplicates"));
+        if (line.hasOption("Kmer")) {
+            int[] kAndTop = readKmerOptions(line);
+            if (kAndTop != null) {
+                batch.setKmerOutput(kAndTop[0], kAndTop[1]);
+            }
+        }
+        if (line.hasOption("Profile")) {
+            int[] windowAndStep = readProfileWindow(line);
+            WindowProfile.Format format = readProfileFormat(line);
+            if (windowAndStep != null && format != null) {
+                batch.setProfileOutput(windowAndStep[0], windowAndStep[1], format);
+            }
+        }
+        try {
+            batch.checkOutputNames(jobs);
+        } catch (IllegalArgumentException iae) {
+            System.err.println("-> " + iae.getMessage());
+            return;
+        }
+        List<RunMetrics> metrics = new ArrayList<>();
+        for (BatchAnalyzer.FileResult result : batch.run(jobs)) {
+            if (result.metrics() != null) {
+                metrics.add(result.metrics());
+            }
+        }
+        writeMetrics(line, metrics);
+    }
 
-        CommandLine line = createCommandLineParser(benachmark_args, defaultThreads);
+    /**
+     * @return window and step of --Profile, the step is the window if it's not given. Null if the value is invalid
+     */
+    /**
+     * @return k-mer length and number of the most frequent k-mers, null if one of them is invalid
+     */
+    private static int[] readKmerOptions(CommandLine line) {
+        try {
+            int k = Integer.parseInt(line.getOptionValue("Kmer").trim());
+            int top = Integer.parseInt(line.getOptionValue("Kmer-Top", String.valueOf(KmerCounter.DEFAULT_TOP)).trim());
+            if (k < 1 || k > KmerCounter.MAX_K || top < 1) {
+                throw new NumberFormatException();
+            }
+            return new int[]{k, top};
+        } catch (NumberFormatException nfe) {
+            System.err.println("-> Invalid k-mer options: --Kmer " + line.getOptionValue("Kmer") + ", --Kmer-Top " + line.getOptionValue("Kmer-Top", String.valueOf(KmerCounter.DEFAULT_TOP)) +
+                    "\n\t  Expected: k from 1 to " + KmerCounter.MAX_K + " and a positive number of top k-mers");
+            return null;
+        }
+    }
 
-        getNumberOfThreads(line, defaultThreads);
+    private static int[] readProfileWindow(CommandLine line) {
+        String[] values = line.getOptionValue("Profile").split(",");
+        try {
+            int window = Integer.parseInt(values[0].trim());
+            int step = (values.length > 1) ? Integer.parseInt(values[1].trim()) : window;
+            return new int[]{window, step};
+        } catch (NumberFormatException nfe) {
+            System.err.println("-> Invalid profile window: " + line.getOptionValue("Profile") + "\n\t  Expected: window or window,step");
+            return null;
+        }
+    }
 
-        FastaHandler handler = prepareFastaHandlerObject(line);
+    private static WindowProfile.Format readProfileFormat(CommandLine line) {
+        try {
+            return WindowProfile.Format.valueOf(line.getOptionValue("Profile-Format", "tsv").toUpperCase());
+        } catch (IllegalArgumentException iae) {
+            System.err.println("-> Invalid profile format: " + line.getOptionValue("Profile-Format") + "\n\t  Valid formats: tsv, bedgraph");
+            return null;
+        }
+    }
+
+    /**
+     * Writes the result cache back to its file, with the results of this run.
+     */
+    private static void saveResultCache() {
+        ResultCache cache = FastaHandler.getInstance().resultCache;
+        if (cache == null) {
+            return;
+        }
+        try {
+            cache.save();
+            double hitRate = (cache.getLookups() > 0) ? cache.getHits() * 100.0 / cache.getLookups() : 0;
+            System.out.println("-> Result cache: " + cache.getHits() + " of " + cache.getLookups() + " entries restored (hit rate: " + String.format("%.1f", hitRate) +
+                    " %), " + cache.size() + " results (" + (cache.getStoredBytes() >> 10) + " KiB) saved to: " + cache.getFile());
+        } catch (IOException ioe) {
+            System.err.println("-> Could not write result cache: " + ioe.getMessage());
+        }
+    }
+
+    /**
+     * Writes the per stage metrics of the analyzed files as JSON, if --Metrics is given. A single file is written as
+     * JSON object, a batch as array of objects.
+     */
+    private static void writeMetrics(CommandLine line, List<RunMetrics> metrics) {
+        if (!line.hasOption("Metrics")) {
+            return;
+        }
+        String json = (metrics.size() == 1) ? metrics.get(0).toJson() : RunMetrics.toJson(metrics);
+        if (line.getOptionValue("Metrics").equals("-")) {
+            System.out.println(json);
+            return;
+        }
+        try {
+            Files.writeString(Path.of(line.getOptionValue("Metrics")), json + System.lineSeparator());
+            System.out.println("-> Metrics written to: " + line.getOptionValue("Metrics"));
+        } catch (IOException ioe) {
+            System.err.println("-> Could not write metrics file: " + ioe.getMessage());
+        }
+    }
+
+    private static void setExecutionMode(CommandLine line, BatchAnalyzer batch) {
+        BatchAnalyzer.ExecutionMode mode = BatchAnalyzer.ExecutionMode.PLATFORM;
+        if (line.hasOption("x")) {
+            try {
+                mode = BatchAnalyzer.ExecutionMode.valueOf(line.getOptionValue("x").toUpperCase());
+            } catch (IllegalArgumentException iae) {
+                System.err.println("-> Invalid execution mode: " + line.getOptionValue("x") + "\n\t  Valid modes: platform, virtual\n\t  Execution mode is set to platform instead");
+            }
+        }
+        int defaultFiles = (mode == BatchAnalyzer.ExecutionMode.VIRTUAL) ? BatchAnalyzer.VIRTUAL_FILES_IN_FLIGHT : BatchAnalyzer.FILES_IN_FLIGHT;
+        batch.setExecutionMode(mode, Integer.parseInt(line.getOptionValue("Files-In-Flight", String.valueOf(defaultFiles))));
     }
 
     /**
-     * Experimental Runtime Test. Comment Print for clearer output. Tested over an Average of 100 runs.
-     * Achieved on my Laptop:
-     * 4 Thread took 0.08655225306 seconds average to run
-     * 1 Thread took 0.15837162132 seconds average to run
+     * Reads the sequence IDs for the indexed mode. One ID per line, a leading ">" is ignored.
      *
-     * @throws ParseException non parsing
+     * @param idFile file with the sequence IDs
+     * @return the sequence IDs in file order
      */
-    private static void testRuntime() throws ParseException {
-        String[] args = {"-i", "TestFiles/test.fasta", "-s", "dna", "-t", "4"};
-        long runtime4Threads = 0;
-        for (int i = 0; i < 100; i++) {
-            long startTime = System.nanoTime();
-            benchmark_main(args);
-            long endTime = System.nanoTime();
-            long elapsedTime = endTime - startTime;
-            runtime4Threads = runtime4Threads + elapsedTime;
+    private static List<String> readSequenceIDs(String idFile) {
+        List<String> sequenceIDs = new ArrayList<>();
+        try {
+            for (String id : Files.readAllLines(Path.of(idFile))) {
+                id = id.trim();
+                if (id.startsWith(">")) {
+                    id = id.substring(1);
+                }
+                if (!id.isEmpty()) {
+                    sequenceIDs.add(id);
+                }
+            }
+        } catch (IOException ioe) {
+            System.err.println("-> Could not read sequence ID file: " + ioe.getMessage());
         }
+        return sequenceIDs;
+    }
 
+    private static void generateSyntheticFasta(CommandLine line) {
+        SequenceType seqType;
+        try {
+            seqType = SequenceType.valueOf(line.getOptionValue("s", "dna").toUpperCase());
+        } catch (IllegalArgumentException iae) {
+            System.err.println("-> Invalid sequence type for the generator: " + line.getOptionValue("s"));
+            return;
+        }
+        try {
+            SyntheticFasta generator = new SyntheticFasta(seqType);
+            generator.setRecords(Long.parseLong(line.getOptionValue("Records", "1000")));
+            String[] lengths = line.getOptionValue("Lengths", "1000").split(",");
+            int minLength = Integer.parseInt(lengths[0].trim());
+            int maxLength = (lengths.length > 1) ? Integer.parseInt(lengths[1].trim()) : minLength;
+            SyntheticFasta.LengthDistribution distribution = (minLength == maxLength) ? SyntheticFasta.LengthDistribution.FIXED : SyntheticFasta.LengthDistribution.UNIFORM;
+            if (line.hasOption("Length-Distribution")) {
+                distribution = SyntheticFasta.LengthDistribution.valueOf(line.getOptionValue("Length-Distribution").toUpperCase());
+            }
+            generator.setLengths(minLength, maxLength, distribution);
+            generator.setLineWidth(Integer.parseInt(line.getOptionValue("Line-Width", "70")));
+            generator.setSeed(Long.parseLong(line.getOptionValue("Seed", "42")));
 
-        String[] args2 = {"-i", "TestFiles/test.fasta", "-s", "dna", "-t", "1"};
-        long runtime1Threads = 0;
-        for (int i = 0; i < 100; i++) {
             long startTime = System.nanoTime();
-            benchmark_main(args2);
-            long endTime = System.nanoTime();
-            long elapsedTime = endTime - startTime;
-            runtime1Threads = runtime1Threads + elapsedTime;
+            long written = generator.write(Path.of(line.getOptionValue("Generate")));
+            double elapsedTimeInSeconds = (System.nanoTime() - startTime) / 1_000_000_000.0;
+            System.out.println("-> Generated " + written + " bytes in " + elapsedTimeInSeconds + " seconds: " + line.getOptionValue("Generate"));
+        } catch (IllegalArgumentException iae) {
+            System.err.println("-> Invalid generator setting: " + iae.getMessage());
+        } catch (IOException ioe) {
+            System.err.println("-> Could not write generated file: " + ioe.getMessage());
         }
-        System.out.println("4 Thread took " + ((double) runtime4Threads / 1_000_000_000.0) / 100 + " seconds average to run");
-        System.out.println("1 Thread took " + ((double) runtime1Threads / 1_000_000_000.0) / 100 + " seconds average to run");
-
     }
 
+    private static FastaHandler streamFastaHandlerObject(CommandLine line) {
+        FastaHandler handler = FastaHandler.getInstance();
+
+        try {
+            handler.streamFastaEntries(line.getOptionValue("i"), line.getOptionValue("s"), line.getOptionValue("o"), line.hasOption("p"), line.hasOption("w"));
+            System.out.println("-> Finished analyzing and writing Entrys");
+        } catch (WrongSequenceTypeException | MalformattedFastaFileException wste) {
+            System.err.println(wste.getMessage());
+        }
+        return handler;
+    }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,307 @@
+package org.analyzer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Finds all occurrences of many nucleotide motifs, e.g. adapters, primers and restriction sites, in one pass over a
+ * sequence. All motifs are compiled into one Aho-Corasick automaton over the 2-bit alphabet of the PackedSequence,
+ * the failure links are resolved into a complete transition table, so every base costs one table lookup, independent
+ * of the number of motifs. Motifs never match across bases besides ACGT/U, e.g. N.
+ * Optionally the reverse complement of every motif is searched too, reported on the - strand, and IUPAC codes inside
+ * the motifs are expanded into all concrete motifs. The automaton isn't changed after it's built, so one scanner is
+ * shared by all worker threads.
+ */
+final class MotifScanner {
+    // maximal number of concrete motifs a motif with IUPAC codes may expand to
+    static final int MAX_EXPANSIONS = 4096;
+    private static final char[] BASES = {'A', 'C', 'G', 'T'};
+    private static final long[] NO_HITS = new long[0];
+
+    /**
+     * One concrete pattern of the automaton
+     *
+     * @param name     name of the motif from the motif file
+     * @param sequence bases of the pattern, on the + strand for forward patterns
+     * @param strand   '+' for the motif, '-' for its reverse complement
+     */
+    record Pattern(String name, String sequence, char strand) {
+    }
+
+    private final List<Pattern> patterns = new ArrayList<>();
+    private int[] transitions;
+    // patterns that end at a state, and the next state on the failure path that has patterns too, -1 if there is none
+    private int[][] statePatterns;
+    private int[] outputLinks;
+    private int stateCount;
+
+    /**
+     * Builds the automaton.
+     *
+     * @param motifs             name and sequence of every motif
+     * @param reverseComplements search the reverse complement of every motif too
+     * @param iupac              expand IUPAC codes inside the motifs, without they are an error
+     */
+    MotifScanner(List<String[]> motifs, boolean reverseComplements, boolean iupac) {
+        Set<String> forward = new LinkedHashSet<>();
+        for (String[] motif : motifs) {
+            String name = motif[0];
+            forward.clear();
+            expand(name, motif[1].toUpperCase().replace('U', 'T'), iupac, forward);
+            for (String sequence : forward) {
+                this.patterns.add(new Pattern(name, sequence, '+'));
+            }
+            if (reverseComplements) {
+                for (String sequence : forward) {
+                    String complement = reverseComplement(sequence);
+                    // palindromes like most restriction sites are reported once
+                    if (!forward.contains(complement)) {
+                        this.patterns.add(new Pattern(name, complement, '-'));
+                    }
+                }
+            }
+        }
+        if (this.patterns.isEmpty()) {
+            throw new IllegalArgumentException("No motifs given");
+        }
+        this.build();
+    }
+
+    /**
+     * Reads a motif file. Motifs are given in fasta format or one per line as name and sequence separated by
+     * whitespace, a line with only a sequence is named by the sequence. Empty lines and lines starting with # are
+     * skipped.
+     */
+    static MotifScanner fromFile(Path motifFile, boolean reverseComplements, boolean iupac) throws IOException {
+        List<String[]> motifs = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(motifFile)) {
+            String line;
+            String fastaName = null;
+            StringBuilder fastaSequence = new StringBuilder();
+            while ((line = reader.readLine()) != null) {
+                line = line.strip();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                if (line.startsWith(">")) {
+                    if (fastaName != null) {
+                        motifs.add(new String[]{fastaName, fastaSequence.toString()});
+                    }
+                    fastaName = FastaIndex.sequenceName(line);
+                    fastaSequence.setLength(0);
+                } else if (fastaName != null) {
+                    fastaSequence.append(line);
+                } else {
+                    String[] fields = line.split("\\s+");
+                    motifs.add((fields.length > 1) ? new String[]{fields[0], fields[1]} : new String[]{fields[0], fields[0]});
+                }
+            }
+            if (fastaName != null) {
+                motifs.add(new String[]{fastaName, fastaSequence.toString()});
+            }
+        }
+        return new MotifScanner(motifs, reverseComplements, iupac);
+    }
+
+    private static void expand(String name, String motif, boolean iupac, Set<String> expanded) {
+        if (motif.isEmpty()) {
+            throw new IllegalArgumentException("Motif " + name + " is empty");
+        }
+        List<StringBuilder> prefixes = new ArrayList<>(List.of(new StringBuilder()));
+        for (int i = 0; i < motif.length(); i++) {
+            String bases = iupacBases(motif.charAt(i));
+            if (bases == null || (bases.length() > 1 && !iupac)) {
+                throw new IllegalArgumentException("Motif " + name + " contains " + ((bases == null) ? "the invalid character " : "the IUPAC code ") +
+                        motif.charAt(i) + ((bases == null) ? "" : ", IUPAC codes need to be expanded"));
+            }
+            if (prefixes.size() * bases.length() > MAX_EXPANSIONS) {
+                throw new IllegalArgumentException("Motif " + name + " expands to more than " + MAX_EXPANSIONS + " motifs");
+            }
+            List<StringBuilder> extended = new ArrayList<>(prefixes.size() * bases.length());
+            for (StringBuilder prefix : prefixes) {
+                for (int b = 0; b < bases.length(); b++) {
+                    extended.add(new StringBuilder(prefix).append(bases.charAt(b)));
+                }
+            }
+            prefixes = extended;
+        }
+        for (StringBuilder prefix : prefixes) {
+            expanded.add(prefix.toString());
+        }
+    }
+
+    /**
+     * @return the bases of an IUPAC code, null for other characters
+     */
+    private static String iupacBases(char code) {
+        return switch (code) {
+            case 'A', 'C', 'G', 'T' -> String.valueOf(code);
+            case 'R' -> "AG";
+            case 'Y' -> "CT";
+            case 'S' -> "CG";
+            case 'W' -> "AT";
+            case 'K' -> "GT";
+            case 'M' -> "AC";
+            case 'B' -> "CGT";
+            case 'D' -> "AGT";
+            case 'H' -> "ACT";
+            case 'V' -> "ACG";
+            case 'N' -> "ACGT";
+            default -> null;
+        };
+    }
+
+    private static String reverseComplement(String sequence) {
+        StringBuilder complement = new StringBuilder(sequence.length());
+        for (int i = sequence.length() - 1; i >= 0; i--) {
+            complement.append(BASES[3 - baseCode(sequence.charAt(i))]);
+        }
+        return complement.toString();
+    }
+
+    private static int baseCode(int base) {
+        return switch (base) {
+            case 'A' -> 0;
+            case 'C' -> 1;
+            case 'G' -> 2;
+            case 'T', 'U' -> 3;
+            default -> -1;
+        };
+    }
+
+    /**
+     * Builds the trie of all patterns, then the failure links breadth first, which turn the trie into a complete
+     * transition table.
+     */
+    private void build() {
+        int maxStates = 1;
+        for (Pattern pattern : this.patterns) {
+            maxStates += pattern.sequence().length();
+        }
+        int[] transitions = new int[maxStates * 4];
+        Arrays.fill(transitions, -1);
+        List<List<Integer>> patternsOfState = new ArrayList<>();
+        patternsOfState.add(new ArrayList<>());
+        int states = 1;
+        for (int p = 0; p < this.patterns.size(); p++) {
+            String sequence = this.patterns.get(p).sequence();
+            int state = 0;
+            for (int i = 0; i < sequence.length(); i++) {
+                int code = baseCode(sequence.charAt(i));
+                if (transitions[state * 4 + code] < 0) {
+                    transitions[state * 4 + code] = states++;
+                    patternsOfState.add(new ArrayList<>());
+                }
+                state = transitions[state * 4 + code];
+            }
+            patternsOfState.get(state).add(p);
+        }
+
+        int[] failure = new int[states];
+        this.outputLinks = new int[states];
+        Arrays.fill(this.outputLinks, -1);
+        // children of the root fail to the root, which never has patterns
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int code = 0; code < 4; code++) {
+            if (transitions[code] < 0) {
+                transitions[code] = 0;
+            } else {
+                queue.add(transitions[code]);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            int fallback = failure[state];
+            this.outputLinks[state] = patternsOfState.get(fallback).isEmpty() ? this.outputLinks[fallback] : fallback;
+            for (int code = 0; code < 4; code++) {
+                int next = transitions[state * 4 + code];
+                if (next < 0) {
+                    transitions[state * 4 + code] = transitions[fallback * 4 + code];
+                } else {
+                    failure[next] = transitions[fallback * 4 + code];
+                    queue.add(next);
+                }
+            }
+        }
+        this.transitions = Arrays.copyOf(transitions, states * 4);
+        this.statePatterns = new int[states][];
+        for (int state = 0; state < states; state++) {
+            List<Integer> ending = patternsOfState.get(state);
+            this.statePatterns[state] = ending.stream().mapToInt(Integer::intValue).toArray();
+        }
+        this.stateCount = states;
+    }
+
+    /**
+     * Scans the sequence in one pass.
+     *
+     * @param sequence packed DNA/RNA sequence
+     * @return hits sorted by start position and pattern, every hit as start position << 32 | pattern index
+     */
+    long[] scan(PackedSequence sequence) {
+        long[] hits = NO_HITS;
+        int hitCount = 0;
+        int state = 0;
+        int nextException = sequence.nextException(0);
+        for (int position = 0; position < sequence.length(); position++) {
+            int code;
+            if (position == nextException) {
+                code = baseCode(sequence.byteAt(position));
+                nextException = sequence.nextException(position + 1);
+                if (code < 0) {
+                    state = 0;
+                    continue;
+                }
+            } else {
+                code = sequence.code(position);
+            }
+            state = this.transitions[state * 4 + code];
+            for (int output = (this.statePatterns[state].length > 0) ? state : this.outputLinks[state]; output > 0; output = this.outputLinks[output]) {
+                for (int pattern : this.statePatterns[output]) {
+                    if (hitCount == hits.length) {
+                        hits = Arrays.copyOf(hits, Math.max(16, hitCount * 2));
+                    }
+                    long start = position + 1 - this.patterns.get(pattern).sequence().length();
+                    hits[hitCount++] = (start << 32) | pattern;
+                }
+            }
+        }
+        hits = Arrays.copyOf(hits, hitCount);
+        Arrays.sort(hits);
+        return hits;
+    }
+
+    /**
+     * Writes the hits of one sequence as tab separated lines of sequence, start, end, strand, motif name and matched
+     * bases. Coordinates are 0-based and the end is exclusive, like in BED files.
+     */
+    void writeHits(String sequenceName, long[] hits, Writer writer) throws IOException {
+        for (long hit : hits) {
+            int start = (int) (hit >>> 32);
+            Pattern pattern = this.patterns.get((int) hit);
+            writer.write(sequenceName + "\t" + start + "\t" + (start + pattern.sequence().length()) + "\t" + pattern.strand() + "\t" +
+                    pattern.name() + "\t" + pattern.sequence() + "\n");
+        }
+    }
+
+    /**
+     * @return number of concrete patterns, after the expansion and with the reverse complements
+     */
+    int getPatternCount() {
+        return this.patterns.size();
+    }
+
+    int getStateCount() {
+        return this.stateCount;
+    }
+}
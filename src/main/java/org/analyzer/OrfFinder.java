@@ -0,0 +1,326 @@
+package org.analyzer;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Six-frame translation and open reading frame detection for DNA/RNA entries. The three forward frames and the three
+ * frames of the reverse complement are processed as separate tasks on the worker pool. Long sequences are further
+ * split into chunks of codons, every chunk task collects the stop and start codons of its region and the ORFs are
+ * built from these positions afterwards, so the scan of one chromosome runs on all threads.
+ */
+class OrfFinder {
+    static final int DEFAULT_MIN_LENGTH = 75;
+    static final String DEFAULT_START_CODONS = "ATG";
+    // number of codons scanned by one task
+    static final int CHUNK_CODONS = 1 << 20;
+    // number of entries that are scanned ahead of the writer
+    private static final int ENTRIES_IN_FLIGHT = 16;
+
+    private static final String[] FRAME_NAMES = {"+1", "+2", "+3", "-1", "-2", "-3"};
+
+    private final GeneticCode geneticCode;
+    private final int minLength;
+    private final boolean[] startCodons = new boolean[64];
+    private final boolean requireStart;
+    int chunkCodons = CHUNK_CODONS;
+
+    /**
+     * Package wide Constructor.
+     *
+     * @param geneticCode GeneticCode Enum for the stop codons and the translation
+     * @param minLength   minimal length of an ORF in nucleotides, without the stop codon
+     * @param startCodons start codons of an ORF, separated by commas. Empty for ORFs from stop to stop
+     */
+    OrfFinder(GeneticCode geneticCode, int minLength, String startCodons) {
+        this.geneticCode = geneticCode;
+        this.minLength = minLength;
+        boolean anyStart = false;
+        for (String codon : startCodons.toUpperCase().split(",")) {
+            codon = codon.trim();
+            if (codon.isEmpty()) {
+                continue;
+            }
+            if (codon.length() != 3 || codonIndex(codon.getBytes(StandardCharsets.ISO_8859_1), 0) < 0) {
+                throw new IllegalArgumentException("Invalid start codon: " + codon);
+            }
+            this.startCodons[codonIndex(codon.getBytes(StandardCharsets.ISO_8859_1), 0)] = true;
+            anyStart = true;
+        }
+        this.requireStart = anyStart;
+    }
+
+    /**
+     * One open reading frame
+     *
+     * @param frame     index of the frame inside FRAME_NAMES
+     * @param start     1-based first nucleotide on the forward strand
+     * @param end       1-based last nucleotide on the forward strand, including the stop codon
+     * @param peptide   translation of the ORF without the stop codon
+     */
+    record Orf(int frame, long start, long end, byte[] peptide) {
+        String frameName() {
+            return FRAME_NAMES[this.frame];
+        }
+
+        char strand() {
+            return (this.frame < 3) ? '+' : '-';
+        }
+    }
+
+    /**
+     * Positions of the stop and start codons of one chunk. Positions are codon indices inside the frame.
+     */
+    private static final class CodonPositions {
+        int[] stops = new int[16];
+        int stopCount;
+        int[] starts = new int[16];
+        int startCount;
+
+        void addStop(int codon) {
+            if (this.stopCount == this.stops.length) {
+                this.stops = Arrays.copyOf(this.stops, this.stopCount * 2);
+            }
+            this.stops[this.stopCount++] = codon;
+        }
+
+        void addStart(int codon) {
+            if (this.startCount == this.starts.length) {
+                this.starts = Arrays.copyOf(this.starts, this.startCount * 2);
+            }
+            this.starts[this.startCount++] = codon;
+        }
+    }
+
+    /**
+     * Both strands of one entry. The reverse complement is built once and shared by the frame tasks.
+     */
+    private static final class Strands {
+        final byte[] forward;
+        final byte[] reverse;
+
+        Strands(FastaEntry entry) {
+            this.forward = entry.getSequenceBytes();
+            this.reverse = FastaEntry.SequenceHandler.reverseComplement(this.forward);
+        }
+
+        byte[] frameStrand(int frame) {
+            return (frame < 3) ? this.forward : this.reverse;
+        }
+    }
+
+    private static int codonIndex(byte[] sequence, int position) {
+        return (GeneticCode.BASE_CODES[sequence[position] & 0xFF] << 4) | (GeneticCode.BASE_CODES[sequence[position + 1] & 0xFF] << 2) | GeneticCode.BASE_CODES[sequence[position + 2] & 0xFF];
+    }
+
+    private static int codonsInFrame(int length, int frame) {
+        return Math.max(0, (length - frame % 3) / 3);
+    }
+
+    /**
+     * Translates all six frames of every entry and writes them as fasta entries in input order.
+     *
+     * @param entries    DNA/RNA entries to translate
+     * @param threadPool worker pool for the frame tasks
+     * @param writer     output for the translated frames
+     */
+    void writeSixFrames(List<FastaEntry> entries, ExecutorService threadPool, Writer writer) throws IOException, InterruptedException, ExecutionException {
+        Deque<List<Future<byte[]>>> pending = new ArrayDeque<>();
+        Deque<FastaEntry> pendingEntries = new ArrayDeque<>();
+
+        for (FastaEntry entry : entries) {
+            Strands strands = new Strands(entry);
+            List<Future<byte[]>> frames = new ArrayList<>(6);
+            for (int frame = 0; frame < 6; frame++) {
+                final int currentFrame = frame;
+                frames.add(threadPool.submit(() -> this.translateFrame(strands.frameStrand(currentFrame), currentFrame % 3)));
+            }
+            pending.add(frames);
+            pendingEntries.add(entry);
+            if (pending.size() >= ENTRIES_IN_FLIGHT) {
+                this.writeFrames(pendingEntries.poll(), pending.poll(), writer);
+            }
+        }
+        while (!pending.isEmpty()) {
+            this.writeFrames(pendingEntries.poll(), pending.poll(), writer);
+        }
+    }
+
+    private byte[] translateFrame(byte[] strand, int offset) {
+        byte[] peptide = new byte[codonsInFrame(strand.length, offset)];
+        this.geneticCode.translate(strand, offset, offset + peptide.length * 3, peptide, 0);
+        return peptide;
+    }
+
+    private void writeFrames(FastaEntry entry, List<Future<byte[]>> frames, Writer writer) throws IOException, InterruptedException, ExecutionException {
+        for (int frame = 0; frame < 6; frame++) {
+            writer.write(entry.getSeqID().split("\\s")[0] + "_frame" + FRAME_NAMES[frame] + " frame=" + FRAME_NAMES[frame]);
+            writer.write('\n');
+            writer.write(FastaHandler.insertLineBreaks(new String(frames.get(frame).get(), StandardCharsets.ISO_8859_1)));
+            writer.write('\n');
+        }
+    }
+
+    /**
+     * Finds the ORFs of every entry on all six frames and writes them in input order as peptide fasta and as TSV
+     * with the coordinates on the forward strand.
+     *
+     * @param entries    DNA/RNA entries to scan
+     * @param threadPool worker pool for the frame and chunk tasks
+     * @param fasta      output for the ORF peptides
+     * @param tsv        output for the ORF coordinates
+     * @return number of found ORFs
+     */
+    long findOrfs(List<FastaEntry> entries, ExecutorService threadPool, Writer fasta, Writer tsv) throws IOException, InterruptedException, ExecutionException {
+        tsv.write("seqID\torfID\tframe\tstrand\tstart\tend\tlength_nt\tlength_aa\n");
+        Deque<List<List<Future<CodonPositions>>>> pending = new ArrayDeque<>();
+        Deque<FastaEntry> pendingEntries = new ArrayDeque<>();
+        Deque<Strands> pendingStrands = new ArrayDeque<>();
+        long orfCount = 0;
+
+        for (FastaEntry entry : entries) {
+            Strands strands = new Strands(entry);
+            pending.add(this.submitScan(strands, threadPool));
+            pendingEntries.add(entry);
+            pendingStrands.add(strands);
+            if (pending.size() >= ENTRIES_IN_FLIGHT) {
+                orfCount += this.writeOrfs(pendingEntries.poll(), pendingStrands.poll(), pending.poll(), fasta, tsv);
+            }
+        }
+        while (!pending.isEmpty()) {
+            orfCount += this.writeOrfs(pendingEntries.poll(), pendingStrands.poll(), pending.poll(), fasta, tsv);
+        }
+        return orfCount;
+    }
+
+    /**
+     * Submits the scan tasks for all six frames. Every frame is split into chunks of CHUNK_CODONS codons.
+     */
+    private List<List<Future<CodonPositions>>> submitScan(Strands strands, ExecutorService threadPool) {
+        List<List<Future<CodonPositions>>> frames = new ArrayList<>(6);
+        for (int frame = 0; frame < 6; frame++) {
+            byte[] strand = strands.frameStrand(frame);
+            int offset = frame % 3;
+            int codons = codonsInFrame(strand.length, offset);
+            List<Future<CodonPositions>> chunks = new ArrayList<>();
+            for (int chunkStart = 0; chunkStart < codons || chunkStart == 0; chunkStart += this.chunkCodons) {
+                final int from = chunkStart;
+                final int to = Math.min(codons, chunkStart + this.chunkCodons);
+                chunks.add(threadPool.submit(() -> this.scanChunk(strand, offset, from, to)));
+            }
+            frames.add(chunks);
+        }
+        return frames;
+    }
+
+    private CodonPositions scanChunk(byte[] strand, int offset, int fromCodon, int toCodon) {
+        CodonPositions positions = new CodonPositions();
+        for (int codon = fromCodon, position = offset + fromCodon * 3; codon < toCodon; codon++, position += 3) {
+            int index = codonIndex(strand, position);
+            if (index < 0) {
+                continue;
+            }
+            if (this.geneticCode.aminoAcid(index) == '*') {
+                positions.addStop(codon);
+            } else if (this.startCodons[index]) {
+                positions.addStart(codon);
+            }
+        }
+        return positions;
+    }
+
+    private long writeOrfs(FastaEntry entry, Strands strands, List<List<Future<CodonPositions>>> frames, Writer fasta, Writer tsv) throws IOException, InterruptedException, ExecutionException {
+        String seqID = entry.getSeqID().split("\\s")[0].substring(1);
+        List<Orf> orfs = new ArrayList<>();
+        for (int frame = 0; frame < 6; frame++) {
+            this.collectOrfs(frame, strands.frameStrand(frame), frames.get(frame), orfs);
+        }
+
+        int orfNumber = 0;
+        for (Orf orf : orfs) {
+            String orfID = seqID + "_orf" + (++orfNumber);
+            fasta.write(">" + orfID + " frame=" + orf.frameName() + " strand=" + orf.strand() + " start=" + orf.start() + " end=" + orf.end());
+            fasta.write('\n');
+            fasta.write(FastaHandler.insertLineBreaks(new String(orf.peptide(), StandardCharsets.ISO_8859_1)));
+            fasta.write('\n');
+
+            long lengthNt = orf.end() - orf.start() + 1;
+            tsv.write(seqID + "\t" + orfID + "\t" + orf.frameName() + "\t" + orf.strand() + "\t" + orf.start() + "\t" + orf.end() + "\t" + lengthNt + "\t" + orf.peptide().length + "\n");
+        }
+        return orfs.size();
+    }
+
+    /**
+     * Builds the ORFs of one frame from the stop and start positions of its chunks. An ORF starts at the first start
+     * codon after the previous stop (or directly after the previous stop without start codons) and ends with the
+     * next stop codon. Open ends aren't reported, neither the part of a frame after its last stop nor, without start
+     * codons, the part before its first stop.
+     */
+    private void collectOrfs(int frame, byte[] strand, List<Future<CodonPositions>> chunks, List<Orf> orfs) throws InterruptedException, ExecutionException {
+        int offset = frame % 3;
+        int previousStop = -1;
+        int openStart = -1;
+        for (Future<CodonPositions> chunk : chunks) {
+            CodonPositions positions = chunk.get();
+            int startIndex = 0;
+            for (int s = 0; s < positions.stopCount; s++) {
+                int stop = positions.stops[s];
+                int orfStart;
+                if (this.requireStart) {
+                    while (openStart < 0 && startIndex < positions.startCount && positions.starts[startIndex] < stop) {
+                        if (positions.starts[startIndex] > previousStop) {
+                            openStart = positions.starts[startIndex];
+                        }
+                        startIndex++;
+                    }
+                    while (startIndex < positions.startCount && positions.starts[startIndex] < stop) {
+                        startIndex++;
+                    }
+                    orfStart = openStart;
+                } else {
+                    orfStart = (previousStop >= 0) ? previousStop + 1 : -1;
+                }
+
+                if (orfStart >= 0 && (stop - orfStart) * 3 >= this.minLength && stop > orfStart) {
+                    orfs.add(this.createOrf(frame, strand, offset, orfStart, stop));
+                }
+                previousStop = stop;
+                openStart = -1;
+            }
+            // a start codon after the last stop of this chunk can open an ORF that ends inside a later chunk
+            while (this.requireStart && openStart < 0 && startIndex < positions.startCount) {
+                if (positions.starts[startIndex] > previousStop) {
+                    openStart = positions.starts[startIndex];
+                }
+                startIndex++;
+            }
+        }
+    }
+
+    private Orf createOrf(int frame, byte[] strand, int offset, int startCodon, int stopCodon) {
+        int from = offset + startCodon * 3;
+        int to = offset + stopCodon * 3;
+        byte[] peptide = new byte[stopCodon - startCodon];
+        this.geneticCode.translate(strand, from, to, peptide, 0);
+
+        long start;
+        long end;
+        if (frame < 3) {
+            start = from + 1;
+            end = to + 3;
+        } else {
+            start = strand.length - (to + 3) + 1;
+            end = strand.length - from;
+        }
+        return new Orf(frame, start, end, peptide);
+    }
+}
@@ -0,0 +1,251 @@
+package org.analyzer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 2-bit packed storage for nucleotide sequences. 32 bases are packed into every long (A=0, C=1, G=2, T/U=3), so a
+ * base needs a quarter byte instead of one byte inside a String. Characters besides ACGT/U are rare in DNA and RNA
+ * files, so they are kept inside a small sorted side list of positions and bases.
+ */
+final class PackedSequence {
+    private static final byte[] DECODE = {'A', 'C', 'G', 'T'};
+    private static final byte[] ENCODE = createEncodeTable();
+
+    private final long[] words;
+    private final int length;
+    private final byte uracilBase;
+    private final int[] exceptionPositions;
+    private final byte[] exceptionBases;
+
+    private PackedSequence(long[] words, int length, byte uracilBase, int[] exceptionPositions, byte[] exceptionBases) {
+        this.words = words;
+        this.length = length;
+        this.uracilBase = uracilBase;
+        this.exceptionPositions = exceptionPositions;
+        this.exceptionBases = exceptionBases;
+    }
+
+    private static byte[] createEncodeTable() {
+        byte[] encode = new byte[256];
+        Arrays.fill(encode, (byte) -1);
+        encode['A'] = 0;
+        encode['C'] = 1;
+        encode['G'] = 2;
+        encode['T'] = 3;
+        encode['U'] = 3;
+        return encode;
+    }
+
+    /**
+     * Packs uppercase sequence bytes.
+     *
+     * @param bases      uppercase bases of the sequence
+     * @param length     number of bases to pack
+     * @param uracilBase 'T' for DNA or 'U' for RNA. Used for the decoding of the fourth base
+     * @return the packed sequence
+     */
+    static PackedSequence pack(byte[] bases, int length, byte uracilBase) {
+        long[] words = new long[(length + 31) >>> 5];
+        int exceptionCount = 0;
+        int[] exceptionPositions = new int[0];
+        byte[] exceptionBases = new byte[0];
+
+        for (int i = 0; i < length; i++) {
+            int code = ENCODE[bases[i] & 0xFF];
+            if (code < 0 || (code == 3 && bases[i] != uracilBase)) {
+                if (exceptionCount == exceptionPositions.length) {
+                    exceptionPositions = Arrays.copyOf(exceptionPositions, Math.max(8, exceptionCount * 2));
+                    exceptionBases = Arrays.copyOf(exceptionBases, Math.max(8, exceptionCount * 2));
+                }
+                exceptionPositions[exceptionCount] = i;
+                exceptionBases[exceptionCount++] = bases[i];
+                code = 0;
+            }
+            words[i >>> 5] |= (long) code << ((i & 31) << 1);
+        }
+        return new PackedSequence(words, length, uracilBase, Arrays.copyOf(exceptionPositions, exceptionCount), Arrays.copyOf(exceptionBases, exceptionCount));
+    }
+
+    int length() {
+        return this.length;
+    }
+
+    /**
+     * @param index position inside the sequence
+     * @return the base at the position
+     */
+    byte byteAt(int index) {
+        if (this.exceptionPositions.length > 0) {
+            int exception = Arrays.binarySearch(this.exceptionPositions, index);
+            if (exception >= 0) {
+                return this.exceptionBases[exception];
+            }
+        }
+        return this.decodeCode(this.code(index));
+    }
+
+    /**
+     * @param index position inside the sequence
+     * @return the 2-bit code at the position. Positions of the side list return the code 0
+     */
+    int code(int index) {
+        return (int) (this.words[index >>> 5] >>> ((index & 31) << 1)) & 3;
+    }
+
+    boolean hasExceptions() {
+        return this.exceptionPositions.length > 0;
+    }
+
+    /**
+     * @param from first position to check
+     * @param to   position after the last one to check
+     * @return true if a position of the side list is inside the range
+     */
+    boolean hasException(int from, int to) {
+        int exception = Arrays.binarySearch(this.exceptionPositions, from);
+        int next = (exception >= 0) ? exception : -exception - 1;
+        return next < this.exceptionPositions.length && this.exceptionPositions[next] < to;
+    }
+
+    /**
+     * @param from first position to check
+     * @return the first position of the side list at or after from, Integer.MAX_VALUE if there is none
+     */
+    int nextException(int from) {
+        int exception = Arrays.binarySearch(this.exceptionPositions, from);
+        int next = (exception >= 0) ? exception : -exception - 1;
+        return (next < this.exceptionPositions.length) ? this.exceptionPositions[next] : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Decodes the bases from (inclusive) to (exclusive) into the destination array.
+     *
+     * @param from      first position to decode
+     * @param to        position after the last one to decode
+     * @param dst       destination array
+     * @param dstOffset first index to write inside the destination array
+     */
+    void decode(int from, int to, byte[] dst, int dstOffset) {
+        byte[] decode = {DECODE[0], DECODE[1], DECODE[2], this.uracilBase};
+        int position = from;
+        int out = dstOffset;
+        while (position < to) {
+            long word = this.words[position >>> 5] >>> ((position & 31) << 1);
+            int end = Math.min(to, (position | 31) + 1);
+            for (; position < end; position++, word >>>= 2) {
+                dst[out++] = decode[(int) word & 3];
+            }
+        }
+
+        if (this.exceptionPositions.length > 0) {
+            int exception = Arrays.binarySearch(this.exceptionPositions, from);
+            for (int i = (exception >= 0) ? exception : -exception - 1; i < this.exceptionPositions.length && this.exceptionPositions[i] < to; i++) {
+                dst[dstOffset + this.exceptionPositions[i] - from] = this.exceptionBases[i];
+            }
+        }
+    }
+
+    /**
+     * @return all bases decoded into a new array
+     */
+    byte[] toBytes() {
+        byte[] bases = new byte[this.length];
+        this.decode(0, this.length, bases, 0);
+        return bases;
+    }
+
+    /**
+     * Adds the count of every base to the composition array, which is indexed by the base character. The four codes
+     * of every long are counted with bit counts over the low and high bits of the 2-bit codes.
+     *
+     * @param composition array the counts are added to
+     */
+    void countComposition(long[] composition) {
+        this.countComposition(0, this.length, composition);
+    }
+
+    /**
+     * Same as countComposition above, but only for the bases from (inclusive) to (exclusive). Used for the chunks of
+     * large sequences, partial longs at both ends of the range are masked.
+     *
+     * @param from        first position to count
+     * @param to          position after the last one to count
+     * @param composition array the counts are added to
+     */
+    void countComposition(int from, int to, long[] composition) {
+        final long lowBits = 0x5555555555555555L;
+        long count0 = 0;
+        long count1 = 0;
+        long count2 = 0;
+        long count3 = 0;
+        if (from < to) {
+            for (int w = from >>> 5, lastWord = (to - 1) >>> 5; w <= lastWord; w++) {
+                long valid = lowBits;
+                if (w == from >>> 5) {
+                    valid &= -1L << ((from & 31) << 1);
+                }
+                if (w == lastWord && (to & 31) != 0) {
+                    valid &= (1L << ((to & 31) << 1)) - 1;
+                }
+                long low = this.words[w] & lowBits;
+                long high = (this.words[w] >>> 1) & lowBits;
+                int threes = Long.bitCount(low & high & valid);
+                int twos = Long.bitCount(high & ~low & valid);
+                int ones = Long.bitCount(low & ~high & valid);
+                count3 += threes;
+                count2 += twos;
+                count1 += ones;
+                count0 += Long.bitCount(valid) - threes - twos - ones;
+            }
+        }
+
+        // positions of the side list are packed as code 0
+        if (this.exceptionPositions.length > 0) {
+            int exception = Arrays.binarySearch(this.exceptionPositions, from);
+            for (int i = (exception >= 0) ? exception : -exception - 1; i < this.exceptionPositions.length && this.exceptionPositions[i] < to; i++) {
+                count0--;
+                composition[this.exceptionBases[i] & 0x7F]++;
+            }
+        }
+
+        composition['A'] += count0;
+        composition['C'] += count1;
+        composition['G'] += count2;
+        composition[this.uracilBase] += count3;
+    }
+
+    /**
+     * Feeds the length, the packed longs and the side list into the hasher. A quarter of the bytes of the decoded
+     * bases, so hashing the packed form is faster.
+     *
+     * @param hasher hasher of the result cache key
+     */
+    void hashInto(ResultCache.Hasher hasher) {
+        hasher.putLong(this.length);
+        for (long word : this.words) {
+            hasher.putLong(word);
+        }
+        for (int i = 0; i < this.exceptionPositions.length; i++) {
+            hasher.putLong((long) this.exceptionPositions[i] << 8 | (this.exceptionBases[i] & 0xFF));
+        }
+    }
+
+    /**
+     * @param other another packed sequence
+     * @return true if both sequences have the same bases
+     */
+    boolean contentEquals(PackedSequence other) {
+        return this.length == other.length && this.uracilBase == other.uracilBase && Arrays.equals(this.words, other.words) &&
+                Arrays.equals(this.exceptionPositions, other.exceptionPositions) && Arrays.equals(this.exceptionBases, other.exceptionBases);
+    }
+
+    private byte decodeCode(int code) {
+        return (code == 3) ? this.uracilBase : DECODE[code];
+    }
+
+    @Override
+    public String toString() {
+        return new String(this.toBytes(), StandardCharsets.ISO_8859_1);
+    }
+}
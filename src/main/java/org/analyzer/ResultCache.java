@@ -0,0 +1,350 @@
+package org.analyzer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Persistent cache for the calculated metrics of the entries. The results are content addressed: the key is a 128-bit
+ * hash of the sequence, the sequence type, the genetic code, the pI tolerance and FORMULA_VERSION, the header of an
+ * entry doesn't matter. An entry whose key is inside the cache gets its results restored and isn't calculated at all,
+ * so repeated runs over mostly unchanged databases only calculate the changed sequences.
+ * The cache is loaded into memory when it's opened and written back by save(). It's bounded by the size of the stored
+ * results, the least recently used results are evicted first. The file is written in LRU order, so the recency
+ * survives between runs.
+ */
+final class ResultCache {
+    // bump this version whenever a formula of the SequenceType or the translation changes, old results become misses
+    static final int FORMULA_VERSION = 1;
+    static final long DEFAULT_MAX_BYTES = 256L << 20;
+
+    private static final long MAGIC = 0x4641_4341_4348_4531L;
+    // key and length of a record in the file
+    private static final int RECORD_OVERHEAD = 20;
+    // hash seeds of the sequence representations, a packed and a plain sequence never share a key
+    private static final long PACKED_SEED = 0x9E3779B97F4A7C15L;
+    private static final long PLAIN_SEED = 0xC2B2AE3D27D4EB4FL;
+
+    /**
+     * 128-bit content hash of an entry
+     */
+    record Key(long high, long low) {
+    }
+
+    private final Path file;
+    private final long maxBytes;
+    private final LinkedHashMap<Key, byte[]> results = new LinkedHashMap<>(1024, 0.75f, true);
+    private long storedBytes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder lookups = new LongAdder();
+
+    private ResultCache(Path file, long maxBytes) {
+        this.file = file;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Opens the cache file. A missing file gives an empty cache, an unreadable one is reported and replaced on save.
+     *
+     * @param file     path of the cache file
+     * @param maxBytes maximal size of the stored results in bytes
+     * @return the loaded cache
+     */
+    static ResultCache open(Path file, long maxBytes) {
+        ResultCache cache = new ResultCache(file, maxBytes);
+        if (Files.exists(file)) {
+            try {
+                cache.load();
+            } catch (IOException ioe) {
+                System.err.println("-> Could not read result cache, starting with an empty cache: " + ioe.getMessage());
+                cache.results.clear();
+                cache.storedBytes = 0;
+            }
+        }
+        return cache;
+    }
+
+    private void load() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(this.file), 1 << 16))) {
+            if (in.readLong() != MAGIC) {
+                throw new IOException("Not a result cache file: " + this.file);
+            }
+            long count = in.readLong();
+            for (long i = 0; i < count; i++) {
+                Key key = new Key(in.readLong(), in.readLong());
+                byte[] result = new byte[in.readInt()];
+                in.readFully(result);
+                this.put(key, result);
+            }
+        } catch (EOFException eofe) {
+            throw new IOException("Truncated result cache file: " + this.file);
+        }
+    }
+
+    /**
+     * Writes all results to the cache file, least recently used first. The file is replaced atomically, an
+     * interrupted save keeps the old cache.
+     */
+    synchronized void save() throws IOException {
+        Path parent = this.file.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(parent, this.file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+                out.writeLong(MAGIC);
+                out.writeLong(this.results.size());
+                for (Map.Entry<Key, byte[]> result : this.results.entrySet()) {
+                    out.writeLong(result.getKey().high());
+                    out.writeLong(result.getKey().low());
+                    out.writeInt(result.getValue().length);
+                    out.write(result.getValue());
+                }
+            }
+            Files.move(temporary, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Restores the results of the entry, if they are inside the cache.
+     *
+     * @param key   key of the entry
+     * @param entry entry with sequence and settings, but without results
+     * @return true if the results got restored
+     */
+    boolean restore(Key key, FastaEntry entry) {
+        byte[] result;
+        synchronized (this) {
+            result = this.results.get(key);
+        }
+        this.lookups.increment();
+        if (result == null) {
+            return false;
+        }
+        this.hits.increment();
+        ByteBuffer buffer = ByteBuffer.wrap(result);
+        double gcEnrichment = buffer.getDouble();
+        double molecularWeight = buffer.getDouble();
+        double meltingPoint = buffer.getDouble();
+        double netCharge = buffer.getDouble();
+        double isoelectricPoint = buffer.getDouble();
+        long[] composition = readComposition(buffer);
+        long[] translatedComposition = (buffer.get() != 0) ? readComposition(buffer) : null;
+        entry.setCachedResults(composition, translatedComposition, gcEnrichment, molecularWeight, meltingPoint, netCharge, isoelectricPoint);
+        return true;
+    }
+
+    /**
+     * Stores the results of a calculated entry.
+     *
+     * @param key   key of the entry
+     * @param entry calculated entry
+     */
+    void store(Key key, FastaEntry entry) {
+        long[] composition = entry.getComposition();
+        long[] translatedComposition = entry.getTranslatedComposition();
+        ByteBuffer buffer = ByteBuffer.allocate(5 * Double.BYTES + compositionSize(composition) + 1 + compositionSize(translatedComposition));
+        buffer.putDouble(entry.getGcEnrichment());
+        buffer.putDouble(entry.getMolecularWeight());
+        buffer.putDouble(entry.getMeltingPoint());
+        buffer.putDouble(entry.getNetCharge());
+        buffer.putDouble(entry.getIsoelectricPoint());
+        writeComposition(buffer, composition);
+        buffer.put((byte) ((translatedComposition != null) ? 1 : 0));
+        writeComposition(buffer, translatedComposition);
+        synchronized (this) {
+            this.put(key, buffer.array());
+        }
+    }
+
+    private void put(Key key, byte[] result) {
+        byte[] replaced = this.results.put(key, result);
+        this.storedBytes += RECORD_OVERHEAD + result.length - ((replaced != null) ? RECORD_OVERHEAD + replaced.length : 0);
+        Iterator<byte[]> eldest = this.results.values().iterator();
+        while (this.storedBytes > this.maxBytes && eldest.hasNext()) {
+            this.storedBytes -= RECORD_OVERHEAD + eldest.next().length;
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Compositions are stored sparse, as count of the used characters followed by every character and its count.
+     */
+    private static int compositionSize(long[] composition) {
+        if (composition == null) {
+            return 0;
+        }
+        int used = 0;
+        for (long count : composition) {
+            if (count != 0) {
+                used++;
+            }
+        }
+        return 1 + used * (1 + Long.BYTES);
+    }
+
+    private static void writeComposition(ByteBuffer buffer, long[] composition) {
+        if (composition == null) {
+            return;
+        }
+        int countPosition = buffer.position();
+        buffer.put((byte) 0);
+        int used = 0;
+        for (int c = 0; c < composition.length; c++) {
+            if (composition[c] != 0) {
+                buffer.put((byte) c);
+                buffer.putLong(composition[c]);
+                used++;
+            }
+        }
+        buffer.put(countPosition, (byte) used);
+    }
+
+    private static long[] readComposition(ByteBuffer buffer) {
+        long[] composition = new long[FastaEntry.COMPOSITION_SIZE];
+        int used = buffer.get() & 0xFF;
+        for (int i = 0; i < used; i++) {
+            int c = buffer.get();
+            composition[c] = buffer.getLong();
+        }
+        return composition;
+    }
+
+    /**
+     * @param entry entry with sequence and settings
+     * @return content hash of the sequence and all settings the results depend on
+     */
+    static Key keyOf(FastaEntry entry, SequenceType seqType, GeneticCode geneticCode, double isoelectricTolerance) {
+        PackedSequence packedSequence = entry.getPackedSequence();
+        Hasher hasher = new Hasher((packedSequence != null) ? PACKED_SEED : PLAIN_SEED);
+        hasher.putLong(FORMULA_VERSION);
+        hasher.putLong(seqType.ordinal());
+        hasher.putLong(geneticCode.getId());
+        hasher.putLong(Double.doubleToLongBits(isoelectricTolerance));
+        if (packedSequence != null) {
+            packedSequence.hashInto(hasher);
+        } else {
+            hasher.putString(entry.getSequence());
+        }
+        return hasher.finish();
+    }
+
+    long getHits() {
+        return this.hits.sum();
+    }
+
+    long getLookups() {
+        return this.lookups.sum();
+    }
+
+    synchronized int size() {
+        return this.results.size();
+    }
+
+    synchronized long getStoredBytes() {
+        return this.storedBytes;
+    }
+
+    Path getFile() {
+        return this.file;
+    }
+
+    /**
+     * Hash with the mixing of MurmurHash3 x64 128, over a stream of longs. Fast enough to hash a sequence in a fraction of its calculation
+     * time, with 128 bits a collision of two different sequences is practically impossible.
+     */
+    static final class Hasher {
+        private static final long C1 = 0x87c37b91114253d5L;
+        private static final long C2 = 0x4cf5ad432745937fL;
+
+        private long h1;
+        private long h2;
+        private long pending;
+        private boolean hasPending;
+        private long length;
+
+        Hasher(long seed) {
+            this.h1 = seed;
+            this.h2 = seed;
+        }
+
+        void putLong(long value) {
+            this.length += Long.BYTES;
+            if (!this.hasPending) {
+                this.pending = value;
+                this.hasPending = true;
+                return;
+            }
+            this.mix(this.pending, value);
+            this.hasPending = false;
+        }
+
+        private void mix(long k1, long k2) {
+            k1 *= C1;
+            k1 = Long.rotateLeft(k1, 31);
+            k1 *= C2;
+            this.h1 ^= k1;
+            this.h1 = Long.rotateLeft(this.h1, 27);
+            this.h1 += this.h2;
+            this.h1 = this.h1 * 5 + 0x52dce729;
+
+            k2 *= C2;
+            k2 = Long.rotateLeft(k2, 33);
+            k2 *= C1;
+            this.h2 ^= k2;
+            this.h2 = Long.rotateLeft(this.h2, 31);
+            this.h2 += this.h1;
+            this.h2 = this.h2 * 5 + 0x38495ab5;
+        }
+
+        /**
+         * Feeds the length and the chars of the string, 4 chars per long.
+         */
+        void putString(String string) {
+            this.putLong(string.length());
+            for (int i = 0; i < string.length(); i += 4) {
+                long word = 0;
+                for (int j = i; j < Math.min(i + 4, string.length()); j++) {
+                    word |= (long) string.charAt(j) << ((j - i) << 4);
+                }
+                this.putLong(word);
+            }
+        }
+
+        Key finish() {
+            if (this.hasPending) {
+                this.mix(this.pending, 0);
+                this.hasPending = false;
+            }
+            long high = this.h1 ^ this.length;
+            long low = this.h2 ^ this.length;
+            high += low;
+            low += high;
+            high = fmix(high);
+            low = fmix(low);
+            high += low;
+            low += high;
+            return new Key(high, low);
+        }
+
+        private static long fmix(long k) {
+            k ^= k >>> 33;
+            k *= 0xff51afd7ed558ccdL;
+            k ^= k >>> 33;
+            k *= 0xc4ceb9fe1a85ec53L;
+            k ^= k >>> 33;
+            return k;
+        }
+    }
+}
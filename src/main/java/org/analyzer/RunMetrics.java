@@ -0,0 +1,481 @@
+package org.analyzer;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Instrumentation of one analysis run of a FastaHandler. The work of every stage is recorded as tasks: a read call of
+ * the parser, the parsing of a file, a calculation task of the scheduler or the writing of the output file. For every
+ * task the wall clock time, the cpu time and the allocated bytes of the thread that ran it are measured, plus the
+ * bytes and records it handled. Time a stage spent waiting for another one, like the writer waiting for calculations
+ * or the streaming parser waiting for free slots, is recorded as queue wait.
+ * Every task is also committed as a JFR event and every stage as a summary event at the end of the run, so a
+ * recording (java -XX:StartFlightRecording ...) shows the stages next to the GC and I/O events of the JVM. After the
+ * run the numbers are available as a JSON summary.
+ */
+final class RunMetrics {
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final com.sun.management.ThreadMXBean HOTSPOT_THREADS =
+            (THREADS instanceof com.sun.management.ThreadMXBean hotspot && hotspot.isThreadAllocatedMemorySupported()) ? hotspot : null;
+    private static final boolean CPU_TIME = THREADS.isCurrentThreadCpuTimeSupported();
+
+    /**
+     * Stages of an analysis run
+     */
+    enum Stage {
+        /**
+         * reading and inflating the input bytes
+         */
+        READ,
+        /**
+         * scanning and validating the input bytes into entries
+         */
+        PARSE,
+        /**
+         * calculations of the entries on the worker pool
+         */
+        COMPUTE,
+        /**
+         * formatting and writing the output file
+         */
+        WRITE
+    }
+
+    private final String filename;
+    private final SequenceType seqType;
+    private final int numberThreads;
+    private final long startTime = System.nanoTime();
+    private volatile long finishTime;
+    private final Map<Stage, StageMetrics> stages = new EnumMap<>(Stage.class);
+    private final LongAdder cacheLookups = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+
+    /**
+     * @param filename      name of the analyzed file
+     * @param seqType       sequence type of the file
+     * @param numberThreads number of worker threads of the run
+     */
+    RunMetrics(String filename, SequenceType seqType, int numberThreads) {
+        this.filename = filename;
+        this.seqType = seqType;
+        this.numberThreads = numberThreads;
+        for (Stage stage : Stage.values()) {
+            this.stages.put(stage, new StageMetrics(stage));
+        }
+    }
+
+    StageMetrics stage(Stage stage) {
+        return this.stages.get(stage);
+    }
+
+    /**
+     * @param hit true if the results of the entry were restored from the result cache
+     */
+    void countCacheLookup(boolean hit) {
+        this.cacheLookups.increment();
+        if (hit) {
+            this.cacheHits.increment();
+        }
+    }
+
+    long getCacheLookups() {
+        return this.cacheLookups.sum();
+    }
+
+    long getCacheHits() {
+        return this.cacheHits.sum();
+    }
+
+    /**
+     * @return hit rate of the result cache in this run
+     */
+    String cacheReport() {
+        long lookups = this.getCacheLookups();
+        double hitRate = (lookups > 0) ? this.getCacheHits() * 100.0 / lookups : 0;
+        return "-> Result cache: " + this.getCacheHits() + " of " + lookups + " entries of " + this.filename + " restored (hit rate: " + String.format("%.1f", hitRate) + " %)";
+    }
+
+    /**
+     * Snapshot of the clock, the cpu time and the allocated bytes of the current thread at the start of a task.
+     * Finished by StageMetrics.record on the same thread.
+     */
+    static final class Probe {
+        private final long startNanos = System.nanoTime();
+        private final long cpuNanos = threadCpuNanos();
+        private final long allocatedBytes = threadAllocatedBytes();
+        private final StageTaskEvent event = new StageTaskEvent();
+        // stage of nested tasks and its totals at the start, the nested tasks aren't counted twice
+        private final StageMetrics nested;
+        private final long nestedBusyNanos;
+        private final long nestedCpuNanos;
+        private final long nestedAllocatedBytes;
+
+        private Probe(StageMetrics nested) {
+            this.nested = nested;
+            this.nestedBusyNanos = (nested != null) ? nested.getBusyNanos() : 0;
+            this.nestedCpuNanos = (nested != null) ? nested.getCpuNanos() : 0;
+            this.nestedAllocatedBytes = (nested != null) ? nested.getAllocatedBytes() : 0;
+            this.event.begin();
+        }
+    }
+
+    /**
+     * @return probe for a task that starts now on the current thread
+     */
+    static Probe probe() {
+        return new Probe(null);
+    }
+
+    /**
+     * @param nested stage of tasks that run nested inside this task on the same thread, like the reads inside the
+     *               parsing. Their time and allocations are only counted for their own stage
+     * @return probe for a task that starts now on the current thread
+     */
+    static Probe probe(StageMetrics nested) {
+        return new Probe(nested);
+    }
+
+    private static long threadCpuNanos() {
+        return CPU_TIME ? THREADS.getCurrentThreadCpuTime() : 0;
+    }
+
+    private static long threadAllocatedBytes() {
+        return (HOTSPOT_THREADS != null) ? HOTSPOT_THREADS.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+    }
+
+    /**
+     * Counters of one stage, updated by all threads that work on the stage.
+     */
+    final class StageMetrics {
+        private final Stage stage;
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder records = new LongAdder();
+        private final LongAdder busyNanos = new LongAdder();
+        private final LongAdder cpuNanos = new LongAdder();
+        private final LongAdder queueWaitNanos = new LongAdder();
+        private final LongAdder allocatedBytes = new LongAdder();
+        private final AtomicLong firstStart = new AtomicLong(Long.MAX_VALUE);
+        private final AtomicLong lastEnd = new AtomicLong(Long.MIN_VALUE);
+        private final Map<String, LongAdder> tasksPerThread = new ConcurrentHashMap<>();
+
+        private StageMetrics(Stage stage) {
+            this.stage = stage;
+        }
+
+        /**
+         * Records a task that was started with the probe on the current thread and is done now.
+         *
+         * @param probe   probe taken at the start of the task
+         * @param bytes   bytes the task handled
+         * @param records records the task handled
+         */
+        void record(Probe probe, long bytes, long records) {
+            this.record(probe, bytes, records, 0);
+        }
+
+        /**
+         * Same as record above, but time the task was blocked on another stage is counted as queue wait instead of
+         * busy time.
+         *
+         * @param waitNanos wall clock time the task was blocked on another stage
+         */
+        void record(Probe probe, long bytes, long records, long waitNanos) {
+            long endNanos = System.nanoTime();
+            long excludedNanos = 0;
+            long excludedCpu = 0;
+            long excludedAllocation = 0;
+            if (probe.nested != null) {
+                excludedNanos = probe.nested.getBusyNanos() - probe.nestedBusyNanos;
+                excludedCpu = probe.nested.getCpuNanos() - probe.nestedCpuNanos;
+                excludedAllocation = probe.nested.getAllocatedBytes() - probe.nestedAllocatedBytes;
+            }
+            long cpu = Math.max(0, threadCpuNanos() - probe.cpuNanos - excludedCpu);
+            long allocated = Math.max(0, threadAllocatedBytes() - probe.allocatedBytes - excludedAllocation);
+            long busy = Math.max(0, endNanos - probe.startNanos - waitNanos - excludedNanos);
+
+            this.bytes.add(bytes);
+            this.records.add(records);
+            this.busyNanos.add(busy);
+            this.cpuNanos.add(cpu);
+            this.allocatedBytes.add(allocated);
+            this.queueWaitNanos.add(waitNanos);
+            this.firstStart.accumulateAndGet(probe.startNanos, Math::min);
+            this.lastEnd.accumulateAndGet(endNanos, Math::max);
+            this.tasksPerThread.computeIfAbsent(threadName(), name -> new LongAdder()).increment();
+
+            StageTaskEvent event = probe.event;
+            event.end();
+            if (event.shouldCommit()) {
+                event.file = RunMetrics.this.filename;
+                event.stage = this.stage.name();
+                event.bytes = bytes;
+                event.records = records;
+                event.cpuTime = cpu;
+                event.queueWait = waitNanos;
+                event.allocated = allocated;
+                event.commit();
+            }
+        }
+
+        /**
+         * @param nanos time the stage waited for another stage outside of a recorded task
+         */
+        void addQueueWait(long nanos) {
+            this.queueWaitNanos.add(nanos);
+        }
+
+        /**
+         * Wraps a task for a worker pool. The time from the submission until the task starts is its queue wait.
+         *
+         * @param task    the task
+         * @param bytes   bytes the task handles
+         * @param records records the task handles
+         * @return the measured task
+         */
+        Runnable measured(Runnable task, long bytes, long records) {
+            long submitNanos = System.nanoTime();
+            return () -> {
+                this.queueWaitNanos.add(System.nanoTime() - submitNanos);
+                Probe probe = probe();
+                try {
+                    task.run();
+                } finally {
+                    this.record(probe, bytes, records);
+                }
+            };
+        }
+
+        long getBytes() {
+            return this.bytes.sum();
+        }
+
+        long getRecords() {
+            return this.records.sum();
+        }
+
+        long getBusyNanos() {
+            return this.busyNanos.sum();
+        }
+
+        long getCpuNanos() {
+            return this.cpuNanos.sum();
+        }
+
+        long getQueueWaitNanos() {
+            return this.queueWaitNanos.sum();
+        }
+
+        long getAllocatedBytes() {
+            return this.allocatedBytes.sum();
+        }
+
+        /**
+         * @return wall clock time from the start of the first until the end of the last task of the stage
+         */
+        long getSpanNanos() {
+            long end = this.lastEnd.get();
+            return (end == Long.MIN_VALUE) ? 0 : end - this.firstStart.get();
+        }
+
+        Map<String, Long> getTasksPerThread() {
+            Map<String, Long> tasks = new TreeMap<>();
+            this.tasksPerThread.forEach((thread, count) -> tasks.put(thread, count.sum()));
+            return tasks;
+        }
+
+        private void commitSummary() {
+            StageSummaryEvent event = new StageSummaryEvent();
+            if (event.shouldCommit()) {
+                event.file = RunMetrics.this.filename;
+                event.stage = this.stage.name();
+                event.bytes = this.getBytes();
+                event.records = this.getRecords();
+                event.busyTime = this.getBusyNanos();
+                event.spanTime = this.getSpanNanos();
+                event.cpuTime = this.getCpuNanos();
+                event.queueWait = this.getQueueWaitNanos();
+                event.allocated = this.getAllocatedBytes();
+                event.threads = this.tasksPerThread.size();
+                event.commit();
+            }
+        }
+
+        private String toJson() {
+            double busySeconds = this.getBusyNanos() / 1_000_000_000.0;
+            StringBuilder json = new StringBuilder();
+            json.append("{\"bytes\": ").append(this.getBytes())
+                    .append(", \"records\": ").append(this.getRecords())
+                    .append(", \"wallSeconds\": ").append(number(busySeconds))
+                    .append(", \"spanSeconds\": ").append(number(this.getSpanNanos() / 1_000_000_000.0))
+                    .append(", \"cpuSeconds\": ").append(number(this.getCpuNanos() / 1_000_000_000.0))
+                    .append(", \"queueWaitSeconds\": ").append(number(this.getQueueWaitNanos() / 1_000_000_000.0))
+                    .append(", \"throughputMBs\": ").append(number((busySeconds > 0) ? this.getBytes() / 1048576.0 / busySeconds : 0))
+                    .append(", \"allocatedBytes\": ").append(this.getAllocatedBytes())
+                    .append(", \"allocationRateMBs\": ").append(number((busySeconds > 0) ? this.getAllocatedBytes() / 1048576.0 / busySeconds : 0))
+                    .append(", \"tasksPerThread\": {");
+            String separator = "";
+            for (Map.Entry<String, Long> tasks : this.getTasksPerThread().entrySet()) {
+                json.append(separator).append(string(tasks.getKey())).append(": ").append(tasks.getValue());
+                separator = ", ";
+            }
+            return json.append("}}").toString();
+        }
+    }
+
+    /**
+     * Ends the run and commits the summary events of all stages.
+     */
+    void finish() {
+        this.finishTime = System.nanoTime();
+        for (StageMetrics stage : this.stages.values()) {
+            stage.commitSummary();
+        }
+    }
+
+    /**
+     * @return the metrics of the run as JSON object
+     */
+    String toJson() {
+        long end = (this.finishTime != 0) ? this.finishTime : System.nanoTime();
+        StringBuilder json = new StringBuilder();
+        json.append("{\n  \"file\": ").append(string(this.filename))
+                .append(",\n  \"sequenceType\": ").append(string(String.valueOf(this.seqType)))
+                .append(",\n  \"threads\": ").append(this.numberThreads)
+                .append(",\n  \"wallSeconds\": ").append(number((end - this.startTime) / 1_000_000_000.0))
+                .append(",\n  \"cache\": {\"lookups\": ").append(this.getCacheLookups())
+                .append(", \"hits\": ").append(this.getCacheHits())
+                .append(", \"hitRate\": ").append(number((this.getCacheLookups() > 0) ? (double) this.getCacheHits() / this.getCacheLookups() : 0)).append('}')
+                .append(",\n  \"stages\": {");
+        String separator = "\n";
+        for (StageMetrics stage : this.stages.values()) {
+            json.append(separator).append("    ").append(string(stage.stage.name().toLowerCase())).append(": ").append(stage.toJson());
+            separator = ",\n";
+        }
+        return json.append("\n  }\n}").toString();
+    }
+
+    /**
+     * @param runs metrics of several runs, like the files of a batch
+     * @return JSON array of the runs
+     */
+    static String toJson(List<RunMetrics> runs) {
+        StringBuilder json = new StringBuilder("[");
+        String separator = "\n";
+        for (RunMetrics run : runs) {
+            json.append(separator).append(run.toJson());
+            separator = ",\n";
+        }
+        return json.append("\n]").toString();
+    }
+
+    private static String threadName() {
+        String name = Thread.currentThread().getName();
+        // virtual threads have no name by default
+        return name.isEmpty() ? "thread-" + Thread.currentThread().getId() : name;
+    }
+
+    private static String number(double value) {
+        return String.format(Locale.ROOT, "%.6f", value);
+    }
+
+    private static String string(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder json = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\t' -> json.append("\\t");
+                default -> {
+                    if (c < ' ') {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+                }
+            }
+        }
+        return json.append('"').toString();
+    }
+
+    @Name("org.analyzer.StageTask")
+    @Label("Stage Task")
+    @Category({"Fasta Analyzer"})
+    @Description("One task of a stage: a read call, the parsing of a file, a calculation task or the writing of a file")
+    @StackTrace(false)
+    static class StageTaskEvent extends Event {
+        @Label("File")
+        String file;
+        @Label("Stage")
+        String stage;
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+        @Label("Records")
+        long records;
+        @Label("CPU Time")
+        @Timespan
+        long cpuTime;
+        @Label("Queue Wait")
+        @Timespan
+        long queueWait;
+        @Label("Allocated")
+        @DataAmount
+        long allocated;
+    }
+
+    @Name("org.analyzer.StageSummary")
+    @Label("Stage Summary")
+    @Category({"Fasta Analyzer"})
+    @Description("Totals of one stage of an analysis run")
+    @StackTrace(false)
+    static class StageSummaryEvent extends Event {
+        @Label("File")
+        String file;
+        @Label("Stage")
+        String stage;
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+        @Label("Records")
+        long records;
+        @Label("Busy Time")
+        @Timespan
+        long busyTime;
+        @Label("Span")
+        @Timespan
+        long spanTime;
+        @Label("CPU Time")
+        @Timespan
+        long cpuTime;
+        @Label("Queue Wait")
+        @Timespan
+        long queueWait;
+        @Label("Allocated")
+        @DataAmount
+        long allocated;
+        @Label("Threads")
+        int threads;
+    }
+}
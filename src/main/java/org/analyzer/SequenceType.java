@@ -11,24 +11,68 @@ public enum SequenceType {
     /**
      * Specifies Enum Type constants and calculations for DNA
      */
-    DNA(createDNAMap()),
+    DNA(createDNAMap(), "ACGT"),
     /**
      * Specifies Enum Type constants and calculations for RNA
      */
-    RNA(createRNAMap()),
+    RNA(createRNAMap(), "ACGU"),
     /**
      * Specifies Enum Type constants and calculations for Peptides
      */
-    PEPTIDE(createPeptideMap()),
+    PEPTIDE(createPeptideMap(), "ACDEFGHIKLMNPQRSTVWY"),
     /**
      * Specifies Enum Type constants and calculations for Ambiguous sequences
      */
-    AMBIGUOUS(createAmbiguousMap());
+    AMBIGUOUS(createAmbiguousMap(), "ACDEFGHIKLMNPQRSTVWYU");
 
-    private final Map<Character, Double> molecularWeights;
+    private static final char[] N_TERM_AMINO_ACIDS = {'+', 'R', 'K', 'H'};
+    private static final char[] C_TERM_AMINO_ACIDS = {'-', 'D', 'E', 'C', 'Y'};
 
-    SequenceType(Map<Character, Double> molecularWeights) {
-        this.molecularWeights = molecularWeights;
+    static final double DEFAULT_PI_TOLERANCE = 0.0001;
+    private static final double MIN_PH = 0.0;
+    private static final double MAX_PH = 14.0;
+    private static final int MAX_BISECTION_STEPS = 64;
+
+    // molecular weights (or pKa values for peptides) as array indexed by the char
+    private final double[] weightTable = new double[FastaEntry.COMPOSITION_SIZE];
+    // 10^pKa for every char, precomputed for the netCharge
+    private final double[] pKaPowers = new double[FastaEntry.COMPOSITION_SIZE];
+    // uppercase letters that are allowed inside a sequence of this type
+    private final String alphabet;
+    // every possible byte mapped to its uppercase letter, or to 0 if it isn't part of the alphabet
+    private final byte[] validationTable = new byte[256];
+
+    SequenceType(Map<Character, Double> molecularWeights, String alphabet) {
+        this.alphabet = alphabet;
+        for (char letter : alphabet.toCharArray()) {
+            this.validationTable[letter] = (byte) letter;
+            this.validationTable[Character.toLowerCase(letter)] = (byte) letter;
+        }
+        molecularWeights.forEach((c, weight) -> {
+            this.weightTable[c] = weight;
+            this.pKaPowers[c] = Math.pow(10, weight);
+        });
+    }
+
+    /**
+     * @return the uppercase letters that are allowed inside a sequence of this type
+     */
+    String getAlphabet() {
+        return this.alphabet;
+    }
+
+    /**
+     * Validates and uppercases a sequence byte with one lookup in the precomputed alphabet table.
+     *
+     * @param b raw byte of the sequence
+     * @return the uppercase letter or 0 if the byte isn't allowed for this SequenceType
+     */
+    byte normalize(byte b) {
+        return this.validationTable[b & 0xFF];
+    }
+
+    boolean isValid(byte b) {
+        return this.validationTable[b & 0xFF] != 0;
     }
 
     private static Map<Character, Double> createDNAMap() {
@@ -75,9 +119,20 @@ public enum SequenceType {
      * @return value of the calculation
      */
     double gcEnrichment(int sequenceLength, Map<Character, Double> alphabetCount) {
+        return this.gcEnrichment(sequenceLength, FastaEntry.SequenceHandler.toComposition(alphabetCount));
+    }
+
+    /**
+     * Calculation for gC enrichment on a composition array. (g + c) / sequenceLength
+     *
+     * @param sequenceLength length of the inputSequence
+     * @param composition    Count of each char occurrence in the inputSequence, indexed by the char
+     * @return value of the calculation
+     */
+    double gcEnrichment(int sequenceLength, long[] composition) {
         switch (this) {
             case DNA, RNA -> {
-                return (((alphabetCount.get('G') != null) ? alphabetCount.get('G') : 0.0) + ((alphabetCount.get('C') != null) ? alphabetCount.get('C') : 0.0)) / sequenceLength;
+                return ((double) composition['G'] + (double) composition['C']) / sequenceLength;
             }
             default -> {
                 return 0.0;
@@ -94,13 +149,22 @@ public enum SequenceType {
      * @return value of the calculation
      */
     double molecularWeight(Map<Character, Double> alphabetCount) {
+        return this.molecularWeight(FastaEntry.SequenceHandler.toComposition(alphabetCount));
+    }
+
+    /**
+     * Calculation for molecular Weight on a composition array.
+     *
+     * @param composition Count of each char occurrence in the inputSequence, indexed by the char
+     * @return value of the calculation
+     */
+    double molecularWeight(long[] composition) {
         switch (this) {
             case DNA, RNA -> {
                 double seqModifier = (this == SequenceType.DNA) ? 61.96 : 159.00;
                 char utPlaceholder = (this == SequenceType.DNA) ? 'T' : 'U';
-                double utCount = (alphabetCount.get(utPlaceholder) != null) ? alphabetCount.get(utPlaceholder) : 0.0;
 
-                return ((alphabetCount.get('A') != null) ? alphabetCount.get('A') : 0.0) * this.molecularWeights.get('A') + ((alphabetCount.get('C') != null) ? alphabetCount.get('C') : 0.0) * this.molecularWeights.get('C') + ((alphabetCount.get('G') != null) ? alphabetCount.get('G') : 0.0) * this.molecularWeights.get('G') + utCount * this.molecularWeights.get(utPlaceholder) - seqModifier;
+                return composition['A'] * this.weightTable['A'] + composition['C'] * this.weightTable['C'] + composition['G'] * this.weightTable['G'] + composition[utPlaceholder] * this.weightTable[utPlaceholder] - seqModifier;
             }
             default -> {
                 return 0.0;
@@ -121,13 +185,24 @@ public enum SequenceType {
      * @return the meting Point of the Sequence
      */
     double meltingPoint(int seqLength, Map<Character, Double> alphabetCount) {
+        return this.meltingPoint(seqLength, FastaEntry.SequenceHandler.toComposition(alphabetCount));
+    }
+
+    /**
+     * Calculation for the melting point of dna sequences on a composition array.
+     *
+     * @param seqLength   length of the inputSequence
+     * @param composition Count of each char occurrence in the inputSequence, indexed by the char
+     * @return the meting Point of the Sequence
+     */
+    double meltingPoint(int seqLength, long[] composition) {
 
         if (this == SequenceType.DNA) {
             double meltingPoint;
             if (seqLength < 14) {
-                meltingPoint = (((alphabetCount.get('A') != null) ? alphabetCount.get('A') : 0.0) + ((alphabetCount.get('T') != null) ? alphabetCount.get('T') : 0.0)) * 2 + (((alphabetCount.get('G') != null) ? alphabetCount.get('G') : 0.0) + ((alphabetCount.get('C') != null) ? alphabetCount.get('C') : 0.0)) * 4;
+                meltingPoint = ((double) composition['A'] + (double) composition['T']) * 2 + ((double) composition['G'] + (double) composition['C']) * 4;
             } else {
-                meltingPoint = 64.9 + ((41 * (((alphabetCount.get('G') != null) ? alphabetCount.get('G') : 0.0) + ((alphabetCount.get('C') != null) ? alphabetCount.get('C') : 0.0) - 16.4)) / seqLength);
+                meltingPoint = 64.9 + ((41 * ((double) composition['G'] + (double) composition['C'] - 16.4)) / seqLength);
             }
 
             return meltingPoint;
@@ -135,12 +210,12 @@ public enum SequenceType {
         return 0.0;
     }
 
-    private double netChargeFractionNTerm(Character aminoAcid, Map<Character, Double> peptideCount, Double pH) {
-        return ((peptideCount.get(aminoAcid) != null) ? peptideCount.get(aminoAcid) : 0.0) * ((Math.pow(10, this.molecularWeights.get(aminoAcid))) / (Math.pow(10, pH) + Math.pow(10, this.molecularWeights.get(aminoAcid))));
+    private double netChargeFractionNTerm(char aminoAcid, double count, double pHPower) {
+        return count * (this.pKaPowers[aminoAcid] / (pHPower + this.pKaPowers[aminoAcid]));
     }
 
-    private double netChargeFractionCTerm(Character aminoAcid, Map<Character, Double> peptideCount, Double pH) {
-        return ((peptideCount.get(aminoAcid) != null) ? peptideCount.get(aminoAcid) : 0.0) * ((Math.pow(10, pH)) / (Math.pow(10, pH) + Math.pow(10, this.molecularWeights.get(aminoAcid))));
+    private double netChargeFractionCTerm(char aminoAcid, double count, double pHPower) {
+        return count * (pHPower / (pHPower + this.pKaPowers[aminoAcid]));
     }
 
     /**
@@ -151,29 +226,65 @@ public enum SequenceType {
      * @return the netCharge value
      */
     double netCharge(Map<Character, Double> peptideCount, Double pH) {
+        return this.netCharge(FastaEntry.SequenceHandler.toComposition(peptideCount), (double) pH);
+    }
+
+    /**
+     * Calculates the netCharge for a Peptide Sequence on a composition array.
+     *
+     * @param composition Count of each occurring Peptide in the Sequence, indexed by the char
+     * @param pH          pH to calculate netCharge. Usually 7.
+     * @return the netCharge value
+     */
+    double netCharge(long[] composition, double pH) {
 
         if (this == SequenceType.PEPTIDE) {
-            Character[] nTermAminoAcids = {'+', 'R', 'K', 'H'};
-            Character[] cTermAminoAcids = {'-', 'D', 'E', 'C', 'Y'};
-            Map<Character, Double> termini = new HashMap<>();
-            termini.put('+', 1.0);
-            termini.put('-', 1.0);
+            return this.netChargeAtPower(composition, Math.pow(10, pH));
+        } else {
+            return 0.0;
+        }
+    }
 
-            double nTermSum = this.netChargeFractionNTerm('+', termini, pH);
+    /**
+     * NetCharge for a given 10^pH. The powers of the pKa values are precomputed, so there is only one Math.pow call
+     * per pH step and not one per residue.
+     */
+    private double netChargeAtPower(long[] composition, double pHPower) {
+        // the termini are counted once for every peptide chain
+        double nTermSum = this.netChargeFractionNTerm('+', 1.0, pHPower);
 
-            for (Character amino : nTermAminoAcids) {
-                nTermSum += this.netChargeFractionNTerm(amino, peptideCount, pH);
-            }
+        for (char amino : N_TERM_AMINO_ACIDS) {
+            nTermSum += this.netChargeFractionNTerm(amino, composition[amino], pHPower);
+        }
 
-            double cTermSum = this.netChargeFractionCTerm('-', termini, pH);
+        double cTermSum = this.netChargeFractionCTerm('-', 1.0, pHPower);
 
-            for (Character amino : cTermAminoAcids) {
-                cTermSum += this.netChargeFractionCTerm(amino, peptideCount, pH);
+        for (char amino : C_TERM_AMINO_ACIDS) {
+            cTermSum += this.netChargeFractionCTerm(amino, composition[amino], pHPower);
+        }
+        return nTermSum - cTermSum;
+    }
+
+    /**
+     * Batch netCharge calculation over a pH grid for many peptides. 10^pH is computed once per grid point and shared
+     * by all peptides.
+     *
+     * @param compositions Count of each occurring Peptide for every peptide, indexed by the char
+     * @param pHGrid       pH values of the curve
+     * @return netCharge curves, one row per peptide and one column per pH of the grid
+     */
+    double[][] netChargeCurves(long[][] compositions, double[] pHGrid) {
+        double[][] curves = new double[compositions.length][pHGrid.length];
+        if (this != SequenceType.PEPTIDE) {
+            return curves;
+        }
+        for (int step = 0; step < pHGrid.length; step++) {
+            double pHPower = Math.pow(10, pHGrid[step]);
+            for (int peptide = 0; peptide < compositions.length; peptide++) {
+                curves[peptide][step] = this.netChargeAtPower(compositions[peptide], pHPower);
             }
-            return nTermSum - cTermSum;
-        } else {
-            return 0.0;
         }
+        return curves;
     }
 
     /**
@@ -181,26 +292,52 @@ public enum SequenceType {
      *
      * @param seqType      Sequence Type enum for the Sequence.
      * @param peptideCount Count of each occurring Peptide in the Sequence
-     * @param pH           Initial pH for the algorithm. Usually start with 7
+     * @param pH           not needed by the bisection, which always brackets pH 0 to 14. Kept for compatibility
      * @return the value of the pH at which the netCharge = 0
      */
     double isoelectricPoint(SequenceType seqType, Map<Character, Double> peptideCount, double pH) {
-        double pHadjusted = pH;
+        return this.isoelectricPoint(seqType, FastaEntry.SequenceHandler.toComposition(peptideCount), pH);
+    }
 
+    /**
+     * Calculation for the Iso-electric Point on a composition array with the default tolerance. Only for Peptide
+     * Sequences.
+     *
+     * @param seqType     Sequence Type enum for the Sequence.
+     * @param composition Count of each occurring Peptide in the Sequence, indexed by the char
+     * @param pH          not needed by the bisection, which always brackets pH 0 to 14. Kept for compatibility
+     * @return the value of the pH at which the netCharge = 0
+     */
+    double isoelectricPoint(SequenceType seqType, long[] composition, double pH) {
         if (Objects.requireNonNull(seqType) == SequenceType.PEPTIDE) {
-            final double tolerance = 0.1;
-
-            double tmpNetCharge = this.netCharge(peptideCount, pHadjusted);
-            if (Math.abs(tmpNetCharge) <= tolerance) {
-                return pHadjusted;
-            } else if (tmpNetCharge > 0) {
-                pHadjusted = this.isoelectricPoint(this, peptideCount, pHadjusted + (pHadjusted / 2));
-            } else if (tmpNetCharge < 0) {
-                pHadjusted = this.isoelectricPoint(this, peptideCount, pHadjusted - (pHadjusted / 2));
+            return this.isoelectricPoint(composition, DEFAULT_PI_TOLERANCE);
+        }
+        return 0.0;
+    }
+
+    /**
+     * Calculation for the Iso-electric Point. The netCharge falls strictly with the pH, so the root is searched by
+     * bisection over pH 0 to 14 until the interval is smaller than the tolerance. The number of steps is bounded by
+     * log2(14 / tolerance).
+     *
+     * @param composition Count of each occurring Peptide in the Sequence, indexed by the char
+     * @param tolerance   maximal distance of the result to the real iso-electric point in pH
+     * @return the value of the pH at which the netCharge = 0
+     */
+    double isoelectricPoint(long[] composition, double tolerance) {
+        if (this != SequenceType.PEPTIDE) {
+            return 0.0;
+        }
+        double lowPH = MIN_PH;
+        double highPH = MAX_PH;
+        for (int step = 0; step < MAX_BISECTION_STEPS && (highPH - lowPH) / 2 > tolerance; step++) {
+            double midPH = (lowPH + highPH) / 2;
+            if (this.netChargeAtPower(composition, Math.pow(10, midPH)) > 0) {
+                lowPH = midPH;
+            } else {
+                highPH = midPH;
             }
-        } else {
-            pHadjusted = 0.0;
         }
-        return pHadjusted;
+        return (lowPH + highPH) / 2;
     }
 }
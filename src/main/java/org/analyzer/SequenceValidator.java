@@ -0,0 +1,41 @@
+package org.analyzer;
+
+/**
+ * Validates and uppercases runs of sequence bytes for one SequenceType. The default implementation looks up every
+ * byte inside the alphabet table of the SequenceType. Builds with the maven profile "vector" additionally contain the
+ * VectorSequenceValidator, which checks a whole vector of bytes per instruction with the incubating Vector API. It's
+ * used whenever it can be loaded, so the jdk.incubator.vector module has to be added at runtime.
+ */
+interface SequenceValidator {
+    String VECTOR_VALIDATOR_CLASS = "org.analyzer.VectorSequenceValidator";
+    // -Dfasta.vector=false forces the table lookup, e.g. for benchmarks of both implementations
+    String VECTOR_PROPERTY = "fasta.vector";
+
+    /**
+     * Copies the bytes src[from, to) uppercased into the destination array and stops at the first byte that isn't
+     * part of the alphabet. Source and destination may be the same array at the same offset.
+     *
+     * @param src       raw sequence bytes
+     * @param from      first index to check
+     * @param to        index after the last one to check
+     * @param dst       destination array
+     * @param dstOffset first index to write inside the destination array
+     * @return -1 if all bytes are valid, otherwise the index of the first invalid byte inside src
+     */
+    int copyValidated(byte[] src, int from, int to, byte[] dst, int dstOffset);
+
+    /**
+     * @param seqType SequenceType Enum the bytes get validated against
+     * @return the vectorized validator if it's available, the table based one otherwise
+     */
+    static SequenceValidator forType(SequenceType seqType) {
+        if (Boolean.parseBoolean(System.getProperty(VECTOR_PROPERTY, "true"))) {
+            try {
+                return (SequenceValidator) Class.forName(VECTOR_VALIDATOR_CLASS).getDeclaredConstructor(SequenceType.class).newInstance(seqType);
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // not compiled in or jdk.incubator.vector isn't available at runtime
+            }
+        }
+        return new TableSequenceValidator(seqType);
+    }
+}
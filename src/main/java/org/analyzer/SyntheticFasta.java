@@ -0,0 +1,223 @@
+package org.analyzer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+
+/**
+ * Seeded generator for synthetic fasta files. The same settings and seed always give the same file, so large inputs
+ * can be recreated anywhere instead of being checked in. The file is written in one pass through a fixed buffer, the
+ * memory use doesn't depend on the file size, so files of tens of GB can be generated.
+ * The parsers want more than 4 distinct amino acids on every peptide line, so generated peptide lines always have at
+ * least 5 distinct letters, and record lengths that would end with a shorter last line are moved to the next length
+ * that doesn't.
+ */
+final class SyntheticFasta {
+    private static final int BUFFER_SIZE = 1 << 22;
+    // fewest distinct letters of a peptide line that pass the parsers
+    private static final int MIN_PEPTIDE_LETTERS = 5;
+
+    /**
+     * Distribution of the record lengths between the minimal and the maximal length
+     */
+    enum LengthDistribution {
+        /**
+         * every record has the minimal length
+         */
+        FIXED,
+        /**
+         * every length between minimal and maximal length is equally likely
+         */
+        UNIFORM,
+        /**
+         * log-normal around the geometric mean of minimal and maximal length, like read or protein lengths. The
+         * range covers +-3 standard deviations, the rare lengths outside are clamped
+         */
+        LOG_NORMAL
+    }
+
+    private final SequenceType seqType;
+    private final byte[] alphabet;
+    private long records = 1000;
+    private int minLength = 1000;
+    private int maxLength = 1000;
+    private LengthDistribution distribution = LengthDistribution.FIXED;
+    private int lineWidth = 70;
+    private long seed = 42;
+
+    /**
+     * @param seqType type of the generated sequences, the letters are drawn uniformly from its alphabet
+     */
+    SyntheticFasta(SequenceType seqType) {
+        this.seqType = seqType;
+        this.alphabet = seqType.getAlphabet().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    void setRecords(long records) {
+        this.records = records;
+    }
+
+    /**
+     * @param minLength    minimal record length, at least 1
+     * @param maxLength    maximal record length, at least minLength
+     * @param distribution distribution of the lengths in between
+     */
+    void setLengths(int minLength, int maxLength, LengthDistribution distribution) {
+        if (minLength < 1 || maxLength < minLength) {
+            throw new IllegalArgumentException("Invalid record lengths: " + minLength + " to " + maxLength);
+        }
+        this.minLength = minLength;
+        this.maxLength = maxLength;
+        this.distribution = distribution;
+    }
+
+    void setLineWidth(int lineWidth) {
+        if (lineWidth < 1) {
+            throw new IllegalArgumentException("Invalid line width: " + lineWidth);
+        }
+        this.lineWidth = lineWidth;
+    }
+
+    void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    SequenceType getSequenceType() {
+        return this.seqType;
+    }
+
+    /**
+     * @return the mean record length of the distribution, to size the record count for a target file size
+     */
+    double meanLength() {
+        return switch (this.distribution) {
+            case FIXED -> this.minLength;
+            case UNIFORM -> (this.minLength + this.maxLength) / 2.0;
+            case LOG_NORMAL -> {
+                double sigma = Math.log((double) this.maxLength / this.minLength) / 6;
+                yield Math.sqrt((double) this.minLength * this.maxLength) * Math.exp(sigma * sigma / 2);
+            }
+        };
+    }
+
+    /**
+     * Creates or truncates the file and writes all records.
+     *
+     * @param file path of the fasta file
+     * @return number of written bytes
+     */
+    long write(Path file) throws IOException {
+        if (this.seqType == SequenceType.PEPTIDE && (this.lineWidth < MIN_PEPTIDE_LETTERS || this.minLength < MIN_PEPTIDE_LETTERS)) {
+            throw new IllegalArgumentException("Peptide lines and records need at least " + MIN_PEPTIDE_LETTERS + " letters");
+        }
+        SplittableRandom random = new SplittableRandom(this.seed);
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        byte[] line = new byte[this.lineWidth + 1];
+        long written = 0;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (long record = 0; record < this.records; record++) {
+                int length = this.peptideLength(this.nextLength(random));
+                byte[] header = (">synthetic_" + record + " type=" + this.seqType.name().toLowerCase() + " length=" + length + "\n").getBytes(StandardCharsets.US_ASCII);
+                written += put(channel, buffer, header, header.length);
+                for (int lineStart = 0; lineStart < length; lineStart += this.lineWidth) {
+                    int lineLength = Math.min(this.lineWidth, length - lineStart);
+                    do {
+                        this.fillSequence(random, line, lineLength);
+                    } while (this.seqType == SequenceType.PEPTIDE && distinctLetters(line, lineLength) < MIN_PEPTIDE_LETTERS);
+                    line[lineLength] = '\n';
+                    written += put(channel, buffer, line, lineLength + 1);
+                }
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        return written;
+    }
+
+    private int nextLength(SplittableRandom random) {
+        return switch (this.distribution) {
+            case FIXED -> this.minLength;
+            case UNIFORM -> this.minLength + (int) random.nextLong(this.maxLength - this.minLength + 1L);
+            case LOG_NORMAL -> {
+                double sigma = Math.log((double) this.maxLength / this.minLength) / 6;
+                double length = Math.sqrt((double) this.minLength * this.maxLength) * Math.exp(sigma * random.nextGaussian());
+                yield (int) Math.max(this.minLength, Math.min(this.maxLength, Math.round(length)));
+            }
+        };
+    }
+
+    /**
+     * Moves a peptide length whose last line would be shorter than MIN_PEPTIDE_LETTERS up to the next length with a
+     * long enough last line, or down to full lines if that's above the maximal length.
+     */
+    private int peptideLength(int length) {
+        int lastLine = length % this.lineWidth;
+        if (this.seqType != SequenceType.PEPTIDE || lastLine == 0 || lastLine >= MIN_PEPTIDE_LETTERS) {
+            return length;
+        }
+        if (length + MIN_PEPTIDE_LETTERS - lastLine <= this.maxLength) {
+            return length + MIN_PEPTIDE_LETTERS - lastLine;
+        }
+        if (length - lastLine >= this.minLength) {
+            return length - lastLine;
+        }
+        throw new IllegalArgumentException("No peptide length from " + this.minLength + " to " + this.maxLength + " fits line width " + this.lineWidth);
+    }
+
+    private static int distinctLetters(byte[] line, int length) {
+        long alphabetMask = 0L;
+        for (int i = 0; i < length; i++) {
+            alphabetMask |= 1L << (line[i] - 'A');
+        }
+        return Long.bitCount(alphabetMask);
+    }
+
+    /**
+     * Draws the letters from random longs: 2 bits per letter for the 4 letter alphabets of DNA/RNA, 16 bits scaled to
+     * the alphabet size otherwise.
+     */
+    private void fillSequence(SplittableRandom random, byte[] line, int length) {
+        if (this.alphabet.length == 4) {
+            for (int i = 0; i < length; i += 32) {
+                long bits = random.nextLong();
+                for (int j = i; j < Math.min(i + 32, length); j++, bits >>>= 2) {
+                    line[j] = this.alphabet[(int) (bits & 3)];
+                }
+            }
+        } else {
+            for (int i = 0; i < length; i += 4) {
+                long bits = random.nextLong();
+                for (int j = i; j < Math.min(i + 4, length); j++, bits >>>= 16) {
+                    line[j] = this.alphabet[(int) (((bits & 0xFFFF) * this.alphabet.length) >>> 16)];
+                }
+            }
+        }
+    }
+
+    private static int put(FileChannel channel, ByteBuffer buffer, byte[] bytes, int length) throws IOException {
+        if (buffer.remaining() < length) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+        if (length > buffer.capacity()) {
+            // lines wider than the buffer are written directly
+            ByteBuffer wide = ByteBuffer.wrap(bytes, 0, length);
+            while (wide.hasRemaining()) {
+                channel.write(wide);
+            }
+        } else {
+            buffer.put(bytes, 0, length);
+        }
+        return length;
+    }
+}
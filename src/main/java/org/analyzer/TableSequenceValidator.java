@@ -0,0 +1,24 @@
+package org.analyzer;
+
+/**
+ * Scalar SequenceValidator, one lookup inside the 256 entry alphabet table of the SequenceType per byte.
+ */
+final class TableSequenceValidator implements SequenceValidator {
+    private final SequenceType seqType;
+
+    TableSequenceValidator(SequenceType seqType) {
+        this.seqType = seqType;
+    }
+
+    @Override
+    public int copyValidated(byte[] src, int from, int to, byte[] dst, int dstOffset) {
+        for (int i = from, out = dstOffset; i < to; i++, out++) {
+            byte upper = this.seqType.normalize(src[i]);
+            if (upper == 0) {
+                return i;
+            }
+            dst[out] = upper;
+        }
+        return -1;
+    }
+}
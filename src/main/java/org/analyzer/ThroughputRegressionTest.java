@@ -0,0 +1,135 @@
+package org.analyzer;
+
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Throughput and memory regression suite. Runs the full FastaHandler pipeline, parsing, calculation and writing, on
+ * large synthetic files and compares the throughput in MB/s and the peak heap use with the baselines stored in
+ * TestFiles/throughput-baseline.properties. The baselines depend on the machine, so the suite only runs with
+ * -Dfasta.regression=true. Further settings:
+ * -Dfasta.regression.sizeMB     size of every generated input (default: 64), baselines are stored per size
+ * -Dfasta.regression.tolerance  allowed relative deviation from the baselines (default: 0.25)
+ * -Dfasta.regression.update     store the measured values as new baselines instead of checking them
+ */
+@EnabledIfSystemProperty(named = "fasta.regression", matches = "true")
+public class ThroughputRegressionTest {
+    private static final Path BASELINE_FILE = Path.of("TestFiles/throughput-baseline.properties");
+    private static final int SIZE_MB = Integer.getInteger("fasta.regression.sizeMB", 64);
+    private static final double TOLERANCE = Double.parseDouble(System.getProperty("fasta.regression.tolerance", "0.25"));
+    private static final boolean UPDATE = Boolean.getBoolean("fasta.regression.update");
+
+    /**
+     * One input shape of the suite
+     *
+     * @param name         key of the baselines
+     * @param seqType      sequence type of the generated file
+     * @param minLength    minimal record length
+     * @param maxLength    maximal record length
+     * @param distribution distribution of the record lengths
+     */
+    record Scenario(String name, SequenceType seqType, int minLength, int maxLength, SyntheticFasta.LengthDistribution distribution) {
+        @Override
+        public String toString() {
+            return this.name;
+        }
+    }
+
+    static Stream<Scenario> scenarios() {
+        return Stream.of(
+                new Scenario("dna-reads", SequenceType.DNA, 100, 20_000, SyntheticFasta.LengthDistribution.LOG_NORMAL),
+                new Scenario("dna-chromosomes", SequenceType.DNA, 16 << 20, 16 << 20, SyntheticFasta.LengthDistribution.FIXED),
+                new Scenario("rna-transcripts", SequenceType.RNA, 500, 5_000, SyntheticFasta.LengthDistribution.UNIFORM),
+                new Scenario("peptide-proteome", SequenceType.PEPTIDE, 50, 3_000, SyntheticFasta.LengthDistribution.LOG_NORMAL));
+    }
+
+    /**
+     * Regression test for one scenario. Fails if the throughput falls below or the peak heap use rises above the
+     * baseline by more than the tolerance. Skipped if there is no baseline for the scenario and size yet.
+     */
+    @ParameterizedTest
+    @MethodSource("scenarios")
+    void throughputAndPeakHeap(Scenario scenario) throws Exception {
+        Path directory = Files.createTempDirectory("fasta-regression");
+        try {
+            SyntheticFasta generator = new SyntheticFasta(scenario.seqType());
+            generator.setLengths(scenario.minLength(), scenario.maxLength(), scenario.distribution());
+            generator.setRecords(Math.max(1, Math.round(SIZE_MB * 1048576.0 / generator.meanLength())));
+            Path fasta = directory.resolve(scenario.name() + ".fasta");
+            double sizeMB = generator.write(fasta) / 1048576.0;
+
+            List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream().filter(pool -> pool.getType() == MemoryType.HEAP).toList();
+            System.gc();
+            heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+
+            long startTime = System.nanoTime();
+            FastaHandler handler = new FastaHandler(Runtime.getRuntime().availableProcessors());
+            handler.generateFastaHandlerObject(fasta.toString(), scenario.seqType().name(), false);
+            handler.processFastaEntries(directory + "/", false);
+            double seconds = (System.nanoTime() - startTime) / 1_000_000_000.0;
+
+            double throughput = sizeMB / seconds;
+            double peakHeapMB = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum() / 1048576.0;
+            System.out.println("-> " + scenario.name() + ": " + String.format("%.1f", sizeMB) + " MB in " + String.format("%.3f", seconds) +
+                    " seconds, " + String.format("%.1f", throughput) + " MB/s, peak heap " + String.format("%.1f", peakHeapMB) + " MB");
+
+            String key = scenario.name() + "." + SIZE_MB + "MB";
+            if (UPDATE) {
+                storeBaseline(key, throughput, peakHeapMB);
+                return;
+            }
+            Properties baselines = loadBaselines();
+            assumeTrue(baselines.containsKey(key + ".throughputMBs"), "No baseline for " + key + ", run with -Dfasta.regression.update=true");
+            double baselineThroughput = Double.parseDouble(baselines.getProperty(key + ".throughputMBs"));
+            double baselinePeakHeap = Double.parseDouble(baselines.getProperty(key + ".peakHeapMB"));
+            assertTrue(throughput >= baselineThroughput * (1 - TOLERANCE),
+                    key + ": throughput " + String.format("%.1f", throughput) + " MB/s is below the baseline of " + baselineThroughput + " MB/s");
+            assertTrue(peakHeapMB <= baselinePeakHeap * (1 + TOLERANCE),
+                    key + ": peak heap " + String.format("%.1f", peakHeapMB) + " MB is above the baseline of " + baselinePeakHeap + " MB");
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    private static Properties loadBaselines() throws IOException {
+        Properties baselines = new Properties();
+        if (Files.exists(BASELINE_FILE)) {
+            try (Reader reader = Files.newBufferedReader(BASELINE_FILE)) {
+                baselines.load(reader);
+            }
+        }
+        return baselines;
+    }
+
+    private static void storeBaseline(String key, double throughput, double peakHeapMB) throws IOException {
+        Properties baselines = loadBaselines();
+        baselines.setProperty(key + ".throughputMBs", String.format(Locale.ROOT, "%.1f", throughput));
+        baselines.setProperty(key + ".peakHeapMB", String.format(Locale.ROOT, "%.1f", peakHeapMB));
+        try (Writer writer = Files.newBufferedWriter(BASELINE_FILE)) {
+            baselines.store(writer, "Baselines of the ThroughputRegressionTest, written with -Dfasta.regression.update=true. " +
+                    "Measured with " + Runtime.getRuntime().availableProcessors() + " processors and " + (Runtime.getRuntime().maxMemory() >> 20) + " MB max heap");
+        }
+    }
+}
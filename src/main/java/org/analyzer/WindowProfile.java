@@ -0,0 +1,205 @@
+package org.analyzer;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Sliding window profile of DNA/RNA sequences: GC content, GC skew (G - C) / (G + C) and the melting point of every
+ * window, with the same formulas as the SequenceType. Windows start every step bases. If the windows leave no gaps,
+ * the last window of a sequence ends at its end and may be shorter. Coordinates are 0-based and the end is exclusive,
+ * like in BED files.
+ * The base counts are kept while the window slides: a step only removes the bases that left the window and adds the
+ * ones that entered it, the window is never recounted. Long sequences are split into chunks of windows that are
+ * calculated on the worker pool, and the chunks are written in order as soon as they are done. Only a few chunks per
+ * thread are in flight, so the profile of a chromosome is never held in memory as a whole.
+ */
+final class WindowProfile {
+    enum Format {
+        // sequence, start, end, GC content, GC skew and melting point, with a header line
+        TSV,
+        // sequence, start, end and GC content, for genome browsers
+        BEDGRAPH
+    }
+
+    private static final int IN_FLIGHT_PER_THREAD = 2;
+    // a chunk covers about CHUNK_BASES bases, but at most MAX_CHUNK_WINDOWS windows
+    private static final int CHUNK_BASES = CompositionTask.CHUNK_BASES;
+    private static final int MAX_CHUNK_WINDOWS = 1 << 14;
+    private static final char[] BASES = {'A', 'C', 'G', 'T'};
+
+    private final SequenceType seqType;
+    private final int window;
+    private final int step;
+    private final Format format;
+
+    /**
+     * @param seqType sequence type of the profiled entries, DNA or RNA
+     * @param window  length of the windows
+     * @param step    distance of the window starts, windows overlap if it's smaller than the window
+     * @param format  output format
+     */
+    WindowProfile(SequenceType seqType, int window, int step, Format format) {
+        if (window < 1 || step < 1) {
+            throw new IllegalArgumentException("Window and step of the profile have to be positive: " + window + "," + step);
+        }
+        this.seqType = seqType;
+        this.window = window;
+        this.step = step;
+        this.format = format;
+    }
+
+    /**
+     * @param sequenceLength length of a sequence
+     * @return number of windows of the sequence
+     */
+    long windowCount(int sequenceLength) {
+        if (sequenceLength == 0) {
+            return 0;
+        }
+        if (sequenceLength <= this.window) {
+            return 1;
+        }
+        long untilEnd = (sequenceLength - this.window + (long) this.step - 1) / this.step + 1;
+        long startsInside = (sequenceLength + (long) this.step - 1) / this.step;
+        return Math.min(untilEnd, startsInside);
+    }
+
+    /**
+     * Writes the profile of all entries, in entry order.
+     *
+     * @param entries       DNA/RNA entries
+     * @param threadPool    pool the chunks are calculated on. It's not shut down by this method
+     * @param numberThreads threads of the pool, limits the chunks in flight
+     * @param writer        output of the profile
+     * @return number of written windows
+     */
+    long write(Collection<FastaEntry> entries, Executor threadPool, int numberThreads, Writer writer) throws IOException, InterruptedException, ExecutionException {
+        if (this.format == Format.TSV) {
+            writer.write("#sequence\tstart\tend\tgc\tgc_skew\tmelting_point\n");
+        } else {
+            writer.write("track type=bedGraph name=\"GC content\" description=\"GC content, window " + this.window + ", step " + this.step + "\"\n");
+        }
+        int inFlight = Math.max(1, numberThreads) * IN_FLIGHT_PER_THREAD;
+        long chunkWindows = Math.max(1, Math.min(MAX_CHUNK_WINDOWS, CHUNK_BASES / this.step));
+        Deque<CompletableFuture<String>> pendingChunks = new ArrayDeque<>();
+        long windows = 0;
+        for (FastaEntry entry : entries) {
+            String name = FastaIndex.sequenceName(entry.getSeqID());
+            PackedSequence sequence = entry.toPackedSequence();
+            long count = this.windowCount(sequence.length());
+            for (long first = 0; first < count; first += chunkWindows) {
+                if (pendingChunks.size() == inFlight) {
+                    writer.write(pendingChunks.removeFirst().get());
+                }
+                long firstWindow = first;
+                long lastWindow = Math.min(count, first + chunkWindows);
+                pendingChunks.addLast(CompletableFuture.supplyAsync(() -> this.profileChunk(name, sequence, firstWindow, lastWindow), threadPool));
+            }
+            windows += count;
+        }
+        while (!pendingChunks.isEmpty()) {
+            writer.write(pendingChunks.removeFirst().get());
+        }
+        return windows;
+    }
+
+    /**
+     * Calculates the windows from firstWindow (inclusive) to lastWindow (exclusive) of one sequence. Only the first
+     * window of the chunk is counted completely.
+     *
+     * @return the lines of the windows
+     */
+    String profileChunk(String name, PackedSequence sequence, long firstWindow, long lastWindow) {
+        StringBuilder lines = new StringBuilder((int) (lastWindow - firstWindow) * (name.length() + 48));
+        // counts of A, C, G, T/U and all other bases inside the window
+        long[] counts = new long[5];
+        long[] composition = new long[FastaEntry.COMPOSITION_SIZE];
+        int length = sequence.length();
+        int start = -1;
+        int end = -1;
+        for (long windowIndex = firstWindow; windowIndex < lastWindow; windowIndex++) {
+            int nextStart = (int) (windowIndex * this.step);
+            int nextEnd = (int) Math.min((long) nextStart + this.window, length);
+            if (start < 0 || nextStart >= end) {
+                Arrays.fill(counts, 0);
+                countBases(sequence, nextStart, nextEnd, counts, 1);
+            } else {
+                countBases(sequence, start, nextStart, counts, -1);
+                countBases(sequence, end, nextEnd, counts, 1);
+            }
+            start = nextStart;
+            end = nextEnd;
+            this.appendWindow(lines, name, start, end, counts, composition);
+        }
+        return lines.toString();
+    }
+
+    /**
+     * Adds (sign 1) or removes (sign -1) the bases of the range to the counts.
+     */
+    private static void countBases(PackedSequence sequence, int from, int to, long[] counts, int sign) {
+        int nextException = sequence.nextException(from);
+        for (int position = from; position < to; position++) {
+            if (position == nextException) {
+                counts[baseIndex(sequence.byteAt(position))] += sign;
+                nextException = sequence.nextException(position + 1);
+            } else {
+                counts[sequence.code(position)] += sign;
+            }
+        }
+    }
+
+    private static int baseIndex(byte base) {
+        return switch (base) {
+            case 'A' -> 0;
+            case 'C' -> 1;
+            case 'G' -> 2;
+            case 'T', 'U' -> 3;
+            default -> 4;
+        };
+    }
+
+    private void appendWindow(StringBuilder lines, String name, int start, int end, long[] counts, long[] composition) {
+        for (int base = 0; base < BASES.length; base++) {
+            composition[BASES[base]] = counts[base];
+        }
+        int windowLength = end - start;
+        double gc = this.seqType.gcEnrichment(windowLength, composition);
+        lines.append(name).append('\t').append(start).append('\t').append(end).append('\t');
+        appendFixed4(lines, gc);
+        if (this.format == Format.TSV) {
+            long strong = counts[2] + counts[1];
+            double skew = (strong > 0) ? (double) (counts[2] - counts[1]) / strong : 0.0;
+            lines.append('\t');
+            appendFixed4(lines, skew);
+            lines.append('\t');
+            appendFixed4(lines, this.seqType.meltingPoint(windowLength, composition));
+        }
+        lines.append('\n');
+    }
+
+    /**
+     * Appends the value rounded to 4 decimals as fixed point text, without the cost of String.format for millions of
+     * windows. Double.toString would switch to scientific notation below 0.001, e.g. 5.0E-4.
+     */
+    static void appendFixed4(StringBuilder lines, double value) {
+        long scaled = Math.round(value * 10000);
+        if (scaled < 0) {
+            lines.append('-');
+            scaled = -scaled;
+        }
+        long fraction = scaled % 10000;
+        lines.append(scaled / 10000).append('.');
+        for (long digit = 1000; digit > fraction && digit > 1; digit /= 10) {
+            lines.append('0');
+        }
+        lines.append(fraction);
+    }
+}
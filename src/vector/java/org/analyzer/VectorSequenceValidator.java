@@ -0,0 +1,88 @@
+package org.analyzer;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SequenceValidator based on the incubating Vector API. A whole vector of bytes (32 bytes with AVX2, 64 with
+ * AVX-512) is uppercased and compared against the alphabet per instruction. Clearing bit 5 uppercases ASCII letters
+ * and keeps all other bytes outside of 'A' to 'Z', so the alphabet check only needs the uppercased bytes.
+ * Small alphabets like DNA and RNA are compared letter by letter, larger ones like peptides are checked as range of
+ * letters without the missing ones. Only built with the maven profile "vector", loaded by SequenceValidator.forType.
+ */
+final class VectorSequenceValidator implements SequenceValidator {
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+    private static final byte CASE_BIT_CLEAR = (byte) 0xDF;
+
+    private final TableSequenceValidator scalar;
+    // compared letter by letter if the alphabet is small
+    private final byte[] allowed;
+    // otherwise: letter range of the alphabet and the letters inside the range that aren't allowed
+    private final byte firstLetter;
+    private final byte lastLetter;
+    private final byte[] excluded;
+
+    VectorSequenceValidator(SequenceType seqType) {
+        this.scalar = new TableSequenceValidator(seqType);
+        String alphabet = seqType.getAlphabet();
+        byte first = 'Z';
+        byte last = 'A';
+        for (int i = 0; i < alphabet.length(); i++) {
+            first = (byte) Math.min(first, alphabet.charAt(i));
+            last = (byte) Math.max(last, alphabet.charAt(i));
+        }
+        StringBuilder missing = new StringBuilder();
+        for (char letter = (char) first; letter <= last; letter++) {
+            if (alphabet.indexOf(letter) < 0) {
+                missing.append(letter);
+            }
+        }
+        this.firstLetter = first;
+        this.lastLetter = last;
+        if (alphabet.length() <= missing.length()) {
+            this.allowed = alphabet.getBytes();
+            this.excluded = null;
+        } else {
+            this.allowed = null;
+            this.excluded = missing.toString().getBytes();
+        }
+    }
+
+    @Override
+    public int copyValidated(byte[] src, int from, int to, byte[] dst, int dstOffset) {
+        int i = from;
+        int bound = from + SPECIES.loopBound(to - from);
+        for (; i < bound; i += SPECIES.length()) {
+            ByteVector upper = ByteVector.fromArray(SPECIES, src, i).and(CASE_BIT_CLEAR);
+            if (this.validLanes(upper).allTrue()) {
+                upper.intoArray(dst, dstOffset + (i - from));
+            } else {
+                // the scalar check finds the exact position and copies the valid bytes in front of it
+                int invalid = this.scalar.copyValidated(src, i, i + SPECIES.length(), dst, dstOffset + (i - from));
+                if (invalid >= 0) {
+                    return invalid;
+                }
+            }
+        }
+        return this.scalar.copyValidated(src, i, to, dst, dstOffset + (i - from));
+    }
+
+    private VectorMask<Byte> validLanes(ByteVector upper) {
+        VectorMask<Byte> valid;
+        if (this.allowed != null) {
+            valid = upper.compare(VectorOperators.EQ, this.allowed[0]);
+            for (int k = 1; k < this.allowed.length; k++) {
+                valid = valid.or(upper.compare(VectorOperators.EQ, this.allowed[k]));
+            }
+        } else {
+            // bytes >= 0x80 stay negative and fail the signed range check
+            valid = upper.compare(VectorOperators.GE, this.firstLetter).and(upper.compare(VectorOperators.LE, this.lastLetter));
+            for (byte letter : this.excluded) {
+                valid = valid.andNot(upper.compare(VectorOperators.EQ, letter));
+            }
+        }
+        return valid;
+    }
+}